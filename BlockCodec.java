@@ -0,0 +1,150 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * BlockCodec.java
+ *
+ * Deflate for independently stored blocks (task file segments, archive blocks) with a preset
+ * dictionary trained from the user's own tasks. Every block is compressed on its own, so any one
+ * of them still decodes without the others; the dictionary gives each block the context that a
+ * single stream over the whole file would have had (Java serialization's class descriptors,
+ * category names, recurring title phrases).
+ *
+ * train() is a greedy cover of the sample: it cuts the sample into short windows, scores each by
+ * how often its 8-byte grams occur in the whole sample (grams already taken count no more) and
+ * keeps the best windows, the most valuable last (nearest to the data, so the cheapest to point at).
+ */
+final class BlockCodec {
+    static final int DICTIONARY = 32 * 1024;
+    static final int FAST = Deflater.BEST_SPEED, SMALL = Deflater.DEFAULT_COMPRESSION; // saves / archive
+    private static final int GRAM = 8, WINDOW = 64, BUCKETS = 1 << 18;
+
+    private BlockCodec() { }
+
+    // ---------------- Training ----------------
+
+    static byte[] train(byte[] sample) {
+        if (sample.length <= DICTIONARY) return sample.clone();
+        int[] counts = new int[BUCKETS];
+        for (int i = 0; i + GRAM <= sample.length; i++) counts[gram(sample, i)]++;
+        int windows = sample.length / WINDOW;
+        // lazy greedy: a window's score only drops as others are taken, so re-score on pop
+        PriorityQueue<long[]> queue = new PriorityQueue<>(windows, (a, b) -> Long.compare(b[0], a[0]));
+        for (int w = 0; w < windows; w++) queue.add(new long[]{score(sample, w, counts), w});
+        int[] picked = new int[DICTIONARY / WINDOW];
+        int n = 0;
+        while (n < picked.length && !queue.isEmpty()) {
+            long[] top = queue.poll();
+            int w = (int) top[1];
+            long now = score(sample, w, counts);
+            if (now <= 0) continue; // fully covered by windows already taken
+            if (!queue.isEmpty() && now < queue.peek()[0]) {
+                top[0] = now;
+                queue.add(top);
+                continue;
+            }
+            picked[n++] = w;
+            for (int i = w * WINDOW; i + GRAM <= (w + 1) * WINDOW; i++) counts[gram(sample, i)] = 0;
+        }
+        // best last
+        byte[] dict = new byte[n * WINDOW];
+        for (int k = 0; k < n; k++) System.arraycopy(sample, picked[n - 1 - k] * WINDOW, dict, k * WINDOW, WINDOW);
+        return dict;
+    }
+
+    private static long score(byte[] sample, int w, int[] counts) {
+        long s = 0;
+        for (int i = w * WINDOW; i + GRAM <= (w + 1) * WINDOW; i++) {
+            int c = counts[gram(sample, i)];
+            if (c > 1) s += c;
+        }
+        return s;
+    }
+
+    private static int gram(byte[] b, int at) {
+        long h = 0;
+        for (int i = 0; i < GRAM; i++) h = h * 0x100000001b3L + (b[at + i] & 0xff);
+        h ^= h >>> 29;
+        return (int) (h * 0x9e3779b97f4a7c15L >>> 46); // 18 bits
+    }
+
+    // Dictionary id, as zlib records it in a stream that needs one.
+    static int id(byte[] dictionary) {
+        Adler32 a = new Adler32();
+        a.update(dictionary);
+        return (int) a.getValue();
+    }
+
+    // ---------------- Blocks ----------------
+
+    static byte[] compress(byte[] raw, byte[] dictionary, int level) {
+        Deflater d = new Deflater(level);
+        try {
+            if (dictionary != null && dictionary.length > 0) d.setDictionary(dictionary);
+            d.setInput(raw);
+            d.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buf = new byte[1 << 16];
+            while (!d.finished()) out.write(buf, 0, d.deflate(buf));
+            return out.toByteArray();
+        } finally {
+            d.end();
+        }
+    }
+
+    // 'rawLength' is the block's size before compression (stored next to it); 'source' names the
+    // file for the DecodeBlock event, which records the ratio and decode speed.
+    static byte[] decompress(byte[] packed, int rawLength, byte[] dictionary, String source) throws IOException {
+        TodoEvents.DecodeBlock ev = new TodoEvents.DecodeBlock();
+        ev.begin();
+        Inflater inf = new Inflater();
+        try {
+            inf.setInput(packed);
+            byte[] out = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength) {
+                int k = inf.inflate(out, n, rawLength - n);
+                if (k == 0) {
+                    if (inf.needsDictionary()) {
+                        if (dictionary == null || inf.getAdler() != id(dictionary)) throw new IOException("Block needs a dictionary it was not given");
+                        inf.setDictionary(dictionary);
+                    } else if (inf.finished() || inf.needsInput()) {
+                        throw new IOException("Truncated block");
+                    }
+                }
+                n += k;
+            }
+            ev.end();
+            if (ev.shouldCommit()) {
+                ev.source = source;
+                ev.packedBytes = packed.length;
+                ev.rawBytes = rawLength;
+                ev.commit();
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged block: " + e.getMessage(), e);
+        } finally {
+            inf.end();
+        }
+    }
+
+    // Up to 'size' bytes for train(): an even slice of every block (they all start with the class
+    // descriptors; the rest is tasks).
+    static byte[] sample(List<byte[]> blocks, int size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        int per = Math.max(WINDOW * 4, size / Math.max(1, blocks.size()));
+        for (byte[] b : blocks) {
+            if (out.size() >= size) break;
+            out.write(b, 0, Math.min(b.length, per));
+        }
+        return Arrays.copyOf(out.toByteArray(), Math.min(out.size(), size));
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.*;
+import java.util.List;
+
+/**
+ * CategoryRegistry.java
+ *
+ * The categories of the task list, kept by TaskIndex in step with masterModel. Each category has an
+ * id (for this session), its postings and running done / pending counts per priority, so the sidebar
+ * and the chart read counts instead of walking the list.
+ *  - rename to a new name re-keys the entry: O(1), postings and counts move with it
+ *  - rename onto a name in use (a merge, or a delete into "General") relinks the smaller posting
+ *    list into the larger: O(smaller)
+ *  - recurring series are posted apart (series) and not counted; the chart counts their occurrences
+ *    for a date window
+ * An entry stays while the session lasts, even with no tasks left, until it is renamed away. EDT only.
+ */
+final class CategoryRegistry {
+    static final int RANKS = 4; // TaskIndex.rank: High, Medium, Low, other
+
+    static final class Category {
+        final int id;
+        String name;
+        Set<TodoApp.Task> tasks = TaskIndex.identitySet();
+        Set<TodoApp.Task> series = TaskIndex.identitySet();
+        final int[] done = new int[RANKS], pending = new int[RANKS];
+
+        private Category(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        // Tasks still to do: pending ones plus the recurring series.
+        int open() { return sum(pending) + series.size(); }
+    }
+
+    private final Map<String, Category> byName = new HashMap<>();
+    private final List<Category> byId = new ArrayList<>();  // null once merged away
+    private final int[] done = new int[RANKS], pending = new int[RANKS]; // every category
+
+    // ---------------- Postings ----------------
+
+    void add(TodoApp.Task t) {
+        Category c = intern(t.category);
+        if (t.isRecurring()) c.series.add(t);
+        else if (c.tasks.add(t)) count(c, t, 1);
+    }
+
+    // Must be called with the task's indexed field values (before mutating it).
+    void remove(TodoApp.Task t) {
+        Category c = byName.get(t.category);
+        if (c == null) return;
+        if (c.tasks.remove(t)) count(c, t, -1);
+        else c.series.remove(t);
+    }
+
+    // One task's category changed from 'from' (undo of a rename); O(1).
+    void move(TodoApp.Task t, String from) {
+        Category a = byName.get(from);
+        if (a == null) return;
+        Category b = intern(t.category);
+        if (a.series.remove(t)) {
+            b.series.add(t);
+        } else if (a.tasks.remove(t)) {
+            count(a, t, -1);
+            b.tasks.add(t);
+            count(b, t, 1);
+        }
+    }
+
+    // Re-keys 'from' as 'to', or merges it into 'to' if that is in use; the tasks' own category field
+    // is the caller's (TodoApp.renameCategory).
+    void rename(String from, String to) {
+        if (from.equals(to)) return;
+        Category a = byName.remove(from);
+        if (a == null) return;
+        Category b = byName.get(to);
+        if (b == null) {
+            a.name = to;
+            byName.put(to, a);
+            return;
+        }
+        if (a.tasks.size() > b.tasks.size()) {
+            Set<TodoApp.Task> s = a.tasks;
+            a.tasks = b.tasks;
+            b.tasks = s;
+        }
+        b.tasks.addAll(a.tasks);
+        if (a.series.size() > b.series.size()) {
+            Set<TodoApp.Task> s = a.series;
+            a.series = b.series;
+            b.series = s;
+        }
+        b.series.addAll(a.series);
+        for (int r = 0; r < RANKS; r++) {
+            b.done[r] += a.done[r];
+            b.pending[r] += a.pending[r];
+        }
+        byId.set(a.id, null);
+    }
+
+    void clear() {
+        byName.clear();
+        byId.clear();
+        Arrays.fill(done, 0);
+        Arrays.fill(pending, 0);
+    }
+
+    private Category intern(String name) {
+        Category c = byName.get(name);
+        if (c == null) {
+            c = new Category(byId.size(), name);
+            byId.add(c);
+            byName.put(name, c);
+        }
+        return c;
+    }
+
+    private void count(Category c, TodoApp.Task t, int d) {
+        int r = TaskIndex.rank(t.priority);
+        if (t.done) {
+            c.done[r] += d;
+            done[r] += d;
+        } else {
+            c.pending[r] += d;
+            pending[r] += d;
+        }
+    }
+
+    // ---------------- Lookups ----------------
+
+    Category get(String name) { return byName.get(name); }
+
+    Category get(int id) { return id >= 0 && id < byId.size() ? byId.get(id) : null; }
+
+    Collection<Category> all() { return byName.values(); }
+
+    Set<String> names() { return byName.keySet(); }
+
+    Set<TodoApp.Task> tasks(String name) {
+        Category c = byName.get(name);
+        return c == null ? Collections.emptySet() : c.tasks;
+    }
+
+    // {done, pending} of the category (null: every one) at the priority (null: every one); O(1).
+    // Recurring series are left out.
+    int[] completion(String name, String priority) {
+        int[] d = done, p = pending;
+        if (name != null) {
+            Category c = byName.get(name);
+            if (c == null) return new int[2];
+            d = c.done;
+            p = c.pending;
+        }
+        if (priority == null) return new int[]{sum(d), sum(p)};
+        int r = TaskIndex.rank(priority);
+        return new int[]{d[r], p[r]};
+    }
+
+    // Open tasks of the category (null: every one), for the sidebar.
+    int open(String name) {
+        if (name == null) {
+            int n = sum(pending);
+            for (Category c : byName.values()) n += c.series.size();
+            return n;
+        }
+        Category c = byName.get(name);
+        return c == null ? 0 : c.open();
+    }
+
+    private static int sum(int[] a) {
+        int n = 0;
+        for (int v : a) n += v;
+        return n;
+    }
+}
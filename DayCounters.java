@@ -0,0 +1,62 @@
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DayCounters.java
+ *
+ * Per-day task counts for the calendar (TodoApp.CalendarPanel), kept by TaskIndex in step with the
+ * list: the tasks due on a day, those of them still open, and the tasks completed on it (the time
+ * their done field was written, TaskCrdt.completedAt). Each year is one int array per count,
+ * indexed by day of year, so a month is one array copy and paging to another month costs the same
+ * whatever the size of the list. Overdue is not stored: it is the open count of a day before today.
+ *
+ * Recurring series are not counted (the calendar expands their occurrences for the month shown).
+ * EDT only.
+ */
+final class DayCounters {
+    static final int DUE = 0, OPEN = 1, DONE = 2, KINDS = 3;
+
+    private final Map<Integer, int[][]> years = new HashMap<>(); // year -> [kind][day of year - 1]
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Called with the task's indexed field values, like TaskIndex.add / remove.
+    void add(TodoApp.Task t) { count(t, 1); }
+
+    void remove(TodoApp.Task t) { count(t, -1); }
+
+    void clear() { years.clear(); }
+
+    private void count(TodoApp.Task t, int d) {
+        if (t.due != null) {
+            bump(t.due, DUE, d);
+            if (!t.done) bump(t.due, OPEN, d);
+        }
+        if (t.done) {
+            long at = TaskCrdt.completedAt(t);
+            if (at > 0) bump(LocalDate.ofInstant(Instant.ofEpochMilli(at), zone), DONE, d);
+        }
+    }
+
+    private void bump(LocalDate day, int kind, int d) {
+        int[][] y = years.computeIfAbsent(day.getYear(), k -> new int[KINDS][366]);
+        int i = day.getDayOfYear() - 1;
+        y[kind][i] = Math.max(0, y[kind][i] + d);
+    }
+
+    int get(int kind, LocalDate day) {
+        int[][] y = years.get(day.getYear());
+        return y == null ? 0 : y[kind][day.getDayOfYear() - 1];
+    }
+
+    // One count for every day of the month, the 1st first: a copy out of the year's array.
+    int[] month(int kind, YearMonth m) {
+        int[] out = new int[m.lengthOfMonth()];
+        int[][] y = years.get(m.getYear());
+        if (y != null) System.arraycopy(y[kind], m.atDay(1).getDayOfYear() - 1, out, 0, out.length);
+        return out;
+    }
+}
@@ -0,0 +1,337 @@
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.List;
+
+/**
+ * EdtMonitor.java
+ *
+ * Opt-in instrumentation for the Swing event dispatch thread (java TodoApp --edt-monitor [ms]):
+ *  - replaces the system EventQueue and times every dispatched event
+ *  - keeps log-linear (HDR-style) histograms of dispatch time and queue wait
+ *  - a watchdog thread samples the EDT stack while an event runs longer than the threshold
+ *  - slow events and their samples are shown in a diagnostics panel and can be dumped to a file
+ *
+ * All counters are written on the EDT only; the watchdog only touches the in-flight record.
+ */
+class EdtMonitor extends EventQueue {
+    static final int MAX_SLOW_EVENTS = 200;
+    static final int MAX_SAMPLES_PER_EVENT = 20;
+    static final Path DUMP_PATH = Paths.get(System.getProperty("user.home"), ".swing-todo-edt.txt");
+
+    private static EdtMonitor installed;
+
+    final long thresholdNanos;
+    final LatencyHistogram dispatch = new LatencyHistogram();
+    final LatencyHistogram queueWait = new LatencyHistogram();
+    final Map<String, LatencyHistogram> byType = new TreeMap<>();
+    private final ArrayDeque<SlowEvent> slow = new ArrayDeque<>();
+    private long slowCount; // slow events ever recorded; 'slow' keeps the last MAX_SLOW_EVENTS
+    private final long startedAt = System.currentTimeMillis();
+
+    private volatile InFlight current;
+    private volatile Thread edt;
+
+    private EdtMonitor(long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis * 1_000_000L;
+        Thread watchdog = new Thread(this::watch, "edt-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    // Must be called before the first frame is created.
+    static synchronized EdtMonitor install(long thresholdMillis) {
+        if (installed == null) {
+            installed = new EdtMonitor(thresholdMillis);
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(installed);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                // best effort: the EDT may still be dispatching while the JVM exits
+                try { installed.dump(DUMP_PATH); } catch (IOException | RuntimeException ignored) {}
+            }, "edt-monitor-dump"));
+        }
+        return installed;
+    }
+
+    static EdtMonitor get() { return installed; }
+
+    // ---------------- Dispatch timing ----------------
+
+    @Override protected void dispatchEvent(AWTEvent event) {
+        if (edt == null) edt = Thread.currentThread();
+        InFlight outer = current;
+        InFlight f = new InFlight(event, System.nanoTime());
+        current = f;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long end = System.nanoTime();
+            current = outer; // modal dialogs dispatch nested events
+            long took = end - f.start;
+            dispatch.record(took);
+            byType.computeIfAbsent(f.kind, k -> new LatencyHistogram()).record(took);
+            long when = eventWhen(event);
+            if (when > 0) queueWait.record(Math.max(0, (System.currentTimeMillis() - when) * 1_000_000L - took));
+            if (took >= thresholdNanos) {
+                if (slow.size() == MAX_SLOW_EVENTS) slow.removeFirst();
+                slow.addLast(new SlowEvent(f, took));
+                slowCount++;
+            }
+        }
+    }
+
+    private static long eventWhen(AWTEvent e) {
+        if (e instanceof InputEvent) return ((InputEvent) e).getWhen();
+        if (e instanceof ActionEvent) return ((ActionEvent) e).getWhen();
+        if (e instanceof InvocationEvent) return ((InvocationEvent) e).getWhen();
+        return 0;
+    }
+
+    // Samples the EDT stack while the current event is over the threshold.
+    private void watch() {
+        long period = Math.max(1_000_000L, thresholdNanos / 2);
+        while (true) {
+            try {
+                Thread.sleep(period / 1_000_000L, (int) (period % 1_000_000L));
+            } catch (InterruptedException e) {
+                return;
+            }
+            InFlight f = current;
+            Thread t = edt;
+            if (f == null || t == null) continue;
+            if (System.nanoTime() - f.start < thresholdNanos) continue;
+            StackTraceElement[] stack = t.getStackTrace();
+            synchronized (f.samples) {
+                if (current == f && f.samples.size() < MAX_SAMPLES_PER_EVENT) f.samples.add(stack);
+            }
+        }
+    }
+
+    // ---------------- Reporting ----------------
+
+    List<SlowEvent> slowEvents() { return new ArrayList<>(slow); }
+
+    long slowCount() { return slowCount; }
+
+    // Most frequent application frames across all captured samples (which of save/refreshView/... is hot).
+    Map<String, Integer> hotFrames() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (SlowEvent s : slow) {
+            for (StackTraceElement[] stack : s.samples) {
+                StackTraceElement top = firstAppFrame(stack);
+                if (top != null) counts.merge(top.getClassName() + "." + top.getMethodName(), 1, Integer::sum);
+            }
+        }
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(counts.entrySet());
+        sorted.sort((a, b) -> b.getValue() - a.getValue());
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : sorted) out.put(e.getKey(), e.getValue());
+        return out;
+    }
+
+    static StackTraceElement firstAppFrame(StackTraceElement[] stack) {
+        for (StackTraceElement e : stack) {
+            String c = e.getClassName();
+            if (c.startsWith("java.") || c.startsWith("javax.") || c.startsWith("sun.") || c.startsWith("jdk.")
+                    || c.startsWith("com.sun.") || c.startsWith("EdtMonitor")) continue;
+            return e;
+        }
+        return null;
+    }
+
+    String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("EDT monitor since ").append(new Date(startedAt)).append(", threshold ")
+                .append(thresholdNanos / 1_000_000).append(" ms\n\n");
+        sb.append(LatencyHistogram.header()).append('\n');
+        sb.append(dispatch.line("dispatch (all)")).append('\n');
+        sb.append(queueWait.line("queue wait")).append('\n');
+        for (Map.Entry<String, LatencyHistogram> e : byType.entrySet()) sb.append(e.getValue().line("  " + e.getKey())).append('\n');
+        Map<String, Integer> hot = hotFrames();
+        if (!hot.isEmpty()) {
+            sb.append("\nHot frames in slow events (samples):\n");
+            int n = 0;
+            for (Map.Entry<String, Integer> e : hot.entrySet()) {
+                sb.append(String.format("  %5d  %s%n", e.getValue(), e.getKey()));
+                if (++n == 15) break;
+            }
+        }
+        return sb.toString();
+    }
+
+    void dump(Path path) throws IOException {
+        StringBuilder sb = new StringBuilder(summary());
+        sb.append("\nSlow events (newest last):\n");
+        for (SlowEvent s : slowEvents()) {
+            sb.append('\n').append(s).append('\n');
+            for (int i = 0; i < s.samples.size(); i++) {
+                sb.append("  sample ").append(i + 1).append(":\n");
+                for (StackTraceElement e : s.samples.get(i)) sb.append("    at ").append(e).append('\n');
+            }
+        }
+        Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static class InFlight {
+        final String kind;
+        final String source;
+        final long start;
+        final long wallStart = System.currentTimeMillis();
+        final List<StackTraceElement[]> samples = new ArrayList<>();
+
+        InFlight(AWTEvent e, long start) {
+            this.start = start;
+            this.kind = e.getClass().getSimpleName() + (e instanceof InvocationEvent ? "" : " " + e.getID());
+            Object src = e.getSource();
+            this.source = src == null ? "" : src instanceof Component && ((Component) src).getName() != null
+                    ? ((Component) src).getName() : src.getClass().getSimpleName();
+        }
+    }
+
+    static class SlowEvent {
+        static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+        final String kind, source;
+        final long wallStart, nanos;
+        final List<StackTraceElement[]> samples;
+
+        SlowEvent(InFlight f, long nanos) {
+            this.kind = f.kind;
+            this.source = f.source;
+            this.wallStart = f.wallStart;
+            this.nanos = nanos;
+            synchronized (f.samples) { this.samples = new ArrayList<>(f.samples); }
+        }
+
+        @Override public String toString() {
+            String time = TIME.format(LocalDateTime.ofInstant(new Date(wallStart).toInstant(), java.time.ZoneId.systemDefault()));
+            StackTraceElement top = samples.isEmpty() ? null : firstAppFrame(samples.get(samples.size() / 2));
+            return String.format("%s  %7.1f ms  %s @ %s%s", time, nanos / 1e6, kind, source,
+                    top == null ? "" : "  in " + top.getClassName() + "." + top.getMethodName());
+        }
+    }
+
+    // ---------------- Histogram ----------------
+
+    /** Log-linear histogram: 32 linear sub-buckets per power of two (~3% relative error), 1 µs resolution. */
+    static class LatencyHistogram {
+        static final int SUB_BITS = 5, SUB = 1 << SUB_BITS;
+        private final long[] counts = new long[(64 - SUB_BITS) * SUB];
+        private long total, max, sum;
+
+        void record(long nanos) {
+            long v = Math.max(0, nanos / 1000);
+            counts[index(v)]++;
+            total++;
+            sum += v;
+            if (v > max) max = v;
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return (shift + 1) * SUB + (int) (v >>> shift) - SUB;
+        }
+
+        static long lowest(int idx) {
+            if (idx < SUB) return idx;
+            return (long) (idx % SUB + SUB) << (idx / SUB - 1);
+        }
+
+        long count() { return total; }
+
+        // Returns the value (µs) at the given percentile (0..100).
+        long percentile(double p) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(max, lowest(i + 1) - 1);
+            }
+            return max;
+        }
+
+        static String header() {
+            return String.format("%-28s %9s %9s %9s %9s %9s %9s", "events", "count", "mean ms", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        }
+
+        String line(String label) {
+            return String.format("%-28s %9d %9.2f %9.2f %9.2f %9.2f %9.2f", label, total,
+                    total == 0 ? 0 : sum / 1000.0 / total, percentile(50) / 1000.0, percentile(99) / 1000.0,
+                    percentile(99.9) / 1000.0, max / 1000.0);
+        }
+    }
+
+    // ---------------- Diagnostics panel ----------------
+
+    JPanel createPanel() {
+        JPanel p = new JPanel(new BorderLayout(8, 8));
+        p.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        JTextArea stats = new JTextArea(12, 90);
+        stats.setEditable(false);
+        stats.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        DefaultListModel<SlowEvent> slowModel = new DefaultListModel<>();
+        JList<SlowEvent> slowList = new JList<>(slowModel);
+        slowList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JTextArea stack = new JTextArea(12, 90);
+        stack.setEditable(false);
+        stack.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        slowList.addListSelectionListener(e -> {
+            SlowEvent s = slowList.getSelectedValue();
+            if (s == null) { stack.setText(""); return; }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < s.samples.size(); i++) {
+                sb.append("sample ").append(i + 1).append('\n');
+                for (StackTraceElement el : s.samples.get(i)) sb.append("    at ").append(el).append('\n');
+            }
+            stack.setText(sb.length() == 0 ? "(finished before the first sample)" : sb.toString());
+            stack.setCaretPosition(0);
+        });
+
+        long[] shown = {-1}; // slowCount() when the list was last filled
+        Runnable refresh = () -> {
+            stats.setText(summary());
+            stats.setCaretPosition(0);
+            if (slowCount() != shown[0]) {
+                shown[0] = slowCount();
+                List<SlowEvent> events = slowEvents();
+                slowModel.clear();
+                for (int i = events.size() - 1; i >= 0; i--) slowModel.addElement(events.get(i));
+            }
+        };
+        refresh.run();
+        javax.swing.Timer timer = new javax.swing.Timer(1000, e -> refresh.run());
+        timer.start();
+        p.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !p.isDisplayable()) timer.stop();
+        });
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(slowList), new JScrollPane(stack));
+        split.setResizeWeight(0.4);
+
+        JButton dumpBtn = new JButton("Dump to " + DUMP_PATH.getFileName());
+        dumpBtn.addActionListener(e -> {
+            try {
+                dump(DUMP_PATH);
+                JOptionPane.showMessageDialog(p, "Written to " + DUMP_PATH);
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(p, "Dump failed: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        JPanel south = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        south.add(dumpBtn);
+
+        p.add(new JScrollPane(stats), BorderLayout.NORTH);
+        p.add(split, BorderLayout.CENTER);
+        p.add(south, BorderLayout.SOUTH);
+        return p;
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileWatcher.java
+ *
+ * Watches one file through the directory's WatchService and calls back (on the watcher
+ * thread) once a burst of external writes has gone quiet. Writes the app made itself are
+ * recognised by ownWrite() (modification time + size) and skipped.
+ */
+class FileWatcher {
+    static final long QUIET_MILLIS = 250, MAX_DEBOUNCE_MILLIS = 3000;
+
+    private final Path file;
+    private final Runnable onChange;
+    private volatile FileTime ownTime;
+    private volatile long ownSize = -1;
+    private Thread thread;
+
+    FileWatcher(Path file, Runnable onChange) {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+    }
+
+    synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this::run, "todo-file-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Call right after writing the file so the resulting event is not taken for an external change.
+    void ownWrite() {
+        try {
+            ownTime = Files.getLastModifiedTime(file);
+            ownSize = Files.size(file);
+        } catch (IOException e) {
+            ownTime = null;
+        }
+    }
+
+    private boolean isOwnWrite() {
+        try {
+            return ownTime != null && ownTime.equals(Files.getLastModifiedTime(file)) && ownSize == Files.size(file);
+        } catch (IOException e) {
+            return true; // gone or unreadable; the next event will tell
+        }
+    }
+
+    private void run() {
+        try (WatchService ws = file.getFileSystem().newWatchService()) {
+            file.getParent().register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                if (!drain(ws.take())) continue;
+                // wait for the writer to finish: no event for QUIET_MILLIS (bounded)
+                long deadline = System.currentTimeMillis() + MAX_DEBOUNCE_MILLIS;
+                WatchKey key;
+                while (System.currentTimeMillis() < deadline && (key = ws.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) drain(key);
+                if (!isOwnWrite()) onChange.run();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // True if the key carried an event for our file (or lost events).
+    private boolean drain(WatchKey key) {
+        boolean hit = false;
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (ev.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(ev.context())) hit = true;
+        }
+        key.reset();
+        return hit;
+    }
+}
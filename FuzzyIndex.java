@@ -0,0 +1,208 @@
+import java.util.*;
+import java.util.List;
+
+/**
+ * FuzzyIndex.java
+ *
+ * Typo-tolerant search over task title terms:
+ *  - inverted index term -> tasks (identity sets, like indexOfRef elsewhere)
+ *  - BK-tree over the distinct terms, so "meetnig" finds "meeting" without scanning the vocabulary
+ *  - edit budget grows with term length (0 for <= 3 chars, 1 for <= 5, else 2)
+ *  - every query term must match (AND); results are ranked by summed similarity
+ *
+ * Terms whose postings become empty stay in the BK-tree as dead nodes and are skipped;
+ * the tree is rebuilt once more than half of it is dead.
+ */
+class FuzzyIndex<T> {
+    static final int MAX_RESULTS = 1000;
+
+    private final Map<String, Set<T>> postings = new HashMap<>();
+    private BkNode root;
+    private int treeSize, dead;
+
+    static final class BkNode {
+        final String term;
+        final Map<Integer, BkNode> kids = new HashMap<>(4);
+        BkNode(String term) { this.term = term; }
+    }
+
+    static final class Match<T> {
+        final T item;
+        final double score;
+        Match(T item, double score) { this.item = item; this.score = score; }
+    }
+
+    // ---------------- Maintenance ----------------
+
+    void add(T item, String text) {
+        for (String term : terms(text)) {
+            Set<T> set = postings.get(term);
+            if (set == null) {
+                set = Collections.newSetFromMap(new IdentityHashMap<>());
+                postings.put(term, set);
+                if (!bkContains(term)) bkInsert(term);
+                else dead--;
+            }
+            set.add(item);
+        }
+    }
+
+    void remove(T item, String text) {
+        for (String term : terms(text)) {
+            Set<T> set = postings.get(term);
+            if (set == null) continue;
+            set.remove(item);
+            if (set.isEmpty()) {
+                postings.remove(term);
+                dead++;
+            }
+        }
+        if (dead > 64 && dead * 2 > treeSize) rebuildTree();
+    }
+
+    void clear() {
+        postings.clear();
+        root = null;
+        treeSize = dead = 0;
+    }
+
+    int termCount() { return postings.size(); }
+
+    private void rebuildTree() {
+        root = null;
+        treeSize = dead = 0;
+        List<String> terms = new ArrayList<>(postings.keySet());
+        Collections.shuffle(terms, new Random(terms.size())); // balanced-ish tree, deterministic
+        for (String t : terms) bkInsert(t);
+    }
+
+    private void bkInsert(String term) {
+        treeSize++;
+        if (root == null) { root = new BkNode(term); return; }
+        BkNode node = root;
+        while (true) {
+            int d = distance(term, node.term, Integer.MAX_VALUE);
+            if (d == 0) return;
+            BkNode next = node.kids.get(d);
+            if (next == null) { node.kids.put(d, new BkNode(term)); return; }
+            node = next;
+        }
+    }
+
+    private boolean bkContains(String term) {
+        BkNode node = root;
+        while (node != null) {
+            int d = distance(term, node.term, Integer.MAX_VALUE);
+            if (d == 0) return true;
+            node = node.kids.get(d);
+        }
+        return false;
+    }
+
+    // ---------------- Query ----------------
+
+    // Ranked matches for the query (best first), at most MAX_RESULTS.
+    List<Match<T>> search(String query) {
+        List<String> qTerms = terms(query);
+        List<Match<T>> out = new ArrayList<>();
+        if (qTerms.isEmpty() || root == null) return out;
+
+        // candidate vocabulary terms (with similarity) for each query term
+        List<Map<String, Double>> cands = new ArrayList<>();
+        for (String q : qTerms) {
+            Map<String, Double> m = new HashMap<>();
+            int k = budget(q);
+            bkSearch(root, q, k, m);
+            if (m.isEmpty()) return out;
+            cands.add(m);
+        }
+
+        // drive from the query term with the fewest postings; check the others per candidate
+        int driver = 0;
+        long bestSize = Long.MAX_VALUE;
+        for (int i = 0; i < cands.size(); i++) {
+            long size = 0;
+            for (String t : cands.get(i).keySet()) size += postings.get(t).size();
+            if (size < bestSize) { bestSize = size; driver = i; }
+        }
+        List<Map.Entry<String, Double>> driverTerms = new ArrayList<>(cands.get(driver).entrySet());
+        driverTerms.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+
+        Set<T> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<String, Double> dt : driverTerms) {
+            for (T item : postings.get(dt.getKey())) {
+                if (!seen.add(item)) continue;
+                double score = 0;
+                boolean all = true;
+                for (int i = 0; i < cands.size() && all; i++) {
+                    double best = -1;
+                    for (Map.Entry<String, Double> c : cands.get(i).entrySet()) {
+                        if (c.getValue() > best && postings.get(c.getKey()).contains(item)) best = c.getValue();
+                    }
+                    if (best < 0) all = false; else score += best;
+                }
+                if (all) out.add(new Match<>(item, score));
+                if (out.size() >= MAX_RESULTS) break;
+            }
+            if (out.size() >= MAX_RESULTS) break;
+        }
+        out.sort((a, b) -> Double.compare(b.score, a.score));
+        return out;
+    }
+
+    private void bkSearch(BkNode node, String q, int k, Map<String, Double> out) {
+        int d = distance(q, node.term, Integer.MAX_VALUE);
+        if (d <= k && postings.containsKey(node.term)) {
+            // 1.0 for an exact term, less for every edit
+            out.merge(node.term, 1.0 - d / (q.length() + 1.0), Math::max);
+        }
+        for (Map.Entry<Integer, BkNode> e : node.kids.entrySet()) {
+            int edge = e.getKey();
+            if (edge >= d - k && edge <= d + k) bkSearch(e.getValue(), q, k, out);
+        }
+    }
+
+    static int budget(String term) {
+        int n = term.length();
+        return n <= 3 ? 0 : n <= 5 ? 1 : 2;
+    }
+
+    // ---------------- Text ----------------
+
+    static List<String> terms(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null) return out;
+        String s = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean word = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) {
+                if (i - start >= 2) out.add(s.substring(start, i));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    // Levenshtein distance; returns limit + 1 as soon as every cell in a row exceeds limit.
+    static int distance(String a, String b, int limit) {
+        int n = a.length(), m = b.length();
+        if (Math.abs(n - m) > limit) return limit + 1;
+        int[] prev = new int[m + 1], cur = new int[m + 1];
+        for (int j = 0; j <= m; j++) prev[j] = j;
+        for (int i = 1; i <= n; i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (cur[j] < rowMin) rowMin = cur[j];
+            }
+            if (rowMin > limit) return limit + 1;
+            int[] t = prev; prev = cur; cur = t;
+        }
+        return prev[m];
+    }
+}
@@ -0,0 +1,257 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * HashTrie.java
+ *
+ * Persistent map from long keys (task ids) to values: a hash array mapped trie (Bagwell), laid out
+ * as in CHAMP (Steindorfer & Vinju), so a version is never changed once built and the next version
+ * shares every node the change did not touch.
+ *  - the key is spread by a bijective mix; each level takes 5 of its 64 bits, so two keys always part
+ *    by the 13th level and there are no collision nodes
+ *  - a node has two bitmaps: slots holding an entry inline (keys / vals) and slots holding a subtrie,
+ *    both arrays packed by popcount; a subtrie left with one entry is pulled back up, so a map has one
+ *    shape whatever the order of changes
+ *  - get is at most 13 array hops; a change copies the path to its key (O(log32 n) nodes)
+ *  - an Editor batches changes: nodes it created are changed in place until done(), so building a
+ *    map of n entries costs n inserts, not n path copies
+ *
+ * A HashTrie is immutable and can be read from any thread once published (e.g. through an
+ * AtomicReference); an Editor belongs to one thread.
+ */
+final class HashTrie<V> {
+    private static final int BITS = 5, MASK = (1 << BITS) - 1;
+    private static final Node EMPTY_NODE = new Node(null, 0, 0, new long[0], new Object[0], new Node[0]);
+    private static final HashTrie<?> EMPTY = new HashTrie<>(EMPTY_NODE, 0);
+
+    private final Node root;
+    private final int size;
+
+    private HashTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> HashTrie<V> empty() { return (HashTrie<V>) EMPTY; }
+
+    int size() { return size; }
+
+    boolean isEmpty() { return size == 0; }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        long h = mix(key);
+        Node n = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = bit(h, shift);
+            if ((n.dataMap & bit) != 0) {
+                int i = index(n.dataMap, bit);
+                return n.keys[i] == key ? (V) n.vals[i] : null;
+            }
+            if ((n.nodeMap & bit) == 0) return null;
+            n = n.nodes[index(n.nodeMap, bit)];
+        }
+    }
+
+    HashTrie<V> put(long key, V value) {
+        Editor<V> e = edit();
+        e.put(key, value);
+        return e.done();
+    }
+
+    HashTrie<V> remove(long key) {
+        Editor<V> e = edit();
+        e.remove(key);
+        return e.done();
+    }
+
+    Editor<V> edit() { return new Editor<>(root, size); }
+
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<? super V> action) { walk(root, (Consumer<Object>) action); }
+
+    List<V> values() {
+        List<V> out = new ArrayList<>(size);
+        forEach(out::add);
+        return out;
+    }
+
+    private static void walk(Node n, Consumer<Object> action) {
+        for (Object v : n.vals) action.accept(v);
+        for (Node c : n.nodes) walk(c, action);
+    }
+
+    // ---------------- Editing ----------------
+
+    // Changes made in place on the nodes this editor created; the map it started from stays as it was.
+    static final class Editor<V> {
+        private Object owner = new Object();
+        private Node root;
+        private int size;
+
+        private Editor(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        void put(long key, V value) { root = Node.put(live(), key, mix(key), value, 0, this); }
+
+        void remove(long key) { root = Node.remove(live(), key, mix(key), 0, this); }
+
+        int size() { return size; }
+
+        // The map as edited so far; the editor cannot be used after this.
+        HashTrie<V> done() {
+            live();
+            owner = null;
+            return size == 0 ? empty() : new HashTrie<>(root, size);
+        }
+
+        private Node live() {
+            if (owner == null) throw new IllegalStateException("editor already done");
+            return root;
+        }
+    }
+
+    // ---------------- Nodes ----------------
+
+    private static final class Node {
+        final Object owner;  // editor that may change this node in place (null: shared)
+        int dataMap, nodeMap;
+        long[] keys;
+        Object[] vals;
+        Node[] nodes;
+
+        Node(Object owner, int dataMap, int nodeMap, long[] keys, Object[] vals, Node[] nodes) {
+            this.owner = owner;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.vals = vals;
+            this.nodes = nodes;
+        }
+
+        private Node writable(Editor<?> e) {
+            return owner == e.owner ? this : new Node(e.owner, dataMap, nodeMap, keys.clone(), vals.clone(), nodes.clone());
+        }
+
+        static Node put(Node n, long key, long h, Object value, int shift, Editor<?> e) {
+            int bit = bit(h, shift);
+            if ((n.dataMap & bit) != 0) {
+                int i = index(n.dataMap, bit);
+                if (n.keys[i] == key) {
+                    if (n.vals[i] == value) return n;
+                    Node w = n.writable(e);
+                    w.vals[i] = value;
+                    return w;
+                }
+                // two keys in one slot: both move down a level
+                Node sub = pair(n.keys[i], n.vals[i], key, value, shift + BITS, e);
+                Node w = n.writable(e);
+                w.keys = removeAt(w.keys, i);
+                w.vals = removeAt(w.vals, i);
+                w.dataMap ^= bit;
+                w.nodeMap |= bit;
+                w.nodes = insertAt(w.nodes, index(w.nodeMap, bit), sub);
+                e.size++;
+                return w;
+            }
+            if ((n.nodeMap & bit) != 0) {
+                int i = index(n.nodeMap, bit);
+                Node child = put(n.nodes[i], key, h, value, shift + BITS, e);
+                if (child == n.nodes[i]) return n;
+                Node w = n.writable(e);
+                w.nodes[i] = child;
+                return w;
+            }
+            Node w = n.writable(e);
+            int i = index(n.dataMap, bit);
+            w.dataMap |= bit;
+            w.keys = insertAt(w.keys, i, key);
+            w.vals = insertAt(w.vals, i, value);
+            e.size++;
+            return w;
+        }
+
+        static Node remove(Node n, long key, long h, int shift, Editor<?> e) {
+            int bit = bit(h, shift);
+            if ((n.dataMap & bit) != 0) {
+                int i = index(n.dataMap, bit);
+                if (n.keys[i] != key) return n;
+                Node w = n.writable(e);
+                w.dataMap ^= bit;
+                w.keys = removeAt(w.keys, i);
+                w.vals = removeAt(w.vals, i);
+                e.size--;
+                return w;
+            }
+            if ((n.nodeMap & bit) == 0) return n;
+            int i = index(n.nodeMap, bit);
+            Node child = remove(n.nodes[i], key, h, shift + BITS, e);
+            if (child == n.nodes[i]) return n;
+            Node w = n.writable(e);
+            if (child.nodeMap == 0 && child.keys.length == 1) {
+                // one entry left below: it moves up into this node
+                w.nodeMap ^= bit;
+                w.nodes = removeAt(w.nodes, i);
+                int d = index(w.dataMap, bit);
+                w.dataMap |= bit;
+                w.keys = insertAt(w.keys, d, child.keys[0]);
+                w.vals = insertAt(w.vals, d, child.vals[0]);
+            } else {
+                w.nodes[i] = child;
+            }
+            return w;
+        }
+
+        private static Node pair(long k1, Object v1, long k2, Object v2, int shift, Editor<?> e) {
+            long h1 = mix(k1), h2 = mix(k2);
+            int b1 = bit(h1, shift), b2 = bit(h2, shift);
+            if (b1 == b2) return new Node(e.owner, 0, b1, new long[0], new Object[0], new Node[]{pair(k1, v1, k2, v2, shift + BITS, e)});
+            return Integer.compareUnsigned(b1, b2) < 0
+                    ? new Node(e.owner, b1 | b2, 0, new long[]{k1, k2}, new Object[]{v1, v2}, new Node[0])
+                    : new Node(e.owner, b1 | b2, 0, new long[]{k2, k1}, new Object[]{v2, v1}, new Node[0]);
+        }
+    }
+
+    private static int bit(long h, int shift) { return 1 << (int) ((h >>> shift) & MASK); }
+
+    private static int index(int map, int bit) { return Integer.bitCount(map & (bit - 1)); }
+
+    // splitmix64's finalizer: a bijection, so distinct keys never share all 64 bits
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long[] insertAt(long[] a, int i, long v) {
+        long[] b = Arrays.copyOf(a, a.length + 1);
+        System.arraycopy(a, i, b, i + 1, a.length - i);
+        b[i] = v;
+        return b;
+    }
+
+    private static <T> T[] insertAt(T[] a, int i, T v) {
+        T[] b = Arrays.copyOf(a, a.length + 1);
+        System.arraycopy(a, i, b, i + 1, a.length - i);
+        b[i] = v;
+        return b;
+    }
+
+    private static long[] removeAt(long[] a, int i) {
+        long[] b = new long[a.length - 1];
+        System.arraycopy(a, 0, b, 0, i);
+        System.arraycopy(a, i + 1, b, i, a.length - i - 1);
+        return b;
+    }
+
+    private static <T> T[] removeAt(T[] a, int i) {
+        T[] b = Arrays.copyOf(a, a.length - 1);
+        System.arraycopy(a, i + 1, b, i, a.length - i - 1);
+        return b;
+    }
+}
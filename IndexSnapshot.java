@@ -0,0 +1,390 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * IndexSnapshot.java
+ *
+ * The query indexes on disk, next to the task file ("<file>.idx") and rewritten after it is saved,
+ * so a start can answer searches, the category list and the chart before the tasks have been read
+ * (TodoApp.load streams them in meanwhile).
+ *
+ * Tasks are numbered by their place in the task file (ordinals). TaskFile segments hold the head,
+ * then SEGMENT tasks each, so an ordinal also names the segment to read for it. Layout (big endian):
+ *
+ *   header:      magic "TDX1" | version | task file seq | ordinals | head segment size | live | listed |
+ *                offsets of the sections below
+ *   bitmaps:     live (listed, not recurring, like TaskIndex.all), done, no due date
+ *   due:         count | epoch days ascending | their ordinals       (a date range is a binary search)
+ *   orders:      the live ordinals in each TaskIndex.Order
+ *   categories, priorities: dictionary -> bitmap
+ *   words:       dictionary -> ascending ordinals                    (a prefix is a range of keys)
+ *   rollups:     count | (category, priority, done, pending)*        (the chart)
+ *   dictionary:  count | (key offset, data offset, data length)* sorted by key; key = length | UTF-8
+ *
+ * open() maps the file and reads the header and rollups; a query reads only the dictionary entries,
+ * bitmaps and postings it needs. A snapshot whose seq or segment count does not match the task file
+ * is ignored, and the next save replaces it.
+ */
+final class IndexSnapshot {
+    static final int MAGIC = 0x54445831, VERSION = 1, HEADER = 72;
+
+    private final ByteBuffer buf;
+    final long seq;
+    final int ordinals, head, live, listed;
+    private final int words, offLive, offDone, offNoDue, offDue, offOrders, offCategories, offPriorities, offWords, offRollups;
+    private final Map<String, int[]> rollups = new HashMap<>(); // category \0 priority -> done, pending
+
+    private IndexSnapshot(ByteBuffer buf) {
+        this.buf = buf;
+        seq = buf.getLong(8);
+        ordinals = buf.getInt(16);
+        head = buf.getInt(20);
+        live = buf.getInt(24);
+        listed = buf.getInt(28);
+        offLive = buf.getInt(32);
+        offDone = buf.getInt(36);
+        offNoDue = buf.getInt(40);
+        offDue = buf.getInt(44);
+        offOrders = buf.getInt(48);
+        offCategories = buf.getInt(52);
+        offPriorities = buf.getInt(56);
+        offWords = buf.getInt(60);
+        offRollups = buf.getInt(64);
+        words = (ordinals + 63) >>> 6;
+        for (int i = 0, n = buf.getInt(offRollups); i < n; i++) {
+            int row = offRollups + 4 + i * 16;
+            rollups.put(string(buf.getInt(row)) + '\0' + string(buf.getInt(row + 4)), new int[]{buf.getInt(row + 8), buf.getInt(row + 12)});
+        }
+    }
+
+    // ---------------- Open ----------------
+
+    // The snapshot for the task file at 'seq' with 'segments' segments; null if missing, stale or damaged.
+    static IndexSnapshot open(Path path, long seq, int segments) {
+        if (!Files.exists(path)) return null;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || buf.getLong(8) != seq) return null;
+            IndexSnapshot s = new IndexSnapshot(buf);
+            return s.segments() == segments ? s : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    int segments() {
+        return ordinals <= head ? 1 : 1 + (ordinals - head + TaskFile.SEGMENT - 1) / TaskFile.SEGMENT;
+    }
+
+    int segmentOf(int ordinal) { return ordinal < head ? 0 : 1 + (ordinal - head) / TaskFile.SEGMENT; }
+
+    int firstOrdinal(int segment) { return segment == 0 ? 0 : head + (segment - 1) * TaskFile.SEGMENT; }
+
+    int segmentSize(int segment) { return Math.min(ordinals, segment == 0 ? head : firstOrdinal(segment) + TaskFile.SEGMENT) - firstOrdinal(segment); }
+
+    // ---------------- Queries ----------------
+
+    // Ordinals of the live tasks that may match every clause, in 'order'. Clauses the snapshot can
+    // only over-approximate (phrases, negated text) are left to the caller, who checks the tasks.
+    int[] query(TaskQuery query, TaskIndex.Order order) {
+        long[] hits = bitmap(offLive);
+        for (TaskQuery.Clause c : query.clauses) {
+            boolean text = c.kind == TaskQuery.Kind.WORD || c.kind == TaskQuery.Kind.PHRASE;
+            if (c.negated && text) continue;
+            long[] b = select(c);
+            if (b == null) continue;
+            for (int i = 0; i < words; i++) hits[i] = c.negated ? hits[i] & ~b[i] : hits[i] & b[i];
+        }
+        int[] out = new int[cardinality(hits)];
+        int n = 0, base = offOrders + order.ordinal() * live * 4;
+        for (int i = 0; i < live && n < out.length; i++) {
+            int o = buf.getInt(base + i * 4);
+            if ((hits[o >>> 6] & (1L << o)) != 0) out[n++] = o;
+        }
+        return out;
+    }
+
+    // Tasks a positive clause selects; null where the snapshot cannot narrow it down.
+    private long[] select(TaskQuery.Clause c) {
+        return switch (c.kind) {
+            case STATUS -> {
+                if (c.value.equals("done")) yield bitmap(offDone);
+                long[] b = c.value.equals("active") ? bitmap(offLive) : dueRange(Long.MIN_VALUE, c.from - 1);
+                long[] done = bitmap(offDone);
+                for (int i = 0; i < words; i++) b[i] &= ~done[i];
+                yield b;
+            }
+            case CATEGORY -> {
+                long[] b = new long[words];
+                for (int i = 0, n = buf.getInt(offCategories); i < n; i++) {
+                    if (key(entry(offCategories, i)).equalsIgnoreCase(c.value)) or(b, entry(offCategories, i) + 4);
+                }
+                yield b;
+            }
+            case PRIORITY -> {
+                long[] b = new long[words];
+                for (int i = 0, n = buf.getInt(offPriorities); i < n; i++) {
+                    if (key(entry(offPriorities, i)).equalsIgnoreCase(c.value)) or(b, entry(offPriorities, i) + 4);
+                }
+                yield b;
+            }
+            case DUE -> c.from == TaskQuery.NO_DUE ? bitmap(offNoDue) : dueRange(c.from, c.to);
+            case WORD -> wordPrefix(c.value);
+            case PHRASE -> {
+                String last = TaskQuery.lastWordOfPhrase(c.value);
+                yield last == null ? null : wordPrefix(last);
+            }
+            case ALL -> null;
+        };
+    }
+
+    // Words starting with the prefix (a range of the sorted dictionary), and categories with such a word.
+    private long[] wordPrefix(String prefix) {
+        long[] b = new long[words];
+        int n = buf.getInt(offWords);
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key(entry(offWords, mid)).compareTo(prefix) < 0) lo = mid + 1; else hi = mid;
+        }
+        for (int i = lo; i < n; i++) {
+            int e = entry(offWords, i);
+            if (!key(e).startsWith(prefix)) break;
+            for (int p = buf.getInt(e + 4), end = p + buf.getInt(e + 8) * 4; p < end; p += 4) {
+                int o = buf.getInt(p);
+                b[o >>> 6] |= 1L << o;
+            }
+        }
+        for (int i = 0, c = buf.getInt(offCategories); i < c; i++) {
+            for (String w : FuzzyIndex.terms(key(entry(offCategories, i)))) {
+                if (w.startsWith(prefix)) { or(b, entry(offCategories, i) + 4); break; }
+            }
+        }
+        return b;
+    }
+
+    // Tasks due in [from, to] (epoch days, inclusive).
+    private long[] dueRange(long from, long to) {
+        long[] b = new long[words];
+        int n = buf.getInt(offDue), days = offDue + 4, ords = days + n * 4;
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buf.getInt(days + mid * 4) < from) lo = mid + 1; else hi = mid;
+        }
+        for (int i = lo; i < n && buf.getInt(days + i * 4) <= to; i++) {
+            int o = buf.getInt(ords + i * 4);
+            b[o >>> 6] |= 1L << o;
+        }
+        return b;
+    }
+
+    // Category names, from the dictionary.
+    List<String> categories() {
+        List<String> out = new ArrayList<>();
+        for (int i = 0, n = buf.getInt(offCategories); i < n; i++) out.add(key(entry(offCategories, i)));
+        return out;
+    }
+
+    // {completed, pending} live tasks for the chart ("All Categories" / "All" = any).
+    int[] completion(String category, String priority) {
+        int[] out = new int[2];
+        for (Map.Entry<String, int[]> e : rollups.entrySet()) {
+            int cut = e.getKey().indexOf('\0');
+            if (!category.equals("All Categories") && !category.equals(e.getKey().substring(0, cut))) continue;
+            if (!priority.equals("All") && !priority.equals(e.getKey().substring(cut + 1))) continue;
+            out[0] += e.getValue()[0];
+            out[1] += e.getValue()[1];
+        }
+        return out;
+    }
+
+    // Position of entry i of a dictionary: key offset | data offset | data length.
+    private static int entry(int dictionary, int i) { return dictionary + 4 + i * 12; }
+
+    private String key(int entry) { return string(buf.getInt(entry)); }
+
+    private String string(int at) {
+        byte[] b = new byte[buf.getShort(at) & 0xffff];
+        buf.get(at + 2, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private long[] bitmap(int at) {
+        long[] b = new long[words];
+        for (int i = 0; i < words; i++) b[i] = buf.getLong(at + i * 8);
+        return b;
+    }
+
+    // ORs in the bitmap an entry's data field points at.
+    private void or(long[] b, int dataField) {
+        int at = buf.getInt(dataField);
+        for (int i = 0; i < words; i++) b[i] |= buf.getLong(at + i * 8);
+    }
+
+    private static int cardinality(long[] b) {
+        int n = 0;
+        for (long w : b) n += Long.bitCount(w);
+        return n;
+    }
+
+    // ---------------- Write ----------------
+
+    // Snapshot of 'index' for the task file just committed at 'seq' with 'data' in this order and a
+    // first segment of 'head' tasks. Written to a temp file and renamed, like the task file.
+    static void write(Path path, long seq, List<TodoApp.Task> data, int head, TaskIndex index, int listed) throws IOException {
+        Map<TodoApp.Task, Integer> ord = new IdentityHashMap<>(data.size());
+        for (int i = 0; i < data.size(); i++) ord.put(data.get(i), i);
+        int n = data.size(), words = (n + 63) >>> 6;
+        Out out = new Out();
+        int offLive = out.bitmap(index.all, ord, words);
+        int offDone = out.bitmap(index.done, ord, words);
+        int offNoDue = out.bitmap(index.noDue, ord, words);
+
+        List<int[]> due = new ArrayList<>();
+        for (TaskIndex.Entry e : index.ordered(TaskIndex.Order.DUE)) {
+            Integer o = ord.get(e.task);
+            if (o != null && e.due != TaskIndex.NO_DUE_KEY) due.add(new int[]{(int) e.due, o});
+        }
+        int offDue = out.at();
+        out.writeInt(due.size());
+        for (int[] d : due) out.writeInt(d[0]);
+        for (int[] d : due) out.writeInt(d[1]);
+
+        int offOrders = out.at(), live = 0;
+        for (TaskIndex.Order order : TaskIndex.Order.values()) {
+            live = 0;
+            for (TaskIndex.Entry e : index.ordered(order)) {
+                Integer o = ord.get(e.task);
+                if (o != null) { out.writeInt(o); live++; }
+            }
+        }
+
+        SortedMap<String, Set<TodoApp.Task>> byCategory = new TreeMap<>();
+        for (CategoryRegistry.Category c : index.categories.all()) byCategory.put(c.name, c.tasks);
+        int offCategories = out.bitmaps(byCategory, ord, words);
+        int offPriorities = out.bitmaps(new TreeMap<>(index.byPriority), ord, words);
+
+        List<int[]> rollups = new ArrayList<>(); // category key, priority key, done, pending
+        for (Map.Entry<String, Set<TodoApp.Task>> e : byCategory.entrySet()) {
+            Map<String, int[]> byPriority = new HashMap<>();
+            for (TodoApp.Task t : e.getValue()) byPriority.computeIfAbsent(t.priority, k -> new int[2])[t.done ? 0 : 1]++;
+            for (Map.Entry<String, int[]> p : byPriority.entrySet()) {
+                rollups.add(new int[]{out.key(e.getKey()), out.key(p.getKey()), p.getValue()[0], p.getValue()[1]});
+            }
+        }
+        int offRollups = out.at();
+        out.writeInt(rollups.size());
+        for (int[] row : rollups) for (int v : row) out.writeInt(v);
+
+        List<int[]> entries = new ArrayList<>();
+        for (Map.Entry<String, Set<TodoApp.Task>> e : index.words.entrySet()) {
+            int[] p = postings(e.getValue(), ord);
+            int at = out.at();
+            for (int o : p) out.writeInt(o);
+            entries.add(new int[]{out.key(e.getKey()), at, p.length});
+        }
+        int offWords = out.dictionary(entries);
+
+        ByteBuffer h = ByteBuffer.allocate(HEADER);
+        h.putInt(MAGIC).putInt(VERSION).putLong(seq).putInt(n).putInt(head).putInt(live).putInt(listed)
+                .putInt(offLive).putInt(offDone).putInt(offNoDue).putInt(offDue).putInt(offOrders)
+                .putInt(offCategories).putInt(offPriorities).putInt(offWords).putInt(offRollups);
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp" + ProcessHandle.current().pid());
+        try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+            os.write(h.array());
+            out.writeTo(os);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException | AccessDeniedException e) {
+            Files.copy(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static int[] postings(Set<TodoApp.Task> tasks, Map<TodoApp.Task, Integer> ord) {
+        int[] p = new int[tasks.size()];
+        int n = 0;
+        for (TodoApp.Task t : tasks) {
+            Integer o = ord.get(t);
+            if (o != null) p[n++] = o;
+        }
+        p = Arrays.copyOf(p, n);
+        Arrays.sort(p);
+        return p;
+    }
+
+    // Body writer; offsets are file offsets (after the header).
+    private static final class Out extends DataOutputStream {
+        private final Map<String, Integer> keys = new HashMap<>();
+        private final ByteArrayOutputStream bytes;
+
+        Out() { this(new ByteArrayOutputStream(1 << 16)); }
+
+        private Out(ByteArrayOutputStream bytes) {
+            super(new BufferedOutputStream(bytes, 1 << 16));
+            this.bytes = bytes;
+        }
+
+        // File offset of the next byte.
+        int at() { return HEADER + size(); }
+
+        void writeTo(OutputStream os) throws IOException {
+            flush();
+            bytes.writeTo(os);
+        }
+
+        int bitmap(Collection<TodoApp.Task> tasks, Map<TodoApp.Task, Integer> ord, int words) throws IOException {
+            long[] b = new long[words];
+            for (TodoApp.Task t : tasks) {
+                Integer o = ord.get(t);
+                if (o != null) b[o >>> 6] |= 1L << o;
+            }
+            int at = at();
+            for (long w : b) writeLong(w);
+            return at;
+        }
+
+        // One bitmap per key, then their dictionary.
+        int bitmaps(SortedMap<String, Set<TodoApp.Task>> byKey, Map<TodoApp.Task, Integer> ord, int words) throws IOException {
+            List<int[]> entries = new ArrayList<>();
+            for (Map.Entry<String, Set<TodoApp.Task>> e : byKey.entrySet()) {
+                int at = bitmap(e.getValue(), ord, words);
+                entries.add(new int[]{key(e.getKey()), at, words});
+            }
+            return dictionary(entries);
+        }
+
+        // Offset of the key, written once: length | UTF-8.
+        int key(String k) throws IOException {
+            Integer at = keys.get(k);
+            if (at != null) return at;
+            byte[] b = k.getBytes(StandardCharsets.UTF_8);
+            int len = Math.min(b.length, 0xffff);
+            at = at();
+            writeShort(len);
+            write(b, 0, len);
+            keys.put(k, at);
+            return at;
+        }
+
+        int dictionary(List<int[]> entries) throws IOException {
+            int at = at();
+            writeInt(entries.size());
+            for (int[] e : entries) {
+                writeInt(e[0]);
+                writeInt(e[1]);
+                writeInt(e[2]);
+            }
+            return at;
+        }
+    }
+}
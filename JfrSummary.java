@@ -0,0 +1,124 @@
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.List;
+
+/**
+ * JfrSummary.java
+ *
+ * Summarises a .jfr recording of the app into per-operation latency tables
+ * (the todo.* events from TodoEvents and Todo.StoreSaveEvent), plus how much
+ * GC pause time overlapped each operation.
+ *
+ * Run: java JfrSummary todo.jfr [--all]    (--all also lists the 20 slowest events)
+ */
+public class JfrSummary {
+
+    static class Op {
+        final String name;
+        final List<Long> nanos = new ArrayList<>();
+        long gcOverlapNanos;
+        int gcHits;
+        long items;
+        long raw, packed; // bytes before / after compression (Save, DecodeBlock)
+
+        Op(String name) { this.name = name; }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: java JfrSummary <recording.jfr> [--all]");
+            System.exit(2);
+        }
+        boolean all = Arrays.asList(args).contains("--all");
+
+        List<RecordedEvent> ops = new ArrayList<>();
+        List<Instant[]> pauses = new ArrayList<>();
+        try (RecordingFile rf = new RecordingFile(Paths.get(args[0]))) {
+            while (rf.hasMoreEvents()) {
+                RecordedEvent e = rf.readEvent();
+                String type = e.getEventType().getName();
+                if (type.startsWith("todo.")) ops.add(e);
+                else if (type.equals("jdk.GCPhasePause")) pauses.add(new Instant[]{e.getStartTime(), e.getEndTime()});
+            }
+        }
+        pauses.sort(Comparator.comparing(p -> p[0]));
+
+        Map<String, Op> byName = new TreeMap<>();
+        for (RecordedEvent e : ops) {
+            Op op = byName.computeIfAbsent(e.getEventType().getName(), Op::new);
+            op.nanos.add(e.getDuration().toNanos());
+            if (e.hasField("taskCount")) op.items += e.getInt("taskCount");
+            if (e.hasField("rawBytes") && e.getLong("rawBytes") > 0) {
+                op.raw += e.getLong("rawBytes");
+                op.packed += e.hasField("packedBytes") ? e.getLong("packedBytes") : e.getLong("bytes");
+            }
+            long overlap = overlap(pauses, e.getStartTime(), e.getEndTime());
+            if (overlap > 0) { op.gcOverlapNanos += overlap; op.gcHits++; }
+        }
+
+        System.out.printf("%-18s %7s %10s %9s %9s %9s %9s %9s %10s %7s%n",
+                "operation", "count", "total ms", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms", "gc ms", "w/ gc");
+        for (Op op : byName.values()) {
+            long[] d = op.nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            long total = Arrays.stream(d).sum();
+            System.out.printf("%-18s %7d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %10.1f %7d%n",
+                    op.name, d.length, total / 1e6, total / 1e6 / d.length, pct(d, 50), pct(d, 90), pct(d, 99),
+                    d[d.length - 1] / 1e6, op.gcOverlapNanos / 1e6, op.gcHits);
+        }
+        for (Op op : byName.values()) {
+            if (op.items > 0) System.out.printf("%-18s avg %.0f tasks per event%n", op.name, (double) op.items / op.nanos.size());
+        }
+        for (Op op : byName.values()) {
+            if (op.raw == 0) continue;
+            long total = op.nanos.stream().mapToLong(Long::longValue).sum();
+            System.out.printf("%-18s compression %.2fx, %.0f MB/s uncompressed%n", op.name,
+                    (double) op.raw / Math.max(1, op.packed), op.raw / 1e6 / Math.max(1e-9, total / 1e9));
+        }
+
+        if (all) {
+            ops.sort((a, b) -> b.getDuration().compareTo(a.getDuration()));
+            System.out.println("\nSlowest events:");
+            for (RecordedEvent e : ops.subList(0, Math.min(20, ops.size()))) {
+                System.out.printf("  %9.2f ms  %-16s %s  %s%n", e.getDuration().toNanos() / 1e6,
+                        e.getEventType().getName(), e.getStartTime(), fields(e));
+            }
+        }
+    }
+
+    static double pct(long[] sorted, double p) {
+        int i = Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(p / 100 * sorted.length) - 1));
+        return sorted[i] / 1e6;
+    }
+
+    // Sum of GC pause time inside [start, end]; pauses are sorted by start.
+    static long overlap(List<Instant[]> pauses, Instant start, Instant end) {
+        int lo = 0, hi = pauses.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pauses.get(mid)[1].isBefore(start)) lo = mid + 1; else hi = mid;
+        }
+        long sum = 0;
+        for (int i = lo; i < pauses.size() && pauses.get(i)[0].isBefore(end); i++) {
+            Instant s = pauses.get(i)[0].isAfter(start) ? pauses.get(i)[0] : start;
+            Instant e = pauses.get(i)[1].isBefore(end) ? pauses.get(i)[1] : end;
+            if (e.isAfter(s)) sum += Duration.between(s, e).toNanos();
+        }
+        return sum;
+    }
+
+    static String fields(RecordedEvent e) {
+        StringBuilder sb = new StringBuilder();
+        for (String f : new String[]{"taskCount", "resultCount", "queryLength", "filter", "bytes", "rawBytes", "packedBytes", "source", "counted"}) {
+            if (!e.hasField(f)) continue;
+            Object v = e.getValue(f);
+            sb.append(f).append('=').append(v).append(' ');
+        }
+        return sb.toString().trim();
+    }
+}
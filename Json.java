@@ -0,0 +1,145 @@
+import java.util.*;
+import java.util.List;
+
+/**
+ * Json.java
+ *
+ * Just enough JSON for the HTTP API: parse() into Map / List / String / Double / Boolean / null,
+ * and quote() for writing.
+ */
+final class Json {
+    private final String s;
+    private int i;
+
+    private Json(String s) { this.s = s; }
+
+    static Object parse(String text) {
+        Json p = new Json(text);
+        p.ws();
+        Object v = p.value();
+        p.ws();
+        if (p.i != p.s.length()) throw p.error("trailing characters");
+        return v;
+    }
+
+    static String quote(String v) {
+        if (v == null) return "null";
+        StringBuilder sb = new StringBuilder(v.length() + 2).append('"');
+        for (int k = 0; k < v.length(); k++) {
+            char c = v.charAt(k);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private Object value() {
+        if (i >= s.length()) throw error("unexpected end");
+        char c = s.charAt(i);
+        return switch (c) {
+            case '{' -> object();
+            case '[' -> array();
+            case '"' -> string();
+            case 't' -> literal("true", Boolean.TRUE);
+            case 'f' -> literal("false", Boolean.FALSE);
+            case 'n' -> literal("null", null);
+            default -> number();
+        };
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        i++;
+        ws();
+        if (peek('}')) { i++; return m; }
+        while (true) {
+            ws();
+            if (!peek('"')) throw error("expected key");
+            String k = string();
+            ws();
+            expect(':');
+            ws();
+            m.put(k, value());
+            ws();
+            if (peek(',')) { i++; continue; }
+            expect('}');
+            return m;
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> l = new ArrayList<>();
+        i++;
+        ws();
+        if (peek(']')) { i++; return l; }
+        while (true) {
+            ws();
+            l.add(value());
+            ws();
+            if (peek(',')) { i++; continue; }
+            expect(']');
+            return l;
+        }
+    }
+
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        i++;
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') { sb.append(c); continue; }
+            if (i >= s.length()) break;
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    if (i + 4 > s.length()) throw error("bad escape");
+                    sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    i += 4;
+                }
+                default -> sb.append(e);
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private Object number() {
+        int start = i;
+        while (i < s.length() && "+-0123456789.eE".indexOf(s.charAt(i)) >= 0) i++;
+        if (start == i) throw error("unexpected character '" + s.charAt(i) + "'");
+        return Double.parseDouble(s.substring(start, i));
+    }
+
+    private Object literal(String word, Object v) {
+        if (!s.startsWith(word, i)) throw error("bad literal");
+        i += word.length();
+        return v;
+    }
+
+    private boolean peek(char c) { return i < s.length() && s.charAt(i) == c; }
+
+    private void expect(char c) {
+        if (!peek(c)) throw error("expected '" + c + "'");
+        i++;
+    }
+
+    private void ws() { while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++; }
+
+    private IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException("JSON " + msg + " at " + i);
+    }
+}
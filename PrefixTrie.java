@@ -0,0 +1,214 @@
+import java.util.*;
+import java.util.List;
+
+/**
+ * PrefixTrie.java
+ *
+ * Compact prefix trie for autocompletion (task titles, category names).
+ *  - keys are matched case-insensitively, the most recently used spelling is returned
+ *  - each entry is ranked by "frecency": ln(sum of exp((t - EPOCH) / HALF_LIFE)) over its uses,
+ *    so frequency and recency combine without ever having to decay stored scores
+ *  - every node keeps the best score of its subtree, so top-k is a best-first walk
+ *    that touches only O(k * depth) nodes instead of the whole subtree
+ *
+ * Children are sorted parallel char/node arrays (no per-node HashMap).
+ */
+class PrefixTrie {
+    static final long EPOCH = 1577836800000L; // 2020-01-01T00:00Z
+    static final double HALF_LIFE = 7 * 24 * 3600 * 1000.0 / Math.log(2);
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_KIDS = new Node[0];
+
+    static final class Node {
+        char[] keys = NO_KEYS;
+        Node[] kids = NO_KIDS;
+        int n;
+        String value;       // display form, null if no key ends here
+        int count;
+        long last;
+        double score = Double.NEGATIVE_INFINITY;
+        double best = Double.NEGATIVE_INFINITY;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, 0, n, c);
+            return i >= 0 ? kids[i] : null;
+        }
+
+        Node childOrAdd(char c) {
+            int i = Arrays.binarySearch(keys, 0, n, c);
+            if (i >= 0) return kids[i];
+            i = -i - 1;
+            if (n == keys.length) {
+                int cap = Math.max(2, n * 2);
+                keys = Arrays.copyOf(keys, cap);
+                kids = Arrays.copyOf(kids, cap);
+            }
+            System.arraycopy(keys, i, keys, i + 1, n - i);
+            System.arraycopy(kids, i, kids, i + 1, n - i);
+            Node c2 = new Node();
+            keys[i] = c;
+            kids[i] = c2;
+            n++;
+            return c2;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, 0, n, c);
+            if (i < 0) return;
+            System.arraycopy(keys, i + 1, keys, i, n - i - 1);
+            System.arraycopy(kids, i + 1, kids, i, n - i - 1);
+            kids[--n] = null;
+        }
+
+        void recomputeBest() {
+            double b = score;
+            for (int i = 0; i < n; i++) if (kids[i].best > b) b = kids[i].best;
+            best = b;
+        }
+    }
+
+    private final Node root = new Node();
+    private int size;
+
+    static String normalize(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static double weight(long when) { return (when - EPOCH) / HALF_LIFE; }
+
+    int size() { return size; }
+
+    void clear() {
+        root.keys = NO_KEYS;
+        root.kids = NO_KIDS;
+        root.n = 0;
+        root.best = Double.NEGATIVE_INFINITY;
+        size = 0;
+    }
+
+    // Records one use of 'value' at time 'when' (epoch millis).
+    void add(String value, long when) {
+        String key = normalize(value);
+        if (key.isEmpty()) return;
+        Node[] path = path(key, true);
+        Node node = path[path.length - 1];
+        if (node.count == 0) size++;
+        node.count++;
+        node.score = logAddExp(node.score, weight(when));
+        if (when >= node.last || node.value == null) { node.value = value.trim(); node.last = when; }
+        for (int i = path.length - 1; i >= 0; i--) path[i].recomputeBest();
+    }
+
+    // Undoes one add(value, when).
+    void remove(String value, long when) {
+        String key = normalize(value);
+        if (key.isEmpty()) return;
+        Node[] path = path(key, false);
+        if (path == null) return;
+        Node node = path[path.length - 1];
+        if (node.count == 0) return;
+        if (--node.count == 0) {
+            node.value = null;
+            node.score = Double.NEGATIVE_INFINITY;
+            size--;
+        } else {
+            node.score = logSubExp(node.score, weight(when));
+        }
+        for (int i = path.length - 1; i >= 0; i--) {
+            Node p = path[i];
+            if (i > 0 && p.count == 0 && p.n == 0) path[i - 1].removeChild(key.charAt(i - 1));
+            p.recomputeBest();
+        }
+    }
+
+    // Moves every use of 'from' to 'to' (category rename/merge), keeping counts and scores.
+    void rename(String from, String to) {
+        String fk = normalize(from), tk = normalize(to);
+        if (fk.equals(tk) || tk.isEmpty()) return;
+        Node[] fp = path(fk, false);
+        Node src = fp == null ? null : fp[fp.length - 1];
+        if (src == null || src.count == 0) return;
+        int count = src.count;
+        double score = src.score;
+        long last = src.last;
+
+        src.count = 0;
+        src.value = null;
+        src.score = Double.NEGATIVE_INFINITY;
+        size--;
+        for (int i = fp.length - 1; i >= 0; i--) {
+            if (i > 0 && fp[i].count == 0 && fp[i].n == 0) fp[i - 1].removeChild(fk.charAt(i - 1));
+            fp[i].recomputeBest();
+        }
+
+        Node[] tp = path(tk, true);
+        Node dst = tp[tp.length - 1];
+        if (dst.count == 0) size++;
+        dst.count += count;
+        dst.score = logAddExp(dst.score, score);
+        if (last >= dst.last || dst.value == null) { dst.value = to.trim(); dst.last = last; }
+        for (int i = tp.length - 1; i >= 0; i--) tp[i].recomputeBest();
+    }
+
+    // Nodes from the root to 'key' (inclusive); null if absent and !create.
+    private Node[] path(String key, boolean create) {
+        Node[] path = new Node[key.length() + 1];
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < key.length(); i++) {
+            node = create ? node.childOrAdd(key.charAt(i)) : node.child(key.charAt(i));
+            if (node == null) return null;
+            path[i + 1] = node;
+        }
+        return path;
+    }
+
+    // Top-k completions for the prefix, best first. 'exclude' (normalized) is skipped.
+    List<String> complete(String prefix, int k, String exclude) {
+        String key = normalize(prefix);
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) node = node.child(key.charAt(i));
+        List<String> out = new ArrayList<>(k);
+        if (node == null || k <= 0) return out;
+
+        PriorityQueue<Candidate> pq = new PriorityQueue<>();
+        pq.add(new Candidate(node, node.best, false));
+        while (!pq.isEmpty() && out.size() < k) {
+            Candidate c = pq.poll();
+            Node nd = c.node;
+            if (c.terminal) {
+                if (exclude == null || !normalize(nd.value).equals(exclude)) out.add(nd.value);
+                continue;
+            }
+            if (nd.count > 0) pq.add(new Candidate(nd, nd.score, true));
+            for (int i = 0; i < nd.n; i++) pq.add(new Candidate(nd.kids[i], nd.kids[i].best, false));
+        }
+        return out;
+    }
+
+    // Either a whole subtree (ranked by its best score) or a single entry (ranked by its own score).
+    private static final class Candidate implements Comparable<Candidate> {
+        final Node node;
+        final double rank;
+        final boolean terminal;
+
+        Candidate(Node node, double rank, boolean terminal) { this.node = node; this.rank = rank; this.terminal = terminal; }
+
+        @Override public int compareTo(Candidate o) { return Double.compare(o.rank, rank); }
+    }
+
+    List<String> complete(String prefix, int k) { return complete(prefix, k, null); }
+
+    static double logAddExp(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) return b;
+        if (b == Double.NEGATIVE_INFINITY) return a;
+        double m = Math.max(a, b);
+        return m + Math.log1p(Math.exp(-Math.abs(a - b)));
+    }
+
+    static double logSubExp(double a, double b) {
+        if (b >= a) return a - 1e-9; // rounding: keep the entry, just slightly lower
+        return a + Math.log1p(-Math.exp(b - a));
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Recurrence.java
+ *
+ * Repeat rule of a recurring task, an RFC 5545 RRULE subset:
+ *
+ *     FREQ=DAILY|WEEKLY|MONTHLY|YEARLY [;INTERVAL=n] [;BYDAY=MO,TU,...] [;COUNT=n] [;UNTIL=YYYYMMDD]
+ *
+ *  - the task's due date is the first occurrence (DTSTART)
+ *  - BYDAY applies to WEEKLY; MONTHLY / YEARLY keep the start's day, clamped to short months
+ *  - next() jumps straight to the period containing 'from', so finding the occurrences of a
+ *    window costs O(occurrences in it) no matter how old the series is
+ *
+ * Occurrences are never stored; per-occurrence completion lives in Task.doneOccurrences.
+ */
+class Recurrence implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    enum Freq { DAILY, WEEKLY, MONTHLY, YEARLY }
+
+    // Choices offered in the task dialog; anything else is typed as a rule.
+    static final Map<String, String> PRESETS = new LinkedHashMap<>();
+    static {
+        PRESETS.put("Never", "");
+        PRESETS.put("Daily", "FREQ=DAILY");
+        PRESETS.put("Weekdays", "FREQ=WEEKLY;BYDAY=MO,TU,WE,TH,FR");
+        PRESETS.put("Weekly", "FREQ=WEEKLY");
+        PRESETS.put("Every 2 weeks", "FREQ=WEEKLY;INTERVAL=2");
+        PRESETS.put("Monthly", "FREQ=MONTHLY");
+        PRESETS.put("Yearly", "FREQ=YEARLY");
+    }
+
+    final Freq freq;
+    final int interval;
+    final int dayMask;      // WEEKLY: bit (dayOfWeek - 1); 0 = the start's weekday
+    final int count;        // 0 = unbounded
+    final LocalDate until;  // nullable, inclusive
+
+    Recurrence(Freq freq, int interval, int dayMask, int count, LocalDate until) {
+        this.freq = freq;
+        this.interval = Math.max(1, interval);
+        this.dayMask = dayMask;
+        this.count = Math.max(0, count);
+        this.until = until;
+    }
+
+    // ---------------- Rule text ----------------
+
+    // Parses a rule or preset name; null for "" / "Never". Throws IllegalArgumentException on bad input.
+    static Recurrence parse(String text) {
+        String rule = PRESETS.getOrDefault(text == null ? "" : text.trim(), text == null ? "" : text.trim());
+        if (rule.toUpperCase(Locale.ROOT).startsWith("RRULE:")) rule = rule.substring(6);
+        if (rule.isEmpty()) return null;
+        Freq freq = null;
+        int interval = 1, mask = 0, count = 0;
+        LocalDate until = null;
+        for (String part : rule.split(";")) {
+            String[] kv = part.trim().split("=", 2);
+            if (kv.length != 2) throw new IllegalArgumentException("Bad rule part: " + part);
+            String v = kv[1].trim().toUpperCase(Locale.ROOT);
+            switch (kv[0].trim().toUpperCase(Locale.ROOT)) {
+                case "FREQ" -> freq = Freq.valueOf(v);
+                case "INTERVAL" -> interval = Integer.parseInt(v);
+                case "COUNT" -> count = Integer.parseInt(v);
+                case "UNTIL" -> until = LocalDate.parse(v.length() >= 8 ? v.substring(0, 4) + "-" + v.substring(4, 6) + "-" + v.substring(6, 8) : v);
+                case "BYDAY" -> {
+                    for (String d : v.split(",")) mask |= 1 << dayOf(d.trim()).ordinal();
+                }
+                default -> throw new IllegalArgumentException("Unsupported rule part: " + kv[0]);
+            }
+        }
+        if (freq == null) throw new IllegalArgumentException("FREQ is required");
+        if (interval < 1 || count < 0) throw new IllegalArgumentException("INTERVAL and COUNT must be positive");
+        if (mask != 0 && freq != Freq.WEEKLY) throw new IllegalArgumentException("BYDAY is only supported with FREQ=WEEKLY");
+        return new Recurrence(freq, interval, mask, count, until);
+    }
+
+    private static DayOfWeek dayOf(String code) {
+        for (DayOfWeek d : DayOfWeek.values()) if (d.name().startsWith(code) && code.length() == 2) return d;
+        throw new IllegalArgumentException("Bad BYDAY value: " + code);
+    }
+
+    String toRule() {
+        StringBuilder sb = new StringBuilder("FREQ=").append(freq);
+        if (interval > 1) sb.append(";INTERVAL=").append(interval);
+        if (dayMask != 0) {
+            StringJoiner j = new StringJoiner(",");
+            for (DayOfWeek d : DayOfWeek.values()) if ((dayMask & 1 << d.ordinal()) != 0) j.add(d.name().substring(0, 2));
+            sb.append(";BYDAY=").append(j);
+        }
+        if (count > 0) sb.append(";COUNT=").append(count);
+        if (until != null) sb.append(";UNTIL=").append(until.toString().replace("-", ""));
+        return sb.toString();
+    }
+
+    // Preset name if the rule is one, else the rule itself (for the dialog's combo box).
+    String label() {
+        String rule = toRule();
+        for (Map.Entry<String, String> e : PRESETS.entrySet()) if (e.getValue().equals(rule)) return e.getKey();
+        return rule;
+    }
+
+    // Short text for the task list, e.g. "every 2 weeks on Mon, Thu".
+    String describe() {
+        String unit = switch (freq) {
+            case DAILY -> "day";
+            case WEEKLY -> "week";
+            case MONTHLY -> "month";
+            case YEARLY -> "year";
+        };
+        StringBuilder sb = new StringBuilder(interval == 1 ? "every " + unit : "every " + interval + " " + unit + "s");
+        if (dayMask != 0) {
+            StringJoiner j = new StringJoiner(", ");
+            for (DayOfWeek d : DayOfWeek.values()) {
+                if ((dayMask & 1 << d.ordinal()) != 0) j.add(d.getDisplayName(TextStyle.SHORT, Locale.getDefault()));
+            }
+            sb.append(" on ").append(j);
+        }
+        if (count > 0) sb.append(", ").append(count).append(" times");
+        if (until != null) sb.append(" until ").append(until);
+        return sb.toString();
+    }
+
+    @Override public String toString() { return toRule(); }
+
+    // ---------------- Occurrences ----------------
+
+    // First occurrence on or after 'from' of the series starting at 'start', or null if it has ended.
+    LocalDate next(LocalDate start, LocalDate from) {
+        if (from.isBefore(start)) from = start;
+        LocalDate d = switch (freq) {
+            case DAILY -> {
+                long k = ceilDiv(ChronoUnit.DAYS.between(start, from), interval);
+                yield start.plusDays(k * interval);
+            }
+            case WEEKLY -> nextWeekly(start, from);
+            case MONTHLY, YEARLY -> {
+                int months = freq == Freq.MONTHLY ? interval : 12 * interval;
+                long k = ceilDiv(ChronoUnit.MONTHS.between(YearMonth.from(start), YearMonth.from(from)), months);
+                LocalDate c = onDay(start, k * months);
+                if (c.isBefore(from)) c = onDay(start, (k + 1) * months);
+                yield c;
+            }
+        };
+        if (until != null && d.isAfter(until)) return null;
+        if (count > 0 && index(start, d) >= count) return null;
+        return d;
+    }
+
+    // Occurrences in [from, to], ascending.
+    List<LocalDate> between(LocalDate start, LocalDate from, LocalDate to) {
+        List<LocalDate> out = new ArrayList<>();
+        for (LocalDate d = next(start, from); d != null && !d.isAfter(to); d = next(start, d.plusDays(1))) out.add(d);
+        return out;
+    }
+
+    private int mask(LocalDate start) { return dayMask != 0 ? dayMask : 1 << start.getDayOfWeek().ordinal(); }
+
+    private LocalDate nextWeekly(LocalDate start, LocalDate from) {
+        int mask = mask(start);
+        LocalDate week0 = start.minusDays(start.getDayOfWeek().ordinal());
+        long w = ChronoUnit.WEEKS.between(week0, from.minusDays(from.getDayOfWeek().ordinal()));
+        long k = w / interval;
+        if (w % interval != 0) {
+            k++;
+            from = week0.plusWeeks(k * interval);
+        }
+        for (int tries = 0; tries < 2; tries++) {
+            LocalDate weekStart = week0.plusWeeks(k * interval);
+            for (int dow = from.isAfter(weekStart) ? from.getDayOfWeek().ordinal() : 0; dow < 7; dow++) {
+                if ((mask & 1 << dow) != 0) return weekStart.plusDays(dow);
+            }
+            k++;
+            from = week0.plusWeeks(k * interval);
+        }
+        throw new IllegalStateException("empty BYDAY");
+    }
+
+    // Zero-based number of the occurrence 'd' within the series (for COUNT).
+    private long index(LocalDate start, LocalDate d) {
+        return switch (freq) {
+            case DAILY -> ChronoUnit.DAYS.between(start, d) / interval;
+            case WEEKLY -> {
+                int mask = mask(start);
+                int perWeek = Integer.bitCount(mask);
+                LocalDate week0 = start.minusDays(start.getDayOfWeek().ordinal());
+                long k = ChronoUnit.WEEKS.between(week0, d.minusDays(d.getDayOfWeek().ordinal())) / interval;
+                int beforeStart = Integer.bitCount(mask & ((1 << start.getDayOfWeek().ordinal()) - 1));
+                int beforeDay = Integer.bitCount(mask & ((1 << d.getDayOfWeek().ordinal()) - 1));
+                yield k * perWeek + beforeDay - beforeStart;
+            }
+            case MONTHLY -> ChronoUnit.MONTHS.between(YearMonth.from(start), YearMonth.from(d)) / interval;
+            case YEARLY -> ChronoUnit.MONTHS.between(YearMonth.from(start), YearMonth.from(d)) / (12L * interval);
+        };
+    }
+
+    private static LocalDate onDay(LocalDate start, long plusMonths) {
+        YearMonth ym = YearMonth.from(start).plusMonths(plusMonths);
+        return ym.atDay(Math.min(start.getDayOfMonth(), ym.lengthOfMonth()));
+    }
+
+    private static long ceilDiv(long a, long b) { return -Math.floorDiv(-a, b); }
+}
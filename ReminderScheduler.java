@@ -0,0 +1,124 @@
+import javax.swing.*;
+import java.time.*;
+import java.util.*;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ReminderScheduler.java
+ *
+ * Due-date reminders for TodoApp tasks on one daemon thread.
+ *  - each open task with a due date gets one timeout at REMIND_AT on its due day
+ *    (a task due today whose reminder time has passed fires right away; overdue ones do not)
+ *  - a recurring task has one timeout for its next open occurrence, re-armed on the EDT when it
+ *    fires (finding the next one reads the series' fields, which the EDT writes)
+ *  - timeouts live in a TimingWheel with 1 s ticks: schedule/cancel are O(1), so TodoApp can
+ *    reschedule from indexAdd / indexRemove on every edit, even with hundreds of thousands pending
+ *  - the thread sleeps until the wheel has work and hands each batch of due tasks to the EDT
+ *
+ * Reminder time: -Dtodo.remindAt=HH:mm (default 09:00).
+ */
+class ReminderScheduler {
+    static final long TICK_MILLIS = 1000;
+    static final long MAX_SLEEP_MILLIS = 60_000;
+    static final LocalTime REMIND_AT = LocalTime.parse(System.getProperty("todo.remindAt", "09:00"));
+
+    private final Consumer<List<TodoApp.Task>> onDue;
+    private final Map<TodoApp.Task, TimingWheel.Timeout<TodoApp.Task>> pending = new IdentityHashMap<>();
+    private TimingWheel<TodoApp.Task> wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    private long wakeAt = Long.MAX_VALUE;
+    private Thread thread;
+
+    // 'onDue' runs on the EDT with the tasks whose reminder time has come.
+    ReminderScheduler(Consumer<List<TodoApp.Task>> onDue) { this.onDue = onDue; }
+
+    synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this::run, "todo-reminders");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static long remindAt(LocalDate due) {
+        return due.atTime(REMIND_AT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // (Re)schedules the task's reminder from its current due date and status.
+    synchronized void schedule(TodoApp.Task t) {
+        cancel(t);
+        if (t.done || t.due == null) return;
+        long now = System.currentTimeMillis();
+        if (t.isRecurring()) {
+            LocalDate day = nextOpenOccurrence(t, now);
+            if (day != null) arm(t, new TodoApp.Occurrence(t, day), remindAt(day));
+            return;
+        }
+        long at = remindAt(t.due);
+        if (at < now && t.due.isBefore(LocalDate.now())) return;
+        arm(t, t, at);
+    }
+
+    private void arm(TodoApp.Task key, TodoApp.Task value, long at) {
+        pending.put(key, wheel.schedule(value, at));
+        if (at < wakeAt) notifyAll();
+    }
+
+    // First not-completed occurrence whose reminder time is still ahead (a bounded lookahead).
+    private static LocalDate nextOpenOccurrence(TodoApp.Task t, long now) {
+        LocalDate d = t.repeat.next(t.due, LocalDate.now());
+        for (int i = 0; d != null && i < 1000; i++, d = t.repeat.next(t.due, d.plusDays(1))) {
+            if (remindAt(d) > now && !t.isDoneOn(d)) return d;
+        }
+        return null;
+    }
+
+    synchronized void cancel(TodoApp.Task t) {
+        TimingWheel.Timeout<TodoApp.Task> timeout = pending.remove(t);
+        if (timeout != null) wheel.cancel(timeout);
+    }
+
+    synchronized void clear() {
+        pending.clear();
+        wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    }
+
+    synchronized int pendingCount() { return pending.size(); }
+
+    // EDT: the series' next occurrence, unless it was rescheduled or cancelled since 'fired' fired.
+    private synchronized void rearm(TodoApp.Task series, TimingWheel.Timeout<TodoApp.Task> fired) {
+        if (pending.get(series) == fired) schedule(series);
+    }
+
+    private void run() {
+        List<TodoApp.Task> due = new ArrayList<>();
+        while (true) {
+            Map<TodoApp.Task, TimingWheel.Timeout<TodoApp.Task>> series = new IdentityHashMap<>();
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                wheel.advance(now, due);
+                for (TodoApp.Task t : due) {
+                    TodoApp.Task stored = TodoApp.seriesOf(t);
+                    if (stored != t) series.put(stored, pending.get(stored)); // stays pending until re-armed
+                    else pending.remove(stored);
+                }
+                if (due.isEmpty()) {
+                    long sleep = Math.max(1, wheel.millisToNextWork(now, MAX_SLEEP_MILLIS));
+                    wakeAt = now + sleep;
+                    try {
+                        wait(sleep);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    wakeAt = Long.MAX_VALUE;
+                    continue;
+                }
+            }
+            List<TodoApp.Task> batch = List.copyOf(due);
+            due.clear();
+            SwingUtilities.invokeLater(() -> {
+                series.forEach(this::rearm);
+                onDue.accept(batch);
+            });
+        }
+    }
+}
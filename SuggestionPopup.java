@@ -0,0 +1,146 @@
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * SuggestionPopup.java
+ *
+ * Non-focusable suggestions list under a text field. Up/Down move the selection,
+ * Enter accepts the selected suggestion (otherwise Enter reaches the field as usual),
+ * Escape closes it. Suggestions come from a function such as PrefixTrie.complete.
+ */
+class SuggestionPopup {
+    private final JTextField field;
+    private final Function<String, List<String>> source;
+    private final DefaultListModel<String> model = new DefaultListModel<>();
+    private final JList<String> list = new JList<>(model);
+    private JWindow window;
+    private boolean adjusting;
+
+    SuggestionPopup(JTextField field, Function<String, List<String>> source) {
+        this.field = field;
+        this.source = source;
+
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        list.setBorder(new EmptyBorder(4, 4, 4, 4));
+        list.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                int idx = list.locationToIndex(e.getPoint());
+                if (idx >= 0) accept(model.get(idx));
+            }
+        });
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { changed(); }
+            public void removeUpdate(DocumentEvent e) { changed(); }
+            public void changedUpdate(DocumentEvent e) { }
+        });
+
+        // Key listeners run before key bindings, so consuming Enter keeps the field's action from firing.
+        field.addKeyListener(new KeyAdapter() {
+            @Override public void keyPressed(KeyEvent e) {
+                if (!isVisible()) return;
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN -> { move(1); e.consume(); }
+                    case KeyEvent.VK_UP -> { move(-1); e.consume(); }
+                    case KeyEvent.VK_ESCAPE -> { hide(); e.consume(); }
+                    case KeyEvent.VK_ENTER -> {
+                        if (list.getSelectedIndex() >= 0) { accept(list.getSelectedValue()); e.consume(); }
+                        else hide();
+                    }
+                    default -> { }
+                }
+            }
+        });
+        field.addFocusListener(new FocusAdapter() {
+            @Override public void focusLost(FocusEvent e) { hide(); }
+        });
+    }
+
+    boolean isVisible() { return window != null && window.isVisible(); }
+
+    void hide() { if (window != null) window.setVisible(false); }
+
+    private void move(int delta) {
+        int n = model.size();
+        if (n == 0) return;
+        int i = list.getSelectedIndex() + delta;
+        i = i < 0 ? n - 1 : i >= n ? 0 : i;
+        list.setSelectedIndex(i);
+        list.ensureIndexIsVisible(i);
+    }
+
+    private void accept(String value) {
+        adjusting = true;
+        try {
+            field.setText(value);
+            field.setCaretPosition(value.length());
+        } finally {
+            adjusting = false;
+        }
+        hide();
+    }
+
+    // Checked here, while accept() is still setting the text; the update itself runs after it.
+    private void changed() {
+        if (!adjusting) SwingUtilities.invokeLater(this::update);
+    }
+
+    private void update() {
+        String text = field.getText();
+        if (text.isBlank() || !field.isShowing() || !field.hasFocus()) { hide(); return; }
+        List<String> items = source.apply(text);
+        if (items.isEmpty()) { hide(); return; }
+
+        model.clear();
+        for (String s : items) model.addElement(s);
+        list.clearSelection();
+        list.setVisibleRowCount(Math.min(8, items.size()));
+
+        if (window == null) {
+            window = new JWindow(SwingUtilities.getWindowAncestor(field));
+            window.setFocusableWindowState(false);
+            JScrollPane sp = new JScrollPane(list);
+            sp.setBorder(BorderFactory.createLineBorder(new Color(0, 0, 0, 40)));
+            window.getContentPane().add(sp);
+        }
+        window.pack();
+        Point p = field.getLocationOnScreen();
+        window.setSize(Math.max(field.getWidth(), window.getWidth()), window.getHeight());
+        window.setLocation(p.x, p.y + field.getHeight());
+        window.setVisible(true);
+    }
+
+    // Inline completion: while typing at the end of 'editor', append the best match and select the added part.
+    static void inlineComplete(JTextField editor, Function<String, List<String>> source) {
+        boolean[] adjusting = {false};
+        editor.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                if (adjusting[0]) return;
+                SwingUtilities.invokeLater(() -> {
+                    String typed = editor.getText();
+                    if (typed.isBlank() || editor.getCaretPosition() != typed.length()) return;
+                    List<String> best = source.apply(typed);
+                    if (best.isEmpty()) return;
+                    String match = best.get(0);
+                    if (match.length() <= typed.length() || !match.regionMatches(true, 0, typed, 0, typed.length())) return;
+                    adjusting[0] = true;
+                    try {
+                        editor.setText(typed + match.substring(typed.length()));
+                        editor.select(typed.length(), match.length());
+                    } finally {
+                        adjusting[0] = false;
+                    }
+                });
+            }
+            public void removeUpdate(DocumentEvent e) { }
+            public void changedUpdate(DocumentEvent e) { }
+        });
+    }
+}
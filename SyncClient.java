@@ -0,0 +1,291 @@
+import java.io.*;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SyncClient.java
+ *
+ * Delta sync of the task list with a sync server (SyncProtocol; see SyncServer for a local one).
+ *
+ *  - every task carries a version vector; a local edit (modifiedAt != syncedAt) bumps this replica's
+ *    entry when it is pushed, and syncedAt catches up once the server has acknowledged it
+ *  - a round pulls the server's changes since the saved cursor, then pushes local edits and deletes;
+ *    only changed tasks travel, gzip'd, in batches, so traffic follows the edits, not the list size
+ *  - concurrent versions are merged field by field (TaskCrdt) on the client, which pushes the result;
+ *    a delete wins over edits
+ *  - the cursor, replica id and deletes not yet pushed live in "<save file>.sync"
+ *
+ * Rounds run on the "todo-sync" thread every SYNC_SECONDS (-Dtodo.syncEvery); the model is
+ * only read and changed on the EDT, through Replica.
+ */
+class SyncClient {
+    static final long SYNC_SECONDS = Long.getLong("todo.syncEvery", 30);
+
+    // The task list as seen by sync; called on the EDT.
+    interface Replica {
+        Collection<TodoApp.Task> tasks();
+        TodoApp.Task get(long id);
+        void put(TodoApp.Task remote);  // insert, or overwrite the task with the same id
+        void remove(long id);
+        void changed(Collection<TodoApp.Task> tasks); // their sync metadata changed; save soon
+    }
+
+    private final URI server;
+    private final Replica replica;
+    private final Path statePath;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ScheduledExecutorService thread = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "todo-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // state (sync thread, except tombstones which the EDT adds to)
+    private String replicaId;
+    private long cursor;
+    private boolean pushAll;    // new server: send every task once, not just the edited ones
+    private final Map<Long, SyncProtocol.Change> tombstones = new LinkedHashMap<>();
+
+    volatile String lastResult = "not synced yet";
+
+    SyncClient(URI server, Replica replica, Path savePath) {
+        this.server = server;
+        this.replica = replica;
+        this.statePath = savePath.resolveSibling(savePath.getFileName() + ".sync");
+        loadState();
+    }
+
+    void start() {
+        thread.scheduleWithFixedDelay(this::syncQuietly, 0, SYNC_SECONDS, TimeUnit.SECONDS);
+    }
+
+    void syncNow() { thread.execute(this::syncQuietly); }
+
+    void stop() { thread.shutdownNow(); }
+
+    String replicaId() { return replicaId; }
+
+    // A task was deleted here (EDT); the delete is pushed with the next round.
+    void deleted(TodoApp.Task t) {
+        SyncProtocol.Change c = new SyncProtocol.Change(t.id, VersionVector.of(t.version).bump(replicaId),
+                System.currentTimeMillis(), replicaId, null);
+        synchronized (tombstones) { tombstones.put(t.id, c); }
+        thread.execute(this::saveStateQuietly);
+    }
+
+    // ---------------- Round ----------------
+
+    private void syncQuietly() {
+        try {
+            lastResult = sync();
+        } catch (IOException | RuntimeException e) {
+            lastResult = "failed: " + e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One pull + push round (sync thread). Returns a one-line summary.
+    String sync() throws IOException, InterruptedException {
+        long[] bytes = new long[2]; // up, down
+        int pulled = 0, conflicts = 0;
+
+        // pull everything since the cursor, page by page
+        boolean more = true;
+        while (more) {
+            HttpResponse<byte[]> r = send(HttpRequest.newBuilder(endpoint("pull", "since=" + cursor + "&limit=" + SyncProtocol.PULL_LIMIT)).GET(), bytes);
+            DataInputStream in = SyncProtocol.gzipIn(new ByteArrayInputStream(r.body()));
+            long next = in.readLong();
+            more = in.readBoolean();
+            List<SyncProtocol.Change> changes = SyncProtocol.readChanges(in);
+            pulled += changes.size();
+            conflicts += TaskApi.onEdt(() -> applyRemote(changes));
+            cursor = next;
+            saveState();
+        }
+
+        // push local edits and deletes
+        List<SyncProtocol.Change> all = TaskApi.onEdt(this::collectLocal);
+        for (int from = 0; from < all.size(); from += SyncProtocol.PUSH_LIMIT) {
+            List<SyncProtocol.Change> out = all.subList(from, Math.min(all.size(), from + SyncProtocol.PUSH_LIMIT));
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (DataOutputStream o = SyncProtocol.gzipOut(bos)) {
+                SyncProtocol.writeChanges(o, out);
+            }
+            HttpResponse<byte[]> r = send(HttpRequest.newBuilder(endpoint("push", ""))
+                    .header("Content-Encoding", "gzip").POST(HttpRequest.BodyPublishers.ofByteArray(bos.toByteArray())), bytes);
+            bytes[0] += bos.size();
+            List<SyncProtocol.Change> resolved = SyncProtocol.readChanges(SyncProtocol.gzipIn(new ByteArrayInputStream(r.body())));
+            conflicts += resolved.size();
+            TaskApi.onEdt(() -> { acknowledge(out, resolved); return null; });
+            synchronized (tombstones) {
+                for (SyncProtocol.Change c : out) if (c.deleted()) tombstones.remove(c.id, c);
+            }
+            saveState();
+        }
+        return "pulled " + pulled + ", pushed " + all.size() + (conflicts > 0 ? ", " + conflicts + " resolved" : "")
+                + " (" + bytes[0] + " B up, " + bytes[1] + " B down)";
+    }
+
+    // EDT: applies pulled changes the local copy has not seen; returns the number of conflicts.
+    private int applyRemote(List<SyncProtocol.Change> changes) {
+        int conflicts = 0;
+        for (SyncProtocol.Change c : changes) {
+            SyncProtocol.Change pendingDelete;
+            synchronized (tombstones) { pendingDelete = tombstones.get(c.id); }
+            TodoApp.Task local = replica.get(c.id);
+            SyncProtocol.Change mine = pendingDelete != null ? pendingDelete : local == null ? null : asChange(local);
+            if (mine == null) {
+                if (!c.deleted()) replica.put(SyncProtocol.decodeTask(c));
+                continue;
+            }
+            boolean dirty = pendingDelete != null || local.modifiedAt != local.syncedAt;
+            VersionVector.Order order = c.version.compare(mine.version);
+            if (order == VersionVector.Order.EQUAL || order == VersionVector.Order.BEFORE) continue;
+            if (order == VersionVector.Order.AFTER && !dirty) {
+                take(c);
+                continue;
+            }
+            // concurrent: an unpushed local edit against a remote one
+            conflicts++;
+            if (c.deleted()) {
+                synchronized (tombstones) { tombstones.remove(c.id); }
+                take(c);                    // a delete wins over edits (TaskCrdt)
+            } else if (pendingDelete != null) {
+                synchronized (tombstones) { tombstones.put(c.id, pendingDelete.withVersion(pendingDelete.version.merge(c.version))); }
+            } else {
+                mergeRemote(c);
+            }
+        }
+        return conflicts;
+    }
+
+    // Field-by-field merge (TaskCrdt) of a remote version into the local task. If the result is not
+    // just the remote version, it is marked edited so the next push sends it (with a vector that
+    // dominates both sides).
+    private void mergeRemote(SyncProtocol.Change c) {
+        TodoApp.Task remote = SyncProtocol.decodeTask(c);
+        replica.put(remote);
+        TodoApp.Task merged = replica.get(c.id);
+        if (merged != null && !TaskCrdt.covers(remote, merged)) merged.syncedAt = 0;
+        replica.changed(merged == null ? List.of() : List.of(merged));
+    }
+
+    private void take(SyncProtocol.Change c) {
+        if (c.deleted()) replica.remove(c.id); else replica.put(SyncProtocol.decodeTask(c));
+    }
+
+    // The local task's version; a dirty task's vector counts the edit that is not pushed yet.
+    private SyncProtocol.Change asChange(TodoApp.Task t) {
+        VersionVector v = VersionVector.of(t.version);
+        if (t.modifiedAt != t.syncedAt) v = v.bump(replicaId);
+        return new SyncProtocol.Change(t.id, v, t.modifiedAt, replicaId, null);
+    }
+
+    // EDT: edited tasks (modifiedAt != syncedAt; a scan of the list, no I/O) plus pending deletes.
+    private List<SyncProtocol.Change> collectLocal() {
+        List<SyncProtocol.Change> out = new ArrayList<>();
+        List<TodoApp.Task> bumped = new ArrayList<>();
+        for (TodoApp.Task t : replica.tasks()) {
+            boolean dirty = t.modifiedAt != t.syncedAt;
+            if (!dirty && !pushAll) continue;
+            if (dirty) {
+                t.version = VersionVector.of(t.version).bump(replicaId);
+                bumped.add(t);
+            }
+            out.add(new SyncProtocol.Change(t.id, VersionVector.of(t.version), t.modifiedAt, replicaId, SyncProtocol.encodeTask(t)));
+        }
+        synchronized (tombstones) { out.addAll(tombstones.values()); }
+        if (!out.isEmpty()) replica.changed(bumped);
+        return out;
+    }
+
+    // EDT: the server took every pushed change except 'resolved', which are its versions to adopt.
+    private void acknowledge(List<SyncProtocol.Change> pushed, List<SyncProtocol.Change> resolved) {
+        List<TodoApp.Task> synced = new ArrayList<>();
+        for (SyncProtocol.Change c : pushed) {
+            TodoApp.Task local = c.deleted() ? null : replica.get(c.id);
+            if (local != null && local.modifiedAt == c.modifiedAt) { // not edited during the push
+                local.syncedAt = c.modifiedAt;
+                synced.add(local);
+            }
+        }
+        for (SyncProtocol.Change c : resolved) {
+            if (c.deleted()) replica.remove(c.id); else mergeRemote(c);
+        }
+        pushAll = false;
+        replica.changed(synced);
+    }
+
+    // ---------------- HTTP ----------------
+
+    private URI endpoint(String op, String query) {
+        String q = "replica=" + URLEncoder.encode(replicaId, StandardCharsets.UTF_8) + (query.isEmpty() ? "" : "&" + query);
+        return server.resolve("/sync/" + op + "?" + q);
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest.Builder b, long[] bytes) throws IOException, InterruptedException {
+        HttpResponse<byte[]> r = http.send(b.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (r.statusCode() != 200) throw new IOException("sync server answered " + r.statusCode());
+        bytes[1] += r.body().length;
+        return r;
+    }
+
+    // ---------------- State ----------------
+
+    private void loadState() {
+        Properties p = new Properties();
+        try (Reader r = Files.newBufferedReader(statePath)) {
+            p.load(r);
+        } catch (IOException e) {
+            // first run
+        }
+        replicaId = p.getProperty("replica", Long.toHexString(ThreadLocalRandom.current().nextLong()));
+        // a different server has a different feed: start over and send it every task
+        boolean sameServer = server.toString().equals(p.getProperty("server"));
+        cursor = sameServer ? Long.parseLong(p.getProperty("cursor", "0")) : 0;
+        pushAll = !sameServer && p.getProperty("server") != null;
+        for (String line : p.getProperty("deleted", "").split(";")) {
+            String[] f = line.split(" ");
+            if (f.length != 3) continue;
+            long id = Long.parseLong(f[0]);
+            tombstones.put(id, new SyncProtocol.Change(id, VersionVector.parse(f[2]), Long.parseLong(f[1]), replicaId, null));
+        }
+    }
+
+    private void saveState() throws IOException {
+        Properties p = new Properties();
+        p.setProperty("replica", replicaId);
+        p.setProperty("server", server.toString());
+        p.setProperty("cursor", Long.toString(cursor));
+        StringJoiner deleted = new StringJoiner(";");
+        synchronized (tombstones) {
+            for (SyncProtocol.Change c : tombstones.values()) deleted.add(c.id + " " + c.modifiedAt + " " + c.version);
+        }
+        p.setProperty("deleted", deleted.toString());
+        try (Writer w = Files.newBufferedWriter(statePath)) {
+            p.store(w, "todo sync state");
+        }
+    }
+
+    private void saveStateQuietly() {
+        try {
+            saveState();
+        } catch (IOException e) {
+            System.err.println("Sync state not saved: " + e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * SyncProtocol.java
+ *
+ * Wire format shared by SyncClient and SyncServer. Every body is gzip'd binary (DataOutput):
+ *
+ *   POST /sync/push?replica=R   request:  count, change*   (at most PUSH_LIMIT per request)
+ *                               response: count, change*   (the server's version of every pushed change it
+ *                                                          did not take: newer, concurrent, or a winning delete)
+ *   GET  /sync/pull?replica=R&since=C&limit=L
+ *                               response: next cursor, more?, count, change*   (changes after C, not from R)
+ *
+ *   change: id | version vector | modifiedAt | origin replica | deleted? | task fields (unless deleted)
+ *   task fields: title, notes, due, done, category, priority, createdAt, rule, done occurrences,
+ *                manual-order position, field clocks
+ *
+ * The server keeps only the latest change per task, so a pull returns each changed task once.
+ * Concurrent edits are merged by the client field by field (TaskCrdt; the clocks travel in the task
+ * fields), so the server never needs to look inside a task.
+ */
+final class SyncProtocol {
+    static final int PULL_LIMIT = 2000, PUSH_LIMIT = 5000;
+
+    private SyncProtocol() { }
+
+    static final class Change {
+        final long id;
+        final VersionVector version;
+        final long modifiedAt;
+        final String origin;
+        final byte[] task;      // encoded fields (encodeTask); null for a delete
+        long seq;               // server feed position
+
+        Change(long id, VersionVector version, long modifiedAt, String origin, byte[] task) {
+            this.id = id;
+            this.version = version;
+            this.modifiedAt = modifiedAt;
+            this.origin = origin;
+            this.task = task;
+        }
+
+        boolean deleted() { return task == null; }
+
+        Change withVersion(VersionVector v) { return new Change(id, v, modifiedAt, origin, task); }
+    }
+
+    // ---------------- Changes ----------------
+
+    static void writeChange(DataOutputStream out, Change c) throws IOException {
+        out.writeLong(c.id);
+        c.version.write(out);
+        out.writeLong(c.modifiedAt);
+        out.writeUTF(c.origin);
+        out.writeBoolean(c.deleted());
+        if (!c.deleted()) {
+            out.writeInt(c.task.length);
+            out.write(c.task);
+        }
+    }
+
+    static Change readChange(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        VersionVector v = VersionVector.read(in);
+        long modifiedAt = in.readLong();
+        String origin = in.readUTF();
+        byte[] task = null;
+        if (!in.readBoolean()) {
+            task = new byte[in.readInt()];
+            in.readFully(task);
+        }
+        return new Change(id, v, modifiedAt, origin, task);
+    }
+
+    static void writeChanges(DataOutputStream out, List<Change> changes) throws IOException {
+        out.writeInt(changes.size());
+        for (Change c : changes) writeChange(out, c);
+    }
+
+    static List<Change> readChanges(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<Change> out = new ArrayList<>(Math.min(n, 1 << 16));
+        for (int i = 0; i < n; i++) out.add(readChange(in));
+        return out;
+    }
+
+    // ---------------- Task fields ----------------
+
+    static byte[] encodeTask(TodoApp.Task t) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeUTF(t.title);
+            out.writeUTF(t.notes);
+            out.writeLong(t.due == null ? Long.MIN_VALUE : t.due.toEpochDay());
+            out.writeBoolean(t.done);
+            out.writeUTF(t.category);
+            out.writeUTF(t.priority);
+            out.writeLong(t.createdAt);
+            out.writeUTF(t.repeat == null ? "" : t.repeat.toRule());
+            out.writeInt(t.doneOccurrences == null ? 0 : t.doneOccurrences.size());
+            if (t.doneOccurrences != null) for (long d : t.doneOccurrences) out.writeLong(d);
+            out.writeUTF(t.position == null ? "" : t.position);
+            for (long stamp : TaskCrdt.clock(t)) out.writeLong(stamp);
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static TodoApp.Task decodeTask(Change c) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(c.task));
+            String title = in.readUTF(), notes = in.readUTF();
+            long due = in.readLong();
+            boolean done = in.readBoolean();
+            String category = in.readUTF(), priority = in.readUTF();
+            TodoApp.Task t = new TodoApp.Task(title, notes, due == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(due), category, priority);
+            t.done = done;
+            t.createdAt = in.readLong();
+            t.repeat = Recurrence.parse(in.readUTF());
+            int n = in.readInt();
+            if (n > 0) {
+                t.doneOccurrences = new TreeSet<>();
+                for (int i = 0; i < n; i++) t.doneOccurrences.add(in.readLong());
+            }
+            String position = in.readUTF();
+            t.position = position.isEmpty() ? null : position;
+            t.clock = new long[TaskCrdt.FIELDS];
+            for (int i = 0; i < TaskCrdt.FIELDS; i++) t.clock[i] = in.readLong();
+            t.id = c.id;
+            t.modifiedAt = c.modifiedAt;
+            t.version = c.version;
+            t.syncedAt = c.modifiedAt;
+            return t;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---------------- Framing ----------------
+
+    static DataOutputStream gzipOut(OutputStream out) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(out, 1 << 16), 1 << 16));
+    }
+
+    static DataInputStream gzipIn(InputStream in) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new GZIPInputStream(in, 1 << 16), 1 << 16));
+    }
+}
@@ -0,0 +1,158 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.List;
+
+/**
+ * SyncServer.java
+ *
+ * Reference sync server for offline testing (SyncProtocol over HTTP, loopback only, in memory).
+ *
+ * Run:     java SyncServer [port]            (default 7879)
+ * Client:  java TodoApp --sync http://localhost:7879
+ *
+ * Keeps the latest change per task and a feed ordered by sequence number, in which a task
+ * appears only at its latest change: a pull after cursor C costs the tasks changed since C.
+ * Deletes stay as tombstones so replicas that were offline still see them.
+ */
+class SyncServer {
+    static final int DEFAULT_PORT = 7879;
+
+    private final Map<Long, SyncProtocol.Change> latest = new HashMap<>();
+    private final TreeMap<Long, SyncProtocol.Change> feed = new TreeMap<>();
+    private long seq;
+    private HttpServer server;
+
+    void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+        server.setExecutor(TaskApi.executor());
+        server.createContext("/sync/push", this::push);
+        server.createContext("/sync/pull", this::pull);
+        server.start();
+    }
+
+    void stop() {
+        if (server != null) server.stop(0);
+    }
+
+    int port() { return server.getAddress().getPort(); }
+
+    // ---------------- Store ----------------
+
+    // Applies pushed changes; returns the server's version of each one it did not take as pushed.
+    synchronized List<SyncProtocol.Change> apply(List<SyncProtocol.Change> changes) {
+        List<SyncProtocol.Change> resolved = new ArrayList<>();
+        for (SyncProtocol.Change c : changes) {
+            SyncProtocol.Change cur = latest.get(c.id);
+            switch (cur == null ? VersionVector.Order.AFTER : c.version.compare(cur.version)) {
+                case AFTER -> store(c);
+                case EQUAL -> { }
+                case BEFORE -> resolved.add(cur);
+                case CONCURRENT -> {
+                    if (c.deleted() || cur.deleted()) {
+                        // a delete wins over edits
+                        SyncProtocol.Change merged = (c.deleted() ? c : cur).withVersion(c.version.merge(cur.version));
+                        store(merged);
+                        resolved.add(merged);
+                    } else {
+                        resolved.add(cur); // the client merges field by field and pushes the result
+                    }
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private void store(SyncProtocol.Change c) {
+        SyncProtocol.Change old = latest.put(c.id, c);
+        if (old != null) feed.remove(old.seq);
+        c.seq = ++seq;
+        feed.put(c.seq, c);
+    }
+
+    // Changes after 'since' not made by 'replica', at most 'limit'.
+    synchronized List<SyncProtocol.Change> since(long since, String replica, int limit, long[] next) {
+        List<SyncProtocol.Change> out = new ArrayList<>();
+        next[0] = since;
+        for (SyncProtocol.Change c : feed.tailMap(since, false).values()) {
+            if (out.size() == limit) break;
+            next[0] = c.seq;
+            if (!c.origin.equals(replica)) out.add(c);
+        }
+        return out;
+    }
+
+    synchronized long head() { return seq; }
+
+    synchronized int size() { return latest.size(); }
+
+    // ---------------- HTTP ----------------
+
+    private void push(HttpExchange ex) throws IOException {
+        try {
+            if (!ex.getRequestMethod().equals("POST")) { ex.sendResponseHeaders(405, -1); return; }
+            List<SyncProtocol.Change> in = SyncProtocol.readChanges(SyncProtocol.gzipIn(ex.getRequestBody()));
+            List<SyncProtocol.Change> resolved = apply(in);
+            reply(ex, out -> SyncProtocol.writeChanges(out, resolved));
+        } catch (IOException | RuntimeException e) {
+            if (ex.getResponseCode() == -1) ex.sendResponseHeaders(400, -1);
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void pull(HttpExchange ex) throws IOException {
+        try {
+            Map<String, String> p = params(ex);
+            long since = Long.parseLong(p.getOrDefault("since", "0"));
+            int limit = Math.min(SyncProtocol.PULL_LIMIT, Integer.parseInt(p.getOrDefault("limit", "" + SyncProtocol.PULL_LIMIT)));
+            long[] next = new long[1];
+            List<SyncProtocol.Change> changes = since(since, p.getOrDefault("replica", ""), limit, next);
+            boolean more = next[0] < head();
+            reply(ex, out -> {
+                out.writeLong(next[0]);
+                out.writeBoolean(more);
+                SyncProtocol.writeChanges(out, changes);
+            });
+        } catch (IOException | RuntimeException e) {
+            if (ex.getResponseCode() == -1) ex.sendResponseHeaders(400, -1);
+        } finally {
+            ex.close();
+        }
+    }
+
+    private interface Body { void write(DataOutputStream out) throws IOException; }
+
+    private static void reply(HttpExchange ex, Body body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        ex.getResponseHeaders().set("Content-Encoding", "gzip");
+        ex.sendResponseHeaders(200, 0);
+        try (DataOutputStream out = SyncProtocol.gzipOut(ex.getResponseBody())) {
+            body.write(out);
+        }
+    }
+
+    private static Map<String, String> params(HttpExchange ex) {
+        Map<String, String> out = new HashMap<>();
+        String q = ex.getRequestURI().getRawQuery();
+        if (q == null) return out;
+        for (String kv : q.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq > 0) out.put(kv.substring(0, eq), URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    // ---------------- Main ----------------
+    public static void main(String[] args) throws IOException {
+        SyncServer s = new SyncServer();
+        s.start(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+        System.out.println("Sync server on http://localhost:" + s.port() + " (in memory, Ctrl+C to stop)");
+    }
+}
@@ -0,0 +1,386 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.swing.*;
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * TaskApi.java
+ *
+ * Local HTTP API over the open task list (java TodoApp --api [port], default 7878, loopback only).
+ *
+ *   GET    /tasks?q=&filter=&category=&order=&limit=   query (same language as the search field;
+ *                                                      order: newest, due, priority, manual)
+ *   GET    /tasks/{id}
+ *   POST   /tasks                 create or update one task (JSON object; "id" updates that task)
+ *   POST   /tasks/batch           upsert a JSON array in one step
+ *   PUT    /tasks/{id}            update the given fields
+ *   DELETE /tasks/{id}
+ *   GET    /export                the committed snapshot file (TaskFile format), sent with transferTo
+ *   GET    /export.ndjson         the open list (its last published snapshot), one JSON object per
+ *                                 line, streamed
+ *
+ * Every request needs the header "X-Todo-Token" with the token from ~/.swing-todo-api
+ * (written at start, with the port), so web pages cannot drive the API.
+ *
+ * Handlers run on virtual threads when the JVM has them (else a small pool). Queries and
+ * mutations of the store run on the EDT, so changes go through the same model updates the UI
+ * uses; JSON is built there as a consistent snapshot and sent from the handler thread. Reads by
+ * id and the ndjson export use the store's published snapshot instead (a persistent map, see
+ * HashTrie) and never wait for the EDT.
+ */
+class TaskApi {
+    static final int DEFAULT_PORT = 7878, DEFAULT_LIMIT = 500, MAX_LIMIT = 100_000;
+    static final Path TOKEN_PATH = Paths.get(System.getProperty("user.home"), ".swing-todo-api");
+
+    // Store operations, always called on the EDT.
+    interface Store {
+        List<TodoApp.Task> query(String q, String filter, String category, TaskIndex.Order order);
+        TodoApp.Task get(long id);
+        List<TodoApp.Task> upsert(List<Map<String, Object>> changes);   // one model update for the batch
+        boolean delete(long id);
+        Path file();
+        HashTrie<TodoApp.Task> snapshot();   // any thread; changes within one EDT event are seen together
+    }
+
+    private final Store store;
+    private final String token;
+    private HttpServer server;
+
+    TaskApi(Store store) {
+        this.store = store;
+        byte[] b = new byte[24];
+        new SecureRandom().nextBytes(b);
+        this.token = Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+    }
+
+    void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 512);
+        server.setExecutor(executor());
+        server.createContext("/tasks", this::tasks);
+        server.createContext("/export", this::export);
+        server.start();
+        writeToken("port=" + server.getAddress().getPort() + "\ntoken=" + token + "\n");
+    }
+
+    // Written to a temp file that is owner-only from its creation, then renamed over the token file,
+    // so the token is never readable by others, not even a file left with looser permissions.
+    private static void writeToken(String text) throws IOException {
+        Path dir = TOKEN_PATH.toAbsolutePath().getParent();
+        Path tmp;
+        try {
+            tmp = Files.createTempFile(dir, ".todo-api", ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            tmp = Files.createTempFile(dir, ".todo-api", ".tmp"); // not a POSIX file system
+        }
+        try {
+            Files.writeString(tmp, text);
+            try {
+                Files.move(tmp, TOKEN_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, TOKEN_PATH, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    void stop() {
+        if (server != null) server.stop(0);
+    }
+
+    int port() { return server.getAddress().getPort(); }
+
+    // Virtual threads where available (Java 21+), found reflectively so the app still runs on 17.
+    static ExecutorService executor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "todo-api");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ---------------- Handlers ----------------
+
+    private void tasks(HttpExchange ex) throws IOException {
+        try {
+            if (!authorized(ex)) return;
+            String path = ex.getRequestURI().getPath();
+            String rest = path.length() > "/tasks".length() ? path.substring("/tasks/".length()) : "";
+            String method = ex.getRequestMethod();
+            if (rest.isEmpty() && method.equals("GET")) {
+                Map<String, String> p = params(ex);
+                int limit = Math.min(MAX_LIMIT, Integer.parseInt(p.getOrDefault("limit", "" + DEFAULT_LIMIT)));
+                TaskIndex.Order order = parseOrder(p.getOrDefault("order", "newest"));
+                String body = onEdt(() -> {
+                    List<TodoApp.Task> found = store.query(p.getOrDefault("q", ""), p.getOrDefault("filter", "All"),
+                            p.getOrDefault("category", "All Categories"), order);
+                    StringBuilder sb = new StringBuilder("{\"total\":").append(found.size()).append(",\"tasks\":[");
+                    for (int k = 0; k < Math.min(limit, found.size()); k++) {
+                        if (k > 0) sb.append(',');
+                        toJson(found.get(k), sb);
+                    }
+                    return sb.append("]}").toString();
+                });
+                send(ex, 200, body);
+            } else if (rest.isEmpty() && method.equals("POST")) {
+                Map<String, Object> fields = object(Json.parse(body(ex)));
+                send(ex, 200, onEdt(() -> toJson(store.upsert(List.of(fields)).get(0), new StringBuilder()).toString()));
+            } else if (rest.equals("batch") && method.equals("POST")) {
+                Object parsed = Json.parse(body(ex));
+                if (!(parsed instanceof List<?> items)) throw new IllegalArgumentException("expected a JSON array");
+                List<Map<String, Object>> changes = new ArrayList<>(items.size());
+                for (Object o : items) changes.add(object(o));
+                send(ex, 200, onEdt(() -> {
+                    List<TodoApp.Task> done = store.upsert(changes);
+                    StringBuilder sb = new StringBuilder("{\"count\":").append(done.size()).append(",\"ids\":[");
+                    for (int k = 0; k < done.size(); k++) sb.append(k > 0 ? "," : "").append('"').append(Long.toUnsignedString(done.get(k).id)).append('"');
+                    return sb.append("]}").toString();
+                }));
+            } else if (!rest.isEmpty()) {
+                long id = Long.parseUnsignedLong(rest);
+                switch (method) {
+                    case "GET" -> {
+                        TodoApp.Task seen = store.snapshot().get(id);
+                        String body = seen != null ? toJson(seen, new StringBuilder()).toString() : onEdt(() -> {
+                            TodoApp.Task t = store.get(id); // archived, or added in the event being published
+                            return t == null ? null : toJson(t, new StringBuilder()).toString();
+                        });
+                        if (body == null) send(ex, 404, error("no such task")); else send(ex, 200, body);
+                    }
+                    case "PUT" -> {
+                        Map<String, Object> fields = new LinkedHashMap<>(object(Json.parse(body(ex))));
+                        fields.put("id", rest);
+                        String body = onEdt(() -> store.get(id) == null ? null
+                                : toJson(store.upsert(List.of(fields)).get(0), new StringBuilder()).toString());
+                        if (body == null) send(ex, 404, error("no such task")); else send(ex, 200, body);
+                    }
+                    case "DELETE" -> {
+                        if (onEdt(() -> store.delete(id))) send(ex, 204, null); else send(ex, 404, error("no such task"));
+                    }
+                    default -> send(ex, 405, error("method not allowed"));
+                }
+            } else {
+                send(ex, 405, error("method not allowed"));
+            }
+        } catch (IllegalArgumentException e) {
+            fail(ex, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            fail(ex, 500, String.valueOf(e));
+        } finally {
+            ex.close();
+        }
+    }
+
+    private void export(HttpExchange ex) throws IOException {
+        try {
+            if (!authorized(ex)) return;
+            if (!ex.getRequestMethod().equals("GET")) { send(ex, 405, error("method not allowed")); return; }
+            Path file = store.file();
+            if (ex.getRequestURI().getPath().endsWith(".ndjson")) {
+                HashTrie<TodoApp.Task> tasks = store.snapshot();
+                ex.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+                ex.sendResponseHeaders(200, 0); // chunked
+                try (Writer w = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 1 << 16)) {
+                    StringBuilder sb = new StringBuilder(256);
+                    for (TodoApp.Task t : tasks.values()) {
+                        sb.setLength(0);
+                        w.append(toJson(t, sb)).append('\n');
+                    }
+                }
+            } else if (!Files.exists(file)) {
+                send(ex, 404, error("nothing saved yet"));
+            } else {
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                    long size = ch.size();
+                    ex.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                    ex.sendResponseHeaders(200, size);
+                    WritableByteChannel out = Channels.newChannel(ex.getResponseBody());
+                    for (long pos = 0; pos < size; ) pos += ch.transferTo(pos, size - pos, out);
+                    ex.getResponseBody().close();
+                }
+            }
+        } catch (RuntimeException e) {
+            fail(ex, 500, String.valueOf(e));
+        } finally {
+            ex.close();
+        }
+    }
+
+    // ---------------- Helpers ----------------
+
+    private boolean authorized(HttpExchange ex) throws IOException {
+        String given = ex.getRequestHeaders().getFirst("X-Todo-Token");
+        if (given != null && java.security.MessageDigest.isEqual(given.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) return true;
+        send(ex, 401, error("missing or wrong X-Todo-Token (see " + TOKEN_PATH + ")"));
+        return false;
+    }
+
+    static TaskIndex.Order parseOrder(String s) {
+        return switch (s.toLowerCase(Locale.ROOT)) {
+            case "due" -> TaskIndex.Order.DUE;
+            case "priority" -> TaskIndex.Order.PRIORITY;
+            case "newest" -> TaskIndex.Order.NEWEST;
+            case "manual" -> TaskIndex.Order.MANUAL;
+            default -> throw new IllegalArgumentException("order must be newest, due, priority or manual");
+        };
+    }
+
+    static StringBuilder toJson(TodoApp.Task t, StringBuilder sb) {
+        TodoApp.Task stored = TodoApp.seriesOf(t);
+        sb.append("{\"id\":\"").append(Long.toUnsignedString(stored.id)).append('"')
+                .append(",\"title\":").append(Json.quote(t.title))
+                .append(",\"notes\":").append(Json.quote(t.notes))
+                .append(",\"due\":").append(t.due == null ? "null" : "\"" + t.due + "\"")
+                .append(",\"done\":").append(t.done)
+                .append(",\"category\":").append(Json.quote(t.category))
+                .append(",\"priority\":").append(Json.quote(t.priority))
+                .append(",\"createdAt\":").append(t.createdAt)
+                .append(",\"modifiedAt\":").append(stored.modifiedAt);
+        if (t.repeat != null) sb.append(",\"repeat\":").append(Json.quote(t.repeat.toRule()));
+        if (t != stored) sb.append(",\"occurrence\":true");
+        return sb.append('}');
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object o) {
+        if (!(o instanceof Map)) throw new IllegalArgumentException("expected a JSON object");
+        return (Map<String, Object>) o;
+    }
+
+    private static String error(String msg) { return "{\"error\":" + Json.quote(msg) + "}"; }
+
+    private static String body(HttpExchange ex) throws IOException {
+        return new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> params(HttpExchange ex) {
+        Map<String, String> out = new HashMap<>();
+        String q = ex.getRequestURI().getRawQuery();
+        if (q == null) return out;
+        for (String kv : q.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(URLDecoder.decode(kv.substring(0, eq), StandardCharsets.UTF_8), URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    // Error reply, unless the response has already started (then the client sees a cut-off body).
+    private static void fail(HttpExchange ex, int status, String msg) throws IOException {
+        if (ex.getResponseCode() == -1) send(ex, status, error(msg));
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        if (body == null) {
+            ex.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] b = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, b.length);
+        ex.getResponseBody().write(b);
+    }
+
+    // Runs on the EDT and returns the result; IllegalArgumentException from the store reaches the client as 400.
+    static <T> T onEdt(Callable<T> call) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            try { return call.call(); } catch (RuntimeException e) { throw e; } catch (Exception e) { throw new RuntimeException(e); }
+        }
+        AtomicReference<T> result = new AtomicReference<>();
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                try { result.set(call.call()); }
+                catch (RuntimeException e) { throw e; }
+                catch (Exception e) { throw new RuntimeException(e); }
+            });
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return result.get();
+    }
+
+    static final Set<String> FIELDS = Set.of("id", "title", "notes", "due", "done", "category", "priority", "repeat",
+            "createdAt", "modifiedAt", "occurrence");
+
+    // 'base' (a copy for a new task) with the given fields applied; validates everything before
+    // the caller touches the model, so a bad item rejects the whole batch.
+    static TodoApp.Task fromJson(Map<String, Object> f, TodoApp.Task base) {
+        for (String k : f.keySet()) if (!FIELDS.contains(k)) throw new IllegalArgumentException("unknown field '" + k + "'");
+        TodoApp.Task t = new TodoApp.Task(base.title, base.notes, base.due, base.category, base.priority);
+        t.id = base.id;
+        t.done = base.done;
+        t.createdAt = base.createdAt;
+        t.modifiedAt = base.modifiedAt;
+        t.repeat = base.repeat;
+        t.doneOccurrences = base.doneOccurrences;
+        t.position = base.position;
+        t.version = base.version;
+        t.syncedAt = base.syncedAt;
+        if (f.containsKey("title")) t.title = string(f, "title").trim();
+        if (f.containsKey("notes")) t.notes = string(f, "notes").trim();
+        if (f.containsKey("due")) t.due = parseDate(f.get("due"));
+        if (f.containsKey("category")) t.category = string(f, "category").isBlank() ? "General" : string(f, "category").trim();
+        if (f.containsKey("priority")) {
+            t.priority = string(f, "priority");
+            if (!List.of("High", "Medium", "Low").contains(t.priority)) throw new IllegalArgumentException("priority must be High, Medium or Low");
+        }
+        if (f.containsKey("done")) {
+            if (!(f.get("done") instanceof Boolean b)) throw new IllegalArgumentException("done must be true or false");
+            t.done = b;
+        }
+        if (f.containsKey("repeat")) t.repeat = Recurrence.parse(f.get("repeat") == null ? "" : f.get("repeat").toString());
+        if (t.title.isEmpty()) throw new IllegalArgumentException("title is required");
+        return t;
+    }
+
+    // Task id from JSON: a string (as written by this API) or a number; null if absent.
+    static Long id(Map<String, Object> f) {
+        Object v = f.get("id");
+        if (v == null) return null;
+        try {
+            return v instanceof Double d ? (Long) d.longValue() : (Long) Long.parseUnsignedLong(v.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad id '" + v + "'");
+        }
+    }
+
+    private static String string(Map<String, Object> f, String key) {
+        Object v = f.get(key);
+        if (!(v instanceof String s)) throw new IllegalArgumentException(key + " must be a string");
+        return s;
+    }
+
+    static LocalDate parseDate(Object v) {
+        if (v == null) return null;
+        try { return LocalDate.parse(v.toString()); }
+        catch (RuntimeException e) { throw new IllegalArgumentException("bad date '" + v + "', use YYYY-MM-DD"); }
+    }
+}
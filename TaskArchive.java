@@ -0,0 +1,515 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * TaskArchive.java
+ *
+ * Cold tier: completed tasks moved out of the task file (and out of masterModel and the indexes)
+ * into an append-only file of compressed blocks next to it, "<file>.archive".
+ *
+ *   block:      magic "TDA2" | task count | header length | payload length | header CRC32 | payload CRC32
+ *               | raw length | dictionary id | header | payload
+ *   header:     category names, then per task: id | modifiedAt | category number | priority rank | deleted?
+ *   payload:    the tasks, a Java-serialized ArrayList, deflated with the preset dictionary (BlockCodec)
+ *   dictionary: magic "TDAD" | 0 | 0 | length | 0 | CRC32 | 0 | id | bytes, before the first block using it
+ *   rename:     magic "TDAC" | 0 | 0 | length | 0 | CRC32 | 0 | 0 | from (UTF) | to (UTF)
+ *
+ *  - open() reads the block headers only: which ids are archived (as of which edit) and enough to
+ *    count them per category and priority; read() inflates the payloads, when a search or the
+ *    Completed filter first reaches the archive
+ *  - a task can be archived more than once (reopened and completed again; its tombstone once it is
+ *    deleted, so the archived copy never comes back); its last entry wins
+ *  - a copy in the task file wins over the archive (a task taken out again, see TodoApp.thaw):
+ *    shadow() hides the archived one
+ *  - a category renamed (or deleted into "General") is a rename record: the tasks archived before it
+ *    are counted, listed and loaded under the new name, though their blocks keep the old one
+ *  - blocks are small (BLOCK_TASKS) and each decodes on its own; the dictionary, trained from the
+ *    first tasks archived (and again from any large batch), gives them the ratio of one big stream
+ *  - appends hold an exclusive lock on the file; a torn last block (crash mid-append) is ignored by
+ *    readers and cut off by the next append
+ *  - blocks of the first version ("TDA1": no dictionary, 24-byte frame) are still read
+ *
+ * Used on the EDT, except read(), which may run on any thread.
+ */
+final class TaskArchive {
+    static final int MAGIC = 0x54444132, DICTIONARY = 0x54444144, RENAME = 0x54444143, FRAME = 32, BLOCK_TASKS = 256, RETRAIN_TASKS = 8192;
+    private static final int MAGIC_V1 = 0x54444131, FRAME_V1 = 24;
+
+    private final Path path;            // null: see empty()
+    private long end;                   // length of the blocks read so far
+    private long[] blockAt = new long[16];
+    private int[] blockFirst = new int[17]; // first entry of each block; blockFirst[blocks] = entries
+    private int blocks;
+
+    // entries in file order
+    private long[] ids = new long[1024], modified = new long[1024];
+    private int[] cats = new int[1024];
+    private byte[] ranks = new byte[1024];
+    private int entries;
+    private final BitSet live = new BitSet(); // the last entry of its id, not deleted, not shadowed
+    private int liveCount;
+    private long[] slotIds = new long[2048]; // id -> last entry (+1), open addressing
+    private int[] slotEntries = new int[2048];
+
+    private final List<String> catNames = new ArrayList<>();
+    private final Map<String, Integer> catIds = new HashMap<>();
+    private int[] catLive = new int[16];
+
+    private final Map<Integer, byte[]> dictionaries = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile byte[] dictionary; // the last one in the file, for the next blocks
+
+    // The archived tasks once read, indexed like the hot ones so the same query plans run on them.
+    static final class Loaded {
+        final int blocks;
+        final TaskIndex index = new TaskIndex();
+        final Map<Long, TodoApp.Task> byId = new HashMap<>();
+        Loaded(int blocks) { this.blocks = blocks; }
+    }
+    private Loaded loaded;
+
+    private TaskArchive(Path path) { this.path = path; }
+
+    // No file: nothing archived, nothing can be (stress mode, or an archive that failed to open).
+    static TaskArchive empty() { return new TaskArchive(null); }
+
+    static TaskArchive open(Path path) throws IOException {
+        TaskArchive a = new TaskArchive(path);
+        if (Files.exists(path)) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                a.scan(ch);
+            }
+        }
+        return a;
+    }
+
+    // Blocks another program appended since; the ids they archive. EDT.
+    long[] refresh() throws IOException {
+        if (path == null || !Files.exists(path) || Files.size(path) == end) return new long[0];
+        int from = entries;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(ch);
+        }
+        return Arrays.copyOfRange(ids, from, entries);
+    }
+
+    // ---------------- Lookups ----------------
+
+    int size() { return liveCount; }
+
+    boolean isEmpty() { return liveCount == 0; }
+
+    long bytes() { return end; }
+
+    boolean writable() { return path != null; }
+
+    // Whether the task was ever archived here.
+    boolean archived(long id) { return entry(id) >= 0; }
+
+    // Whether the archive holds this version of the task or a later one (or its delete).
+    boolean covers(long id, long modifiedAt) {
+        int e = entry(id);
+        return e >= 0 && modified[e] >= modifiedAt;
+    }
+
+    // An archived task shown from the loaded archive (not one of the hot ones).
+    boolean holds(TodoApp.Task t) { return loaded != null && loaded.byId.get(t.id) == t; }
+
+    // A loaded archived task; null if not archived or not loaded.
+    TodoApp.Task get(long id) { return loaded == null ? null : loaded.byId.get(id); }
+
+    // Index of the loaded archive; null until read() and loaded() ran.
+    TaskIndex index() { return loaded == null ? null : loaded.index; }
+
+    // A copy of the task is in the task file now: the archived one no longer counts.
+    synchronized void shadow(long id) {
+        int e = entry(id);
+        if (e < 0 || !live.get(e)) return;
+        kill(e);
+        if (loaded == null) return;
+        TodoApp.Task t = loaded.byId.remove(id);
+        if (t != null) loaded.index.remove(t);
+    }
+
+    // {completed, pending} of the archived tasks, for ChartPanel ("All Categories" / "All" = any).
+    int[] completion(String category, String priority) {
+        Integer c = category.equals("All Categories") ? Integer.valueOf(-1) : catIds.get(category);
+        int r = priority.equals("All") ? -1 : TaskIndex.rank(priority);
+        if (c == null) return new int[]{0, 0};
+        if (c < 0 && r < 0) return new int[]{liveCount, 0};
+        int n = 0;
+        for (int e = live.nextSetBit(0); e >= 0; e = live.nextSetBit(e + 1)) {
+            if ((c < 0 || cats[e] == c) && (r < 0 || ranks[e] == r)) n++;
+        }
+        return new int[]{n, 0};
+    }
+
+    // Categories with archived tasks.
+    List<String> categories() {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < catNames.size(); i++) if (catLive[i] > 0) out.add(catNames.get(i));
+        return out;
+    }
+
+    // ---------------- Read ----------------
+
+    // Inflates the blocks (any thread) and indexes the tasks that were live at the call.
+    Loaded read() throws IOException, ClassNotFoundException {
+        int n;
+        long[] at;
+        int[] first, catOf;
+        BitSet alive;
+        List<String> names;
+        synchronized (this) {
+            n = blocks;
+            at = blockAt.clone();
+            first = blockFirst.clone();
+            alive = (BitSet) live.clone();
+            catOf = Arrays.copyOf(cats, entries);
+            names = new ArrayList<>(catNames);
+        }
+        Loaded out = new Loaded(n);
+        collect(out, 0, n, at, first, alive, catOf, names);
+        return out;
+    }
+
+    // EDT: takes the result of read(), minus what was shadowed and plus what was appended (or renamed)
+    // meanwhile.
+    synchronized void loaded(Loaded l) throws IOException, ClassNotFoundException {
+        if (loaded != null) return;
+        if (l.blocks < blocks) collect(l, l.blocks, blocks, blockAt, blockFirst, live, cats, catNames);
+        for (Iterator<TodoApp.Task> it = l.byId.values().iterator(); it.hasNext(); ) {
+            TodoApp.Task t = it.next();
+            int e = entry(t.id);
+            if (e >= 0 && live.get(e)) {
+                String name = catNames.get(cats[e]);
+                if (t.category.equals(name)) continue;
+                l.index.remove(t);
+                t.category = name;
+                l.index.add(t);
+                continue;
+            }
+            l.index.remove(t);
+            it.remove();
+        }
+        loaded = l;
+    }
+
+    // Tasks get the name their category has now (catOf: category number per entry).
+    private void collect(Loaded into, int from, int to, long[] at, int[] first, BitSet alive, int[] catOf, List<String> names)
+            throws IOException, ClassNotFoundException {
+        if (from == to) return;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int b = from; b < to; b++) {
+                List<TodoApp.Task> tasks = payload(ch, at[b]);
+                for (int i = 0; i < tasks.size(); i++) {
+                    if (!alive.get(first[b] + i)) continue;
+                    TodoApp.Task t = tasks.get(i);
+                    t.category = names.get(catOf[first[b] + i]);
+                    TodoApp.Task old = into.byId.put(t.id, t);
+                    if (old != null) into.index.remove(old);
+                    into.index.add(t);
+                }
+            }
+        }
+    }
+
+    // The tasks of the block at 'at' (its payload checked against the CRC).
+    @SuppressWarnings("unchecked")
+    private List<TodoApp.Task> payload(FileChannel ch, long at) throws IOException, ClassNotFoundException {
+        ByteBuffer frame = readFully(ch, at, FRAME_V1);
+        int frameLen = frame.getInt(0) == MAGIC_V1 ? FRAME_V1 : FRAME;
+        if (frameLen == FRAME) frame = readFully(ch, at, FRAME);
+        ByteBuffer payload = readFully(ch, at + frameLen + frame.getInt(8), frame.getInt(12));
+        if (crc(payload) != frame.getInt(20)) throw new IOException("Archive block checksum mismatch at " + at);
+        InputStream raw = frameLen == FRAME_V1
+                ? new InflaterInputStream(new ByteArrayInputStream(payload.array()), new Inflater(), 1 << 16)
+                : new ByteArrayInputStream(BlockCodec.decompress(payload.array(), frame.getInt(24), dictionaries.get(frame.getInt(28)), "archive"));
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            return (List<TodoApp.Task>) in.readObject();
+        }
+    }
+
+    // Whole blocks (and dictionaries) from 'end' on; stops at the first incomplete or damaged one.
+    private synchronized void scan(FileChannel ch) throws IOException {
+        long size = ch.size();
+        while (end + FRAME_V1 <= size) {
+            ByteBuffer frame = readFully(ch, end, FRAME_V1);
+            int magic = frame.getInt(0);
+            int frameLen = magic == MAGIC_V1 ? FRAME_V1 : FRAME;
+            if (magic != MAGIC_V1 && magic != MAGIC && magic != DICTIONARY && magic != RENAME || end + frameLen > size) break;
+            if (frameLen == FRAME) frame = readFully(ch, end, FRAME);
+            int count = frame.getInt(4), headerLen = frame.getInt(8), payloadLen = frame.getInt(12);
+            if (count < 0 || headerLen < 0 || payloadLen < 0 || end + frameLen + headerLen + payloadLen > size) break;
+            if (magic == DICTIONARY) {
+                ByteBuffer dict = readFully(ch, end + frameLen, payloadLen);
+                if (crc(dict) != frame.getInt(20) || BlockCodec.id(dict.array()) != frame.getInt(28)) break;
+                dictionaries.put(frame.getInt(28), dict.array());
+                dictionary = dict.array();
+                end += frameLen + payloadLen;
+                continue;
+            }
+            if (magic == RENAME) {
+                ByteBuffer names = readFully(ch, end + frameLen, payloadLen);
+                if (crc(names) != frame.getInt(20)) break;
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(names.array()));
+                renamed(in.readUTF(), in.readUTF());
+                end += frameLen + payloadLen;
+                continue;
+            }
+            ByteBuffer header = readFully(ch, end + frameLen, headerLen);
+            if (crc(header) != frame.getInt(16)) break;
+            register(new DataInputStream(new ByteArrayInputStream(header.array())), count);
+            if (blocks == blockAt.length) {
+                blockAt = Arrays.copyOf(blockAt, blocks * 2);
+                blockFirst = Arrays.copyOf(blockFirst, blocks * 2 + 1);
+            }
+            blockAt[blocks++] = end;
+            blockFirst[blocks] = entries;
+            end += frameLen + headerLen + payloadLen;
+        }
+    }
+
+    private void register(DataInputStream in, int count) throws IOException {
+        int[] local = new int[in.readShort()];
+        for (int i = 0; i < local.length; i++) {
+            String name = in.readUTF();
+            local[i] = catIds.computeIfAbsent(name, k -> {
+                catNames.add(k);
+                if (catNames.size() > catLive.length) catLive = Arrays.copyOf(catLive, catLive.length * 2);
+                return catNames.size() - 1;
+            });
+        }
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong(), mod = in.readLong();
+            int cat = local[in.readShort()];
+            byte rank = in.readByte();
+            boolean deleted = in.readBoolean();
+            if (entries == ids.length) {
+                ids = Arrays.copyOf(ids, entries * 2);
+                modified = Arrays.copyOf(modified, entries * 2);
+                cats = Arrays.copyOf(cats, entries * 2);
+                ranks = Arrays.copyOf(ranks, entries * 2);
+            }
+            int e = entries++;
+            ids[e] = id;
+            modified[e] = mod;
+            cats[e] = cat;
+            ranks[e] = rank;
+            int old = put(id, e);
+            if (old >= 0 && live.get(old)) kill(old);
+            if (!deleted) {
+                live.set(e);
+                liveCount++;
+                catLive[cat]++;
+            }
+        }
+    }
+
+    private void kill(int e) {
+        live.clear(e);
+        liveCount--;
+        catLive[cats[e]]--;
+    }
+
+    // ---------------- Append ----------------
+
+    // Archives the tasks (done ones, or tombstones) in one synced append.
+    void append(List<TodoApp.Task> tasks) throws IOException { append(encode(tasks), tasks); }
+
+    // The blocks for 'tasks', BLOCK_TASKS per block: the costly part of an append, for any thread, given
+    // tasks nobody changes meanwhile (copies): header and payload are read from them separately.
+    // The first batch, and any batch of RETRAIN_TASKS or more, comes with a dictionary trained on it.
+    byte[] encode(List<TodoApp.Task> tasks) throws IOException {
+        List<byte[]> raw = new ArrayList<>();
+        for (int from = 0; from < tasks.size(); from += BLOCK_TASKS) {
+            ByteArrayOutputStream b = new ByteArrayOutputStream(BLOCK_TASKS * 128);
+            try (ObjectOutputStream oos = new ObjectOutputStream(b)) {
+                oos.writeObject(new ArrayList<>(tasks.subList(from, Math.min(tasks.size(), from + BLOCK_TASKS))));
+            }
+            raw.add(b.toByteArray());
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream out = new DataOutputStream(bos);
+        byte[] dict = dictionary;
+        if (dict == null || tasks.size() >= RETRAIN_TASKS) {
+            dict = BlockCodec.train(BlockCodec.sample(raw, TaskFile.SAMPLE));
+            writeFrame(out, DICTIONARY, 0, 0, dict.length, 0, crc(ByteBuffer.wrap(dict)), 0, BlockCodec.id(dict));
+            out.write(dict);
+        }
+        for (int b = 0; b < raw.size(); b++) {
+            List<TodoApp.Task> block = tasks.subList(b * BLOCK_TASKS, Math.min(tasks.size(), (b + 1) * BLOCK_TASKS));
+            byte[] header = header(block), payload = BlockCodec.compress(raw.get(b), dict, BlockCodec.SMALL);
+            writeFrame(out, MAGIC, block.size(), header.length, payload.length, crc(ByteBuffer.wrap(header)),
+                    crc(ByteBuffer.wrap(payload)), raw.get(b).length, BlockCodec.id(dict));
+            out.write(header);
+            out.write(payload);
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    private static void writeFrame(DataOutputStream out, int... fields) throws IOException {
+        for (int f : fields) out.writeInt(f);
+    }
+
+    // Appends encode(tasks).
+    synchronized void append(byte[] blocks, List<TodoApp.Task> tasks) throws IOException {
+        write(blocks);
+        if (loaded == null) return;
+        for (TodoApp.Task t : tasks) {
+            if (t.deletedAt != 0) continue;
+            TodoApp.Task old = loaded.byId.put(t.id, t);
+            if (old != null) loaded.index.remove(old);
+            loaded.index.add(t);
+        }
+    }
+
+    @SuppressWarnings("try")
+    private void write(byte[] bytes) throws IOException {
+        if (path == null) throw new IllegalStateException("no archive file");
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock ignored = ch.lock()) {
+            scan(ch); // what others appended; a torn tail ends the scan and is overwritten
+            ch.truncate(end);
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            for (long pos = end; buf.hasRemaining(); ) pos += ch.write(buf, pos);
+            ch.force(false);
+            scan(ch); // ours too: a rename record is applied here
+        }
+    }
+
+    private static byte[] header(List<TodoApp.Task> tasks) throws IOException {
+        ByteArrayOutputStream h = new ByteArrayOutputStream(tasks.size() * 24 + 256);
+        DataOutputStream header = new DataOutputStream(h);
+        Map<String, Integer> local = new LinkedHashMap<>();
+        for (TodoApp.Task t : tasks) local.putIfAbsent(t.category, local.size());
+        header.writeShort(local.size());
+        for (String name : local.keySet()) header.writeUTF(name);
+        for (TodoApp.Task t : tasks) {
+            header.writeLong(t.id);
+            header.writeLong(t.modifiedAt);
+            header.writeShort(local.get(t.category));
+            header.writeByte(TaskIndex.rank(t.priority));
+            header.writeBoolean(t.deletedAt != 0);
+        }
+        header.flush();
+        return h.toByteArray();
+    }
+
+    // ---------------- Categories ----------------
+
+    // Every archived task of category 'from' is in 'to' from now on (a rename, or a delete into
+    // "General"), here and in every program reading the file. Returns whether 'to' had no archived
+    // tasks, i.e. whether renaming back undoes it exactly. EDT.
+    synchronized boolean rename(String from, String to) throws IOException {
+        if (from.equals(to) || !catIds.containsKey(from)) return false;
+        Integer b = catIds.get(to);
+        boolean fresh = b == null || catLive[b] == 0;
+        ByteArrayOutputStream names = new ByteArrayOutputStream(64);
+        DataOutputStream n = new DataOutputStream(names);
+        n.writeUTF(from);
+        n.writeUTF(to);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(FRAME + names.size());
+        DataOutputStream out = new DataOutputStream(bos);
+        writeFrame(out, RENAME, 0, 0, names.size(), 0, crc(ByteBuffer.wrap(names.toByteArray())), 0, 0);
+        out.write(names.toByteArray());
+        write(bos.toByteArray());
+        return fresh;
+    }
+
+    // A rename record: 'from' is re-keyed as 'to', or merged into it if that is in use.
+    private void renamed(String from, String to) {
+        Integer a = catIds.get(from);
+        if (a == null || from.equals(to)) return;
+        catIds.remove(from);
+        Integer b = catIds.get(to);
+        if (b == null) {
+            catNames.set(a, to);
+            catIds.put(to, a);
+        } else {
+            for (int e = 0; e < entries; e++) if (cats[e] == a) cats[e] = b;
+            catLive[b] += catLive[a];
+            catLive[a] = 0;
+        }
+        if (loaded == null) return;
+        CategoryRegistry.Category c = loaded.index.categories.get(from);
+        if (c == null) return;
+        for (TodoApp.Task t : c.tasks) t.category = to;
+        for (TodoApp.Task t : c.series) t.category = to;
+        loaded.index.renameCategory(from, to);
+    }
+
+    // ---------------- Ids ----------------
+
+    private int entry(long id) {
+        int mask = slotIds.length - 1;
+        for (int i = (int) mix(id) & mask; slotEntries[i] != 0; i = (i + 1) & mask) {
+            if (slotIds[i] == id) return slotEntries[i] - 1;
+        }
+        return -1;
+    }
+
+    // Returns the id's previous entry, or -1.
+    private int put(long id, int e) {
+        int mask = slotIds.length - 1;
+        int i = (int) mix(id) & mask;
+        for (; slotEntries[i] != 0; i = (i + 1) & mask) {
+            if (slotIds[i] == id) {
+                int old = slotEntries[i] - 1;
+                slotEntries[i] = e + 1;
+                return old;
+            }
+        }
+        slotIds[i] = id;
+        slotEntries[i] = e + 1;
+        if (entries * 2 > slotIds.length) grow();
+        return -1;
+    }
+
+    // Doubles the table; every id is in it once, so re-putting never finds an old entry.
+    private void grow() {
+        long[] oldIds = slotIds;
+        int[] oldEntries = slotEntries;
+        slotIds = new long[oldIds.length * 2];
+        slotEntries = new int[oldIds.length * 2];
+        int mask = slotIds.length - 1;
+        for (int j = 0; j < oldIds.length; j++) {
+            if (oldEntries[j] == 0) continue;
+            int i = (int) mix(oldIds[j]) & mask;
+            while (slotEntries[i] != 0) i = (i + 1) & mask;
+            slotIds[i] = oldIds[j];
+            slotEntries[i] = oldEntries[j];
+        }
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        return z ^ (z >>> 33);
+    }
+
+    // ---------------- IO ----------------
+
+    private static ByteBuffer readFully(FileChannel ch, long at, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, at + buf.position()) < 0) throw new EOFException("Truncated archive");
+        }
+        return buf.flip();
+    }
+
+    private static int crc(ByteBuffer buf) {
+        CRC32 c = new CRC32();
+        c.update(buf.duplicate());
+        return (int) c.getValue();
+    }
+}
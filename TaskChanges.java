@@ -0,0 +1,115 @@
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * TaskChanges.java
+ *
+ * Typed change events for the task list and their dispatch, batched per EDT tick. A mutation posts
+ * what it did (after the indexes are updated); the listeners (saving, the list view, the category
+ * list and the chart) get every change of the tick as one Batch, after the event that made them,
+ * and each does only the work those changes call for.
+ *
+ *   Added            a task joined the list (restored: an undone delete bringing back a copy)
+ *   Updated          fields of a task changed (mask of TaskCrdt fields, bit 1 << field)
+ *   Moved            only the manual order (position) of a task changed
+ *   Removed          a task left the list (deleted, or archived)
+ *   CategoryRenamed  tasks moved from one category to another (rename, delete into "General", undo)
+ *
+ * Each post names its origin: a LOCAL change (the user, this program) is saved with its batch,
+ * REMOTE ones (API, sync) in bursts, and FILE ones came from the task file, so they are not saved.
+ * EDT only.
+ */
+final class TaskChanges {
+    enum Origin { LOCAL, REMOTE, FILE }
+
+    sealed interface Change permits Added, Updated, Moved, Removed, CategoryRenamed { }
+
+    record Added(TodoApp.Task task, boolean restored) implements Change {
+        Added(TodoApp.Task task) { this(task, false); }
+    }
+
+    record Updated(TodoApp.Task task, int fields) implements Change {
+        boolean has(int field) { return (fields & 1 << field) != 0; }
+    }
+
+    record Moved(TodoApp.Task task) implements Change { }
+
+    record Removed(TodoApp.Task task) implements Change { }
+
+    record CategoryRenamed(String from, String to, List<TodoApp.Task> tasks) implements Change { }
+
+    interface Listener { void changed(Batch batch); }
+
+    // The changes of one tick, in the order they were posted.
+    static final class Batch {
+        final List<Change> changes;
+        final Set<Origin> origins;
+        private final List<Origin> originOf;
+
+        private Batch(List<Change> changes, Set<Origin> origins, List<Origin> originOf) {
+            this.changes = changes;
+            this.origins = origins;
+            this.originOf = originOf;
+        }
+
+        boolean from(Origin o) { return origins.contains(o); }
+
+        // Origin of changes.get(i).
+        Origin origin(int i) { return originOf.get(i); }
+
+        // Union of the changed fields; Added, Removed and renames count as every field.
+        int fields() {
+            int m = 0;
+            for (Change c : changes) {
+                if (c instanceof Updated u) m |= u.fields();
+                else if (c instanceof Moved) m |= 1 << TaskCrdt.POSITION;
+                else m |= (1 << TaskCrdt.FIELDS) - 1;
+            }
+            return m;
+        }
+    }
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private List<Change> queued = new ArrayList<>();
+    private List<Origin> queuedOrigins = new ArrayList<>();
+    private Set<Origin> origins = EnumSet.noneOf(Origin.class);
+    private boolean scheduled;
+
+    void listen(Listener l) { listeners.add(l); }
+
+    void post(Origin origin, Change c) {
+        queued.add(c);
+        queuedOrigins.add(origin);
+        origins.add(origin);
+        if (!scheduled) {
+            scheduled = true;
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    // A field change: Moved if it is the position alone, else Updated; nothing if no field changed.
+    void fields(Origin origin, TodoApp.Task t, int fields) {
+        if (fields == 0) return;
+        post(origin, fields == 1 << TaskCrdt.POSITION ? new Moved(t) : new Updated(t, fields));
+    }
+
+    // Dispatches what is queued now (also run at the end of the tick).
+    void flush() {
+        scheduled = false;
+        if (queued.isEmpty()) return;
+        Batch b = new Batch(queued, origins, queuedOrigins);
+        queued = new ArrayList<>();
+        queuedOrigins = new ArrayList<>();
+        origins = EnumSet.noneOf(Origin.class);
+        for (Listener l : listeners) l.changed(b);
+    }
+
+    static int mask(int... fields) {
+        int m = 0;
+        for (int f : fields) m |= 1 << f;
+        return m;
+    }
+}
@@ -0,0 +1,331 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TaskCrdt.java
+ *
+ * Conflict-free merge of two copies of the task list (instances sharing the save file, sync peers):
+ *
+ *  - fields: one last-writer-wins register per field (Task.clock[field] is the stamp of its last
+ *    write), so one side renaming a category and the other completing the task both survive
+ *  - membership: an observed-remove set over the task ids; ids are unique, so a delete (Task.deletedAt)
+ *    beats every edit of the task it removed, and a task only one side has is kept (an add)
+ *  - manual order: Task.position, a dense key (fractional index); moving a task writes a new key
+ *    between its new neighbours into the position register, ties sort by id
+ *
+ * merge() is commutative, associative and idempotent and works task by task, so merging a few
+ * changed tasks costs just those. Stamps come from a hybrid logical clock (millis << 16 | counter)
+ * that never runs backwards and moves past every stamp it has merged. Tombstones are dropped after
+ * TOMBSTONE_TTL_MILLIS, by which time every instance has long merged them.
+ */
+final class TaskCrdt {
+    static final int TITLE = 0, NOTES = 1, DUE = 2, DONE = 3, CATEGORY = 4, PRIORITY = 5, REPEAT = 6,
+            OCCURRENCES = 7, POSITION = 8, FIELDS = 9;
+    static final long TOMBSTONE_TTL_MILLIS = 30L * 24 * 3600 * 1000;
+
+    private static final int LOGICAL_BITS = 16;
+    private static final AtomicLong LAST = new AtomicLong();
+
+    private TaskCrdt() { }
+
+    // ---------------- Clock ----------------
+
+    static long stamp() {
+        long wall = System.currentTimeMillis() << LOGICAL_BITS;
+        return LAST.accumulateAndGet(wall, (last, w) -> Math.max(last + 1, w));
+    }
+
+    private static void observe(long stamp) { LAST.accumulateAndGet(stamp, Math::max); }
+
+    static long millis(long stamp) { return stamp >>> LOGICAL_BITS; }
+
+    // Field stamps; tasks from before field stamps get modifiedAt for every field (position: 0,
+    // so the order assigned to old files on load loses to any move).
+    static long[] clock(TodoApp.Task t) {
+        if (t.clock == null) {
+            t.clock = new long[FIELDS];
+            Arrays.fill(t.clock, t.modifiedAt << LOGICAL_BITS);
+            t.clock[POSITION] = 0;
+        }
+        return t.clock;
+    }
+
+    // ---------------- Local edits ----------------
+
+    // A task created here: every field written now, placed before 'firstPosition' (the list start).
+    static void created(TodoApp.Task t, String firstPosition) {
+        t.clock = new long[FIELDS];
+        Arrays.fill(t.clock, stamp());
+        t.position = between(null, firstPosition);
+        t.modifiedAt = millis(t.clock[0]);
+    }
+
+    // Records a local write of the given fields.
+    static void touch(TodoApp.Task t, int... fields) {
+        long s = stampAfter(t);
+        long[] c = clock(t);
+        for (int f : fields) c[f] = s;
+        bumpModified(t, s);
+    }
+
+    // Copies the fields of 'edited' that differ into 't' and stamps just those; returns them (bit
+    // 1 << field), 0 if nothing differed.
+    static int edit(TodoApp.Task t, TodoApp.Task edited) {
+        long s = 0;
+        int changed = 0;
+        for (int f = 0; f < FIELDS; f++) {
+            if (Objects.equals(value(t, f), value(edited, f))) continue;
+            set(t, f, edited);
+            if (s == 0) s = stampAfter(t);
+            clock(t)[f] = s;
+            changed |= 1 << f;
+        }
+        if (s != 0) bumpModified(t, s);
+        return changed;
+    }
+
+    // Undo/redo of an edit: the fields still as 'from' left them get their value in 'to', stamped now;
+    // a field written since (here or by a merge) keeps the newer value. Returns the fields changed.
+    static int revert(TodoApp.Task t, TodoApp.Task from, TodoApp.Task to) {
+        long s = 0;
+        int changed = 0;
+        for (int f = 0; f < FIELDS; f++) {
+            Object was = value(from, f);
+            if (Objects.equals(was, value(to, f)) || !Objects.equals(value(t, f), was)) continue;
+            set(t, f, to);
+            if (s == 0) s = stampAfter(t);
+            clock(t)[f] = s;
+            changed |= 1 << f;
+        }
+        if (s != 0) bumpModified(t, s);
+        return changed;
+    }
+
+    // The register values of a task (an undo record): no id, stamps or sync state of its own.
+    static TodoApp.Task values(TodoApp.Task t) {
+        TodoApp.Task v = new TodoApp.Task("", "", null, null, null);
+        for (int f = 0; f < FIELDS; f++) set(v, f, t);
+        v.createdAt = t.createdAt;
+        return v;
+    }
+
+    // A deleted task brought back (undo). Its id stays deleted, since a delete beats every edit on
+    // every replica: the copy gets a new id and nothing else new. Its field stamps are the original's,
+    // so the done stamp still dates the completion (completedAt); only modifiedAt is now, for sync.
+    static TodoApp.Task restored(TodoApp.Task t) {
+        TodoApp.Task copy = values(t);
+        copy.clock = clock(t).clone();
+        copy.modifiedAt = millis(stamp());
+        return copy;
+    }
+
+    static void delete(TodoApp.Task t) {
+        t.deletedAt = stampAfter(t);
+        bumpModified(t, t.deletedAt);
+    }
+
+    // A stamp newer than any the task carries (its stamps may come from a clock that runs ahead).
+    private static long stampAfter(TodoApp.Task t) {
+        for (long c : clock(t)) observe(c);
+        return stamp();
+    }
+
+    // modifiedAt always moves on an edit (sync and the file merge look for a change).
+    private static void bumpModified(TodoApp.Task t, long stamp) {
+        t.modifiedAt = Math.max(t.modifiedAt + 1, millis(stamp));
+    }
+
+    // ---------------- Merge ----------------
+
+    // Merges 'other' (another copy of the same task) into 't'; returns the fields that took the other
+    // value (bit 1 << field). A delete shows in t.deletedAt.
+    static int merge(TodoApp.Task t, TodoApp.Task other) {
+        long[] mine = clock(t), theirs = clock(other);
+        int changed = 0;
+        for (int f = 0; f < FIELDS; f++) {
+            if (!wins(theirs[f], value(other, f), mine[f], value(t, f))) continue;
+            set(t, f, other);
+            mine[f] = theirs[f];
+            observe(theirs[f]);
+            changed |= 1 << f;
+        }
+        if (other.deletedAt > t.deletedAt) {
+            t.deletedAt = other.deletedAt;
+            observe(other.deletedAt);
+        }
+        if (other.modifiedAt > t.modifiedAt) t.modifiedAt = other.modifiedAt;
+        if (other.createdAt < t.createdAt) t.createdAt = other.createdAt;
+        // sync bookkeeping travels with the task
+        if (other.syncedAt > t.syncedAt) t.syncedAt = other.syncedAt;
+        if (other.version != null) t.version = VersionVector.of(t.version).merge(other.version);
+        return changed;
+    }
+
+    // True if every register of 'a' is at least as new as in 'b' (merging 'b' into 'a' changes nothing).
+    static boolean covers(TodoApp.Task a, TodoApp.Task b) {
+        long[] ca = clock(a), cb = clock(b);
+        for (int f = 0; f < FIELDS; f++) {
+            if (wins(cb[f], value(b, f), ca[f], value(a, f))) return false;
+        }
+        return a.deletedAt >= b.deletedAt && a.modifiedAt >= b.modifiedAt;
+    }
+
+    // Register rule: the later stamp wins; equal stamps (e.g. two files from before stamps) go to
+    // the larger value, so both sides pick the same one.
+    private static boolean wins(long stamp, Object value, long otherStamp, Object otherValue) {
+        if (stamp != otherStamp) return stamp > otherStamp;
+        return !Objects.equals(value, otherValue) && String.valueOf(value).compareTo(String.valueOf(otherValue)) > 0;
+    }
+
+    static boolean expired(TodoApp.Task tombstone, long nowMillis) {
+        return tombstone.deletedAt != 0 && millis(tombstone.deletedAt) < nowMillis - TOMBSTONE_TTL_MILLIS;
+    }
+
+    // When 'done' was last written: the completion time of a done task (millis).
+    static long completedAt(TodoApp.Task t) { return millis(clock(t)[DONE]); }
+
+    // When the done occurrences were last written: the time an occurrence was last completed or
+    // reopened (millis).
+    static long occurrencesAt(TodoApp.Task t) { return millis(clock(t)[OCCURRENCES]); }
+
+    private static Object value(TodoApp.Task t, int field) {
+        return switch (field) {
+            case TITLE -> t.title;
+            case NOTES -> t.notes;
+            case DUE -> t.due;
+            case DONE -> t.done;
+            case CATEGORY -> t.category;
+            case PRIORITY -> t.priority;
+            case REPEAT -> t.repeat == null ? null : t.repeat.toRule();
+            case OCCURRENCES -> t.doneOccurrences == null || t.doneOccurrences.isEmpty() ? null : t.doneOccurrences;
+            case POSITION -> t.position;
+            default -> throw new IllegalArgumentException("field " + field);
+        };
+    }
+
+    private static void set(TodoApp.Task t, int field, TodoApp.Task from) {
+        switch (field) {
+            case TITLE -> t.title = from.title;
+            case NOTES -> t.notes = from.notes;
+            case DUE -> t.due = from.due;
+            case DONE -> t.done = from.done;
+            case CATEGORY -> t.category = from.category;
+            case PRIORITY -> t.priority = from.priority;
+            case REPEAT -> t.repeat = from.repeat;
+            case OCCURRENCES -> t.doneOccurrences = from.doneOccurrences == null ? null : new TreeSet<>(from.doneOccurrences);
+            case POSITION -> t.position = from.position;
+            default -> throw new IllegalArgumentException("field " + field);
+        }
+    }
+
+    // ---------------- Positions ----------------
+
+    // Keys are an integer part (a head letter giving its length and sign: 'a' = 1 digit, 'b' = 2, ...,
+    // 'Z' = 1 digit below zero, 'Y' = 2, ...) plus an optional fraction, all in base 62 and ordered
+    // as plain strings. Adding at either end steps the integer, so keys grow logarithmically there;
+    // inserting between two neighbours extends the fraction.
+
+    private static final String DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int BASE = DIGITS.length();
+    private static final String ZERO = "a0";
+
+    // A key strictly between 'before' and 'after' (null = start / end of the list).
+    static String between(String before, String after) {
+        if (before != null && after != null && before.compareTo(after) >= 0) after = null; // equal keys: place after 'before'
+        if (before == null && after == null) return ZERO;
+        if (before == null) {
+            String ib = integerPart(after), fb = after.substring(ib.length());
+            if (ib.charAt(0) == 'A' && ib.chars().skip(1).allMatch(c -> c == '0')) return ib + midpoint("", fb);
+            if (!fb.isEmpty()) return ib;
+            String d = step(ib, -1);
+            if (d == null) throw new IllegalStateException("position keys exhausted");
+            return d;
+        }
+        String ia = integerPart(before), fa = before.substring(ia.length());
+        if (after == null) {
+            String i = step(ia, +1);
+            return i != null ? i : ia + midpoint(fa, null);
+        }
+        String ib = integerPart(after), fb = after.substring(ib.length());
+        if (ia.equals(ib)) return ia + midpoint(fa, fb);
+        String i = step(ia, +1);
+        return i != null && i.compareTo(after) < 0 ? i : ia + midpoint(fa, null);
+    }
+
+    // Fraction strictly between a and b (b null = 1); fractions never end in '0', so there is always room.
+    private static String midpoint(String a, String b) {
+        if (b != null) {
+            int n = 0;
+            while (n < b.length() && (n < a.length() ? a.charAt(n) : '0') == b.charAt(n)) n++;
+            if (n > 0) return b.substring(0, n) + midpoint(n < a.length() ? a.substring(n) : "", b.substring(n));
+        }
+        int da = a.isEmpty() ? 0 : digit(a.charAt(0));
+        int db = b == null ? BASE : digit(b.charAt(0));
+        if (db - da > 1) return String.valueOf(DIGITS.charAt((da + db) / 2));
+        if (b != null && b.length() > 1) return b.substring(0, 1);
+        return DIGITS.charAt(da) + midpoint(a.isEmpty() ? "" : a.substring(1), null);
+    }
+
+    private static String integerPart(String key) {
+        char head = key.charAt(0);
+        int len = head >= 'a' && head <= 'z' ? head - 'a' + 2 : head >= 'A' && head <= 'Z' ? 'Z' - head + 2 : -1;
+        if (len < 0 || len > key.length()) throw new IllegalArgumentException("bad position key '" + key + "'");
+        return key.substring(0, len);
+    }
+
+    // The next (+1) or previous (-1) integer part; null past the largest / smallest.
+    private static String step(String integer, int dir) {
+        char head = integer.charAt(0);
+        char[] digits = integer.substring(1).toCharArray();
+        int k = digits.length - 1;
+        for (; k >= 0; k--) {
+            int d = digit(digits[k]) + dir;
+            if (d >= 0 && d < BASE) { digits[k] = DIGITS.charAt(d); break; }
+            digits[k] = DIGITS.charAt(dir > 0 ? 0 : BASE - 1);
+        }
+        if (k >= 0) return head + new String(digits);
+        // carry out of the digits: the integer part changes length
+        if (dir > 0) {
+            if (head == 'Z') return ZERO;
+            if (head == 'z') return null;
+            char h = (char) (head + 1);
+            String rest = new String(digits);
+            return h + (h > 'a' ? rest + '0' : rest.substring(1));
+        }
+        if (head == 'a') return "Z" + DIGITS.charAt(BASE - 1);
+        if (head == 'A') return null;
+        char h = (char) (head - 1);
+        String rest = new String(digits);
+        return h + (h < 'Z' ? rest + DIGITS.charAt(BASE - 1) : rest.substring(1));
+    }
+
+    private static int digit(char c) {
+        int d = DIGITS.indexOf(c);
+        if (d < 0) throw new IllegalArgumentException("bad position key");
+        return d;
+    }
+
+    // Keys for tasks without one (files from before manual-order keys): consecutive keys in list
+    // order when none has a key, the same on every instance that loads the same file, so the initial
+    // order needs no merging; otherwise the keyless tasks go to the front, like new tasks.
+    static void assignPositions(List<TodoApp.Task> tasks) {
+        String first = null;
+        boolean any = false;
+        for (TodoApp.Task t : tasks) {
+            if (t.position == null) continue;
+            any = true;
+            if (first == null || t.position.compareTo(first) < 0) first = t.position;
+        }
+        String key = null;
+        for (int i = any ? tasks.size() - 1 : 0; any ? i >= 0 : i < tasks.size(); i += any ? -1 : 1) {
+            TodoApp.Task t = tasks.get(i);
+            if (t.position != null) continue;
+            clock(t);
+            key = any ? between(null, key == null ? first : key) : key == null ? ZERO : step(key, +1);
+            t.position = key;
+        }
+    }
+}
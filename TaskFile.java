@@ -0,0 +1,398 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * TaskFile.java
+ *
+ * Task snapshot file shared by the app and batch scripts (one writer, many readers).
+ *
+ *   header (32 bytes, big endian): magic "TDO1" | version | seq | payload length | CRC32 | written at
+ *   payload:  head label (length-prefixed UTF-8) | dictionary (length-prefixed) | segment*
+ *   segment:  length | CRC32 | raw length | deflated Java-serialized ArrayList (the first holds the
+ *             writer's head, the rest SEGMENT items each)
+ *
+ *  - coordination is a FileChannel lock on "<file>.lock": exclusive to commit, shared to open a snapshot
+ *  - a writer serializes and writes a temp file (fsync) before taking the lock; under the lock it only
+ *    stamps seq = previous + 1 and renames the temp file over the snapshot, so the lock is held for
+ *    microseconds, not for the serialization; a writer that names the seq it last saw (the app) has a
+ *    commit made since merged into its list under the lock first, or handed back uncommitted for it to
+ *    merge and write again, so it never overwrites one unseen
+ *  - readers map the snapshot read-only, check the CRC under the shared lock and deserialize after
+ *    releasing it (the rename leaves an already mapped file intact)
+ *  - seq() reads just the header, so a watcher can tell a new commit from its own
+ *  - open() checks and deserializes one segment at a time, in order or by number, so a reader can
+ *    show the head (e.g. the first screen of a list) before the rest of a large file is parsed
+ *  - segments are deflated one by one with a preset dictionary trained from the tasks themselves
+ *    (BlockCodec), so each still decodes on its own; a process keeps its dictionary for its next
+ *    saves and trains a new one when the ratio drops
+ *  - version 2 (uncompressed segments) and 1 files (one unsegmented list) and the old headerless
+ *    format are still read
+ */
+final class TaskFile {
+    static final int MAGIC = 0x54444F31, VERSION = 3, HEADER = 32, SEGMENT = 5000, SAMPLE = 256 * 1024;
+    static final long LOCK_TIMEOUT_MILLIS = 2000;
+
+    private static final Object JVM_LOCK = new Object(); // FileLocks are per process, not per thread
+    private static final AtomicLong TEMP_IDS = new AtomicLong();
+
+    // Dictionary of this process's saves, and the ratio it reached when trained
+    private static byte[] dictionary;
+    private static double trainedRatio;
+    static volatile long lastRawBytes; // payload of the last write before compression (Save event)
+
+    private TaskFile() { }
+
+    static final class Snapshot<T> {
+        final long seq;
+        final List<T> items;
+        Snapshot(long seq, List<T> items) { this.seq = seq; this.items = items; }
+    }
+
+    // Lazily read snapshot: next() (in order) or segment(k) (any order) checks and deserializes one segment.
+    static final class Segments<T> {
+        final long seq;
+        final String head;              // label the writer gave the first segment ("" = none)
+        private final ByteBuffer body;  // the segments; the whole list for version 1 files
+        private final int[] starts;     // offset of each segment in body (null for version 1 files)
+        private final int frame;        // segment header: 12 bytes, 8 in version 2 files
+        private final byte[] dictionary; // null: segments are not compressed
+        private final boolean checked;
+        private int cursor;
+
+        private Segments(long seq, ByteBuffer payload, int version, boolean checked) throws IOException {
+            this.seq = seq;
+            this.checked = checked;
+            if (version < 2) {
+                head = "";
+                body = payload;
+                starts = null;
+                frame = 0;
+                dictionary = null;
+                return;
+            }
+            byte[] label = new byte[payload.getShort(0) & 0xffff];
+            int pos0 = 2 + label.length;
+            if (pos0 > payload.capacity()) throw new IOException("Truncated task file");
+            payload.get(2, label);
+            head = new String(label, StandardCharsets.UTF_8);
+            if (version >= 3) {
+                int len = pos0 + 4 <= payload.capacity() ? payload.getInt(pos0) : -1;
+                if (len < 0 || pos0 + 4L + len > payload.capacity()) throw new IOException("Truncated task file");
+                dictionary = new byte[len];
+                payload.get(pos0 + 4, dictionary);
+                pos0 += 4 + len;
+                frame = 12;
+            } else {
+                dictionary = null;
+                frame = 8;
+            }
+            body = payload.slice(pos0, payload.capacity() - pos0);
+            // segment headers only: one per SEGMENT items
+            int[] at = new int[16];
+            int n = 0;
+            for (int pos = 0; pos < body.capacity(); n++) {
+                int len = pos + frame <= body.capacity() ? body.getInt(pos) : -1;
+                if (len < 0 || pos + (long) frame + len > body.capacity()) throw new IOException("Truncated task file");
+                if (n == at.length) at = Arrays.copyOf(at, n * 2);
+                at[n] = pos;
+                pos += frame + len;
+            }
+            starts = Arrays.copyOf(at, n);
+        }
+
+        int count() { return starts != null ? starts.length : body.capacity() > 0 ? 1 : 0; }
+
+        boolean hasNext() { return cursor < count(); }
+
+        List<T> next() throws IOException, ClassNotFoundException { return segment(cursor++); }
+
+        // Segment k (0 = head); safe to call from several threads.
+        List<T> segment(int k) throws IOException, ClassNotFoundException {
+            if (starts == null) return deserialize(body);
+            int at = starts[k];
+            ByteBuffer seg = body.slice(at + frame, body.getInt(at));
+            if (!checked && crc(seg) != body.getInt(at + 4)) throw new IOException("Task file checksum mismatch");
+            if (dictionary == null) return deserialize(seg);
+            byte[] packed = new byte[seg.capacity()];
+            seg.get(0, packed);
+            return deserialize(ByteBuffer.wrap(BlockCodec.decompress(packed, body.getInt(at + 8), dictionary, "task file")));
+        }
+    }
+
+    // Items in the first segment of a list of 'items' written with write(path, items, head, label).
+    static int firstSegment(int items, int head) { return Math.min(items, head > 0 ? head : SEGMENT); }
+
+    // ---------------- Read ----------------
+
+    static <T> Snapshot<T> read(Path path) throws IOException, ClassNotFoundException {
+        Segments<T> segments = open(path, true);
+        List<T> items = new ArrayList<>();
+        while (segments.hasNext()) items.addAll(segments.next());
+        return new Snapshot<>(segments.seq, items);
+    }
+
+    // Maps the snapshot and reads only its header and head label. The segments are checked one by
+    // one as next() reaches them (a version 1 file is checked whole, here).
+    static <T> Segments<T> open(Path path) throws IOException {
+        return open(path, false);
+    }
+
+    @SuppressWarnings("try")
+    private static <T> Segments<T> open(Path path, boolean checkAll) throws IOException {
+        synchronized (JVM_LOCK) {
+            try (FileChannel lockCh = lockChannel(path); FileLock ignored = acquire(lockCh, true);
+                 FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                return segments(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), checkAll);
+            }
+        }
+    }
+
+    private static <T> Segments<T> segments(ByteBuffer file, boolean checkAll) throws IOException {
+        if (file.capacity() < HEADER || file.getInt(0) != MAGIC) return new Segments<>(0, file, 0, true);
+        int version = file.getInt(4);
+        if (version < 1 || version > VERSION) throw new IOException("Unsupported task file version " + version);
+        int len = file.getInt(16);
+        if (HEADER + (long) len > file.capacity() || version > 1 && len < 2) throw new IOException("Truncated task file");
+        ByteBuffer payload = file.slice(HEADER, len);
+        boolean whole = checkAll || version == 1;
+        if (whole && crc(payload) != file.getInt(20)) throw new IOException("Task file checksum mismatch");
+        return new Segments<>(file.getLong(8), payload, version, whole);
+    }
+
+    // Sequence number of the last commit; -1 if the file is missing or has no header.
+    static long seq(Path path) {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer h = ByteBuffer.allocate(16);
+            while (h.hasRemaining() && ch.read(h) >= 0) { }
+            return h.position() == 16 && h.getInt(0) == MAGIC ? h.getLong(8) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> deserialize(ByteBuffer buf) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new BufferInputStream(buf), 1 << 16))) {
+            return (List<T>) ois.readObject();
+        }
+    }
+
+    // ---------------- Write ----------------
+
+    // Commits 'items' as the new snapshot and returns its seq.
+    static long write(Path path, List<?> items) throws IOException {
+        return write(path, items, 0, "");
+    }
+
+    // Same, with the first 'head' items in a segment of their own, labelled for the reader.
+    static long write(Path path, List<?> items, int head, String label) throws IOException {
+        return write(path, items, head, label, -1, null);
+    }
+
+    // Merges a commit made since 'expectedSeq' into the writer's list; returns the list to commit, or
+    // null to commit nothing (the writer merges it later and writes again).
+    interface Rebase<T> {
+        List<T> rebase(Snapshot<T> current) throws IOException;
+    }
+
+    // Same, committing only over 'expectedSeq' (-1: over anything). If another program committed since,
+    // its snapshot is read under the lock and handed to 'rebase', and the list that returns is committed
+    // instead; only then is the lock held while a list is serialized. Returns -1 if 'rebase' declined.
+    @SuppressWarnings("try")
+    static <T> long write(Path path, List<T> items, int head, String label, long expectedSeq, Rebase<T> rebase) throws IOException {
+        Path tmp = writeTemp(path, serialize(items, head, label), 0);
+        synchronized (JVM_LOCK) {
+            try (FileChannel lockCh = lockChannel(path); FileLock ignored = acquire(lockCh, false)) {
+                long current = seq(path);
+                if (rebase != null && expectedSeq >= 0 && current >= 0 && current != expectedSeq) {
+                    List<T> theirs = new ArrayList<>();
+                    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                        Segments<T> segments = segments(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), true);
+                        while (segments.hasNext()) theirs.addAll(segments.next());
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException("Task file holds an unknown class: " + e.getMessage(), e);
+                    }
+                    List<T> merged = rebase.rebase(new Snapshot<>(current, theirs));
+                    if (merged == null) return -1;
+                    Files.deleteIfExists(tmp);
+                    tmp = writeTemp(path, serialize(merged, Math.min(head, merged.size()), label), 0);
+                }
+                long seq = Math.max(0, current) + 1;
+                try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    ByteBuffer s = ByteBuffer.allocate(8).putLong(0, seq);
+                    ch.write(s, 8);
+                }
+                replace(tmp, path);
+                return seq;
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    // Read-modify-write under the exclusive lock, for scripts that must not lose a concurrent commit.
+    // Holds the lock for the whole update; the app itself uses read() / write().
+    @SuppressWarnings({"unchecked", "try"})
+    static <T> long update(Path path, UnaryOperator<List<T>> change) throws IOException, ClassNotFoundException {
+        synchronized (JVM_LOCK) {
+            try (FileChannel lockCh = lockChannel(path); FileLock ignored = acquire(lockCh, false)) {
+                List<T> items = new ArrayList<>();
+                if (Files.exists(path)) {
+                    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                        Segments<T> segments = segments(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), true);
+                        while (segments.hasNext()) items.addAll(segments.next());
+                    }
+                }
+                long seq = Math.max(0, seq(path)) + 1;
+                replace(writeTemp(path, serialize(change.apply(items), 0, ""), seq), path);
+                return seq;
+            }
+        }
+    }
+
+    // Head label, dictionary, then the head segment ('head' items, or a regular one if 0) and SEGMENT
+    // items per segment. Each segment is a stream of its own, compressed on its own, so it can be
+    // read without the others.
+    private static byte[] serialize(List<?> items, int head, String label) throws IOException {
+        List<byte[]> raw = new ArrayList<>();
+        int from = 0;
+        do {
+            int to = from == 0 ? firstSegment(items.size(), head) : Math.min(items.size(), from + SEGMENT);
+            ByteArrayOutputStream seg = new ByteArrayOutputStream(1 << 16);
+            try (ObjectOutputStream oos = new ObjectOutputStream(seg)) {
+                oos.writeObject(new ArrayList<>(items.subList(from, to)));
+            }
+            raw.add(seg.toByteArray());
+            from = to;
+        } while (from < items.size());
+
+        byte[] dict = dictionary(raw);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream out = new DataOutputStream(bos);
+        byte[] l = label.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(l.length);
+        out.write(l);
+        out.writeInt(dict.length);
+        out.write(dict);
+        long rawBytes = 0;
+        for (byte[] b : raw) {
+            byte[] z = BlockCodec.compress(b, dict, BlockCodec.FAST);
+            out.writeInt(z.length);
+            out.writeInt(crc(ByteBuffer.wrap(z)));
+            out.writeInt(b.length);
+            out.write(z);
+            rawBytes += b.length;
+        }
+        out.flush();
+        lastRawBytes = rawBytes;
+        trained(rawBytes, bos.size() - dict.length);
+        return bos.toByteArray();
+    }
+
+    // The process's dictionary, trained from these segments if there is none yet.
+    private static synchronized byte[] dictionary(List<byte[]> segments) {
+        if (dictionary == null) {
+            dictionary = BlockCodec.train(BlockCodec.sample(segments, SAMPLE));
+            trainedRatio = 0;
+        }
+        return dictionary;
+    }
+
+    // After a write: the first ratio is the dictionary's mark; a tenth worse and the next write retrains.
+    private static synchronized void trained(long raw, long packed) {
+        double ratio = (double) raw / Math.max(1, packed);
+        if (trainedRatio == 0) trainedRatio = ratio;
+        else if (ratio < 0.9 * trainedRatio) dictionary = null;
+    }
+
+    // Complete, synced file next to 'path' (unique per writer, so threads never share one).
+    private static Path writeTemp(Path path, byte[] payload, long seq) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp" + ProcessHandle.current().pid() + "-" + TEMP_IDS.incrementAndGet());
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer h = header(seq, payload);
+            ByteBuffer p = ByteBuffer.wrap(payload);
+            while (h.hasRemaining() || p.hasRemaining()) ch.write(new ByteBuffer[]{h, p});
+            ch.force(false);
+        }
+        return tmp;
+    }
+
+    private static ByteBuffer header(long seq, byte[] payload) {
+        ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.BIG_ENDIAN);
+        h.putInt(MAGIC).putInt(VERSION).putLong(seq).putInt(payload.length)
+                .putInt(crc(ByteBuffer.wrap(payload))).putLong(System.currentTimeMillis());
+        return h.flip();
+    }
+
+    // Atomic rename; where the platform refuses to replace a file that is still mapped
+    // (Windows), fall back to copying over it, still under the exclusive lock.
+    private static void replace(Path tmp, Path path) throws IOException {
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException | AccessDeniedException e) {
+            Files.copy(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // ---------------- Locking ----------------
+
+    private static FileChannel lockChannel(Path path) throws IOException {
+        return FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Polls for the lock so a stuck peer costs the UI LOCK_TIMEOUT_MILLIS at most.
+    private static FileLock acquire(FileChannel ch, boolean shared) throws IOException {
+        long deadline = System.currentTimeMillis() + LOCK_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                FileLock lock = ch.tryLock(0, Long.MAX_VALUE, shared);
+                if (lock != null) return lock;
+            } catch (OverlappingFileLockException e) {
+                // held by another channel of this process; wait like for a peer
+            }
+            if (System.currentTimeMillis() > deadline) throw new IOException("Task file is locked by another process");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    private static int crc(ByteBuffer buf) {
+        CRC32 c = new CRC32();
+        c.update(buf.duplicate());
+        return (int) c.getValue();
+    }
+
+    // InputStream over a (mapped) buffer, without copying it to the heap.
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+        BufferInputStream(ByteBuffer buf) { this.buf = buf.duplicate(); }
+
+        @Override public int read() { return buf.hasRemaining() ? buf.get() & 0xff : -1; }
+
+        @Override public int read(byte[] b, int off, int len) {
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override public int available() { return buf.remaining(); }
+    }
+}
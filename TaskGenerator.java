@@ -0,0 +1,189 @@
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * TaskGenerator.java
+ *
+ * Deterministic synthetic task data for load tests, benchmarks and the app's stress mode:
+ *  - Zipf-distributed categories (a few big ones, a long tail)
+ *  - skewed priorities (mostly Medium, few High)
+ *  - due dates clustered around "today", ~40% without a due date
+ *  - notes of varying length, built from a small vocabulary
+ *
+ * The same seed, count and base date always produce the same tasks, regardless of
+ * how many cores generate them: each chunk of CHUNK tasks has its own random
+ * stream derived from (seed, chunk index).
+ *
+ * Compile: javac -encoding UTF-8 -sourcepath todojava *.java
+ * Run:     java TaskGenerator --count 1000000 --seed 7 --format swing --out ~/.swing-todo.dat
+ *          java TaskGenerator --count 1000000 --format store --out tasks.dat
+ */
+public class TaskGenerator {
+    static final int CHUNK = 1 << 14;
+
+    static final String[] CATEGORIES = {"Work", "Personal", "Errands", "Home", "Health", "Finance", "Study",
+            "Travel", "Family", "Garden", "Car", "Office", "Side project", "Reading", "Fitness", "Kids",
+            "Taxes", "Volunteering", "Music", "Cooking", "Pets", "Friends", "Admin", "Shopping"};
+    static final String[] VERBS = {"Follow up with", "Call", "Review", "Prepare", "Email", "Buy", "Fix", "Plan",
+            "Book", "Pay", "Schedule", "Draft", "Clean", "Renew", "Submit", "Check"};
+    static final String[] NOUNS = {"team", "report", "Q3 budget", "dentist", "groceries", "invoice", "slides",
+            "landlord", "meeting notes", "tickets", "car service", "insurance", "contract", "newsletter",
+            "gym membership", "passport", "design review", "quarterly plan", "vet appointment", "birthday gift"};
+    static final String[] NOTE_WORDS = {"meeting", "notes", "ask", "about", "the", "deadline", "next", "week",
+            "bring", "documents", "call", "back", "before", "Friday", "agenda", "budget", "draft", "send", "to", "Anna"};
+
+    final long seed;
+    final LocalDate today;
+    final long now;
+    double zipfExponent = 1.1;
+    private double[] categoryCdf;
+
+    TaskGenerator(long seed) {
+        this(seed, LocalDate.now());
+    }
+
+    TaskGenerator(long seed, LocalDate today) {
+        this.seed = seed;
+        this.today = today;
+        this.now = today.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // ---------------- Generation ----------------
+
+    List<TodoApp.Task> tasks(int n) {
+        TodoApp.Task[] out = new TodoApp.Task[n];
+        double[] cdf = categoryCdf();
+        IntStream.range(0, chunks(n)).parallel().forEach(c -> {
+            SplittableRandom rnd = chunkRandom(c);
+            for (int i = c * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) out[i] = task(rnd, cdf);
+        });
+        return Arrays.asList(out);
+    }
+
+    List<Todo.Task> storeTasks(int n) {
+        Todo.Task[] out = new Todo.Task[n];
+        IntStream.range(0, chunks(n)).parallel().forEach(c -> {
+            SplittableRandom rnd = chunkRandom(c);
+            for (int i = c * CHUNK, end = Math.min(n, i + CHUNK); i < end; i++) {
+                Todo.Task t = new Todo.Task(title(rnd), notes(rnd));
+                LocalDate due = due(rnd);
+                t.setDate(due == null ? "" : due.toString());
+                t.setCompleted(rnd.nextInt(100) < 35);
+                out[i] = t;
+            }
+        });
+        return Arrays.asList(out);
+    }
+
+    private TodoApp.Task task(SplittableRandom rnd, double[] cdf) {
+        String title = title(rnd);
+        String notes = notes(rnd);
+        LocalDate due = due(rnd);
+        String cat = CATEGORIES[sample(cdf, rnd.nextDouble())];
+        int p = rnd.nextInt(100);
+        String prio = p < 15 ? "High" : p < 70 ? "Medium" : "Low";
+        TodoApp.Task t = new TodoApp.Task(title, notes, due, cat, prio);
+        // older tasks are more likely to be done
+        long age = (long) (Math.pow(rnd.nextDouble(), 2) * 365L * 24 * 3600 * 1000);
+        t.createdAt = now - age;
+        t.done = rnd.nextDouble() < Math.min(0.9, 0.15 + age / (365.0 * 24 * 3600 * 1000));
+        t.id = rnd.nextLong();
+        t.modifiedAt = t.createdAt;
+        return t;
+    }
+
+    private String title(SplittableRandom rnd) {
+        return VERBS[rnd.nextInt(VERBS.length)] + " " + NOUNS[rnd.nextInt(NOUNS.length)];
+    }
+
+    // ~30% empty, otherwise a geometric number of words (long tail of big notes)
+    private String notes(SplittableRandom rnd) {
+        if (rnd.nextInt(10) < 3) return "";
+        int words = 1 + (int) (-Math.log(1 - rnd.nextDouble()) * 8);
+        StringBuilder sb = new StringBuilder(words * 7);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) sb.append(' ');
+            sb.append(NOTE_WORDS[rnd.nextInt(NOTE_WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    // ~40% without a due date, otherwise normal around today (sd ~10 days)
+    private LocalDate due(SplittableRandom rnd) {
+        if (rnd.nextInt(10) < 4) return null;
+        double u1 = 1 - rnd.nextDouble(), u2 = rnd.nextDouble();
+        double gauss = Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+        return today.plusDays(Math.round(gauss * 10));
+    }
+
+    private SplittableRandom chunkRandom(int chunk) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + chunk);
+    }
+
+    private static int chunks(int n) { return (n + CHUNK - 1) / CHUNK; }
+
+    private double[] categoryCdf() {
+        if (categoryCdf == null) {
+            int n = CATEGORIES.length;
+            double[] cdf = new double[n];
+            double sum = 0;
+            for (int k = 1; k <= n; k++) { sum += 1 / Math.pow(k, zipfExponent); cdf[k - 1] = sum; }
+            for (int k = 0; k < n; k++) cdf[k] /= sum;
+            categoryCdf = cdf;
+        }
+        return categoryCdf;
+    }
+
+    private static int sample(double[] cdf, double u) {
+        int i = Arrays.binarySearch(cdf, u);
+        return Math.min(cdf.length - 1, i >= 0 ? i : -i - 1);
+    }
+
+    // ---------------- Writing ----------------
+
+    // Same format as TodoApp.save() (~/.swing-todo.dat)
+    void writeSwing(Path out, int n) throws IOException {
+        TodoApp.writeTasks(out, tasks(n));
+    }
+
+    // Same format as Todo.TaskStore (tasks.dat)
+    void writeStore(Path out, int n) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(out), 1 << 16))) {
+            oos.writeObject(new ArrayList<>(storeTasks(n)));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = 100_000;
+        long seed = 1;
+        String format = "swing";
+        LocalDate today = LocalDate.now();
+        Path out = null;
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--count" -> count = Integer.parseInt(args[i + 1].replace("_", ""));
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--format" -> format = args[i + 1];
+                case "--today" -> today = LocalDate.parse(args[i + 1]);
+                case "--out" -> out = Paths.get(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (out == null) out = Paths.get(format.equals("store") ? "tasks.dat" : ".swing-todo.dat");
+
+        TaskGenerator gen = new TaskGenerator(seed, today);
+        long t0 = System.nanoTime();
+        switch (format) {
+            case "swing" -> gen.writeSwing(out, count);
+            case "store" -> gen.writeStore(out, count);
+            default -> throw new IllegalArgumentException("Unknown format " + format + " (swing|store)");
+        }
+        System.out.printf("Wrote %d tasks to %s in %d ms (%d bytes)%n",
+                count, out, (System.nanoTime() - t0) / 1_000_000, Files.size(out));
+    }
+}
@@ -0,0 +1,262 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * TaskHistory.java
+ *
+ * Completion history: an append-only log of task events next to the task file ("<file>.history"),
+ * rolled up per hour, day and week as records are appended. The trend chart (TodoApp.TrendPanel)
+ * reads a range of buckets, so a year of days is 365 lookups however long the log is.
+ *
+ *   file:    magic "TDH1" | records
+ *   record:  kind (1 created, 2 completed, 3 reopened) | task id | time (millis) | lead (millis)
+ *
+ *  - a completion's lead is the time from the task's creation to it; a bucket holds the tasks
+ *    created, the tasks completed and the sum of their leads, so its average lead is one division
+ *  - reopening a task completed earlier in this session (an undo, a slip of the mouse) appends a
+ *    "reopened" record with the completion's time and lead, which takes it back out of the same
+ *    buckets; older completions stay, they happened
+ *  - an occurrence of a recurring task is completed and reopened the same way, under the series' id;
+ *    its lead runs from the start of its day. The done days of every series are tracked (track()) so
+ *    an update logs just the days it added or removed
+ *  - open() replays the records into the rollups; a torn last record (crash mid-append) is ignored
+ *    and cut off by the next append
+ *  - two programs may share the log: an append holds an exclusive lock on the file, replays what the
+ *    other appended since into the rollups and writes at the real end of the file
+ *  - days and weeks are local (weeks start on Monday), hours are UTC hours
+ *
+ * Records are buffered and written by flush(). EDT only.
+ */
+final class TaskHistory {
+    static final int MAGIC = 0x54444831, HEADER = 4, RECORD = 25, RECENT = 1024;
+    static final byte CREATED = 1, COMPLETED = 2, REOPENED = 3;
+    private static final long[] NOT_HERE = {0, 0};
+
+    enum Resolution { HOUR, DAY, WEEK }
+
+    static final class Bucket {
+        static final Bucket EMPTY = new Bucket();
+
+        int created, completed;
+        long leadSum;
+
+        long averageLead() { return completed == 0 ? 0 : leadSum / completed; }
+    }
+
+    private final Path path;           // null: see empty()
+    private final boolean fresh;
+    private long end;                  // length of the whole records read or written
+    private FileChannel out;           // opened on the first flush
+    private final ByteBuffer pending = ByteBuffer.allocate(RECORD * 256);
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final List<Map<Long, Bucket>> rollups = new ArrayList<>(); // by Resolution ordinal, bucket key -> bucket
+    // this session's completions by task id: {time, lead}, for a reopen to cancel
+    private final Map<Long, long[]> completions = new LinkedHashMap<>() {
+        @Override protected boolean removeEldestEntry(Map.Entry<Long, long[]> e) { return size() > RECENT; }
+    };
+    // recurring series by task id: done epoch day -> {time, lead}; {0, 0} for a day done before this
+    // session or by another program, which a reopen does not take back
+    private final Map<Long, Map<Long, long[]>> series = new HashMap<>();
+
+    private TaskHistory(Path path, boolean fresh) {
+        this.path = path;
+        this.fresh = fresh;
+        for (Resolution r : Resolution.values()) rollups.add(new HashMap<>());
+    }
+
+    // Nothing recorded, nothing kept (stress mode, or a log that failed to open).
+    static TaskHistory empty() { return new TaskHistory(null, false); }
+
+    static TaskHistory open(Path path) throws IOException {
+        if (!Files.exists(path)) return new TaskHistory(path, true);
+        TaskHistory h = new TaskHistory(path, false);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            h.scan(ch);
+        }
+        return h;
+    }
+
+    // Replays the whole records from 'end' on (all of them on open, another program's appends on a
+    // flush); a torn last record ends the scan.
+    private void scan(FileChannel ch) throws IOException {
+        long size = ch.size();
+        if (end == 0) {
+            if (size < HEADER) return; // torn header: rewritten by the first flush
+            ByteBuffer magic = ByteBuffer.allocate(HEADER);
+            while (magic.hasRemaining() && ch.read(magic, magic.position()) >= 0) { }
+            if (magic.getInt(0) != MAGIC) throw new IOException("Not a history file: " + path);
+            end = HEADER;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(RECORD * 4096);
+        for (long pos = end; pos < size; ) {
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            pos += n;
+            buf.flip();
+            while (buf.remaining() >= RECORD) {
+                byte kind = buf.get();
+                buf.getLong(); // task id
+                long at = buf.getLong(), lead = buf.getLong();
+                apply(kind, at, lead);
+                end += RECORD;
+            }
+            buf.compact();
+        }
+    }
+
+    // True when the log did not exist before this run (TodoApp seeds it from the task list).
+    boolean fresh() { return fresh; }
+
+    // ---------------- Recording ----------------
+
+    // A new log starts from the tasks there are: their creation and, if done, their completion.
+    void seed(Collection<TodoApp.Task> tasks) {
+        for (TodoApp.Task t : tasks) {
+            append(CREATED, t.id, t.createdAt, 0);
+            long at = t.done ? TaskCrdt.completedAt(t) : 0;
+            if (at > 0) append(COMPLETED, t.id, at, Math.max(0, at - t.createdAt));
+        }
+        flush();
+    }
+
+    void created(long id, long at) { append(CREATED, id, at, 0); }
+
+    void completed(long id, long at, long createdAt) {
+        long lead = Math.max(0, at - createdAt);
+        completions.put(id, new long[]{at, lead});
+        append(COMPLETED, id, at, lead);
+    }
+
+    void reopened(long id) {
+        long[] c = completions.remove(id);
+        if (c != null) append(REOPENED, id, c[0], c[1]);
+    }
+
+    // A series as it is now (loaded, merged from the task file, brought back by undo): nothing logged.
+    void track(TodoApp.Task t) {
+        if (!t.isRecurring()) {
+            series.remove(t.id);
+            return;
+        }
+        Map<Long, long[]> was = series.getOrDefault(t.id, Map.of()), days = new HashMap<>();
+        if (t.doneOccurrences != null) {
+            for (long d : t.doneOccurrences) days.put(d, was.getOrDefault(d, NOT_HERE));
+        }
+        series.put(t.id, days);
+    }
+
+    // The occurrences of a series completed or reopened here since it was tracked, at 'at'.
+    void occurrences(TodoApp.Task t, long at) {
+        if (!t.isRecurring()) return;
+        Map<Long, long[]> days = series.computeIfAbsent(t.id, k -> new HashMap<>());
+        Set<Long> done = t.doneOccurrences == null ? Set.of() : t.doneOccurrences;
+        for (Iterator<Map.Entry<Long, long[]>> it = days.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, long[]> e = it.next();
+            if (done.contains(e.getKey())) continue;
+            it.remove();
+            long[] c = e.getValue();
+            if (c != NOT_HERE) append(REOPENED, t.id, c[0], c[1]);
+        }
+        for (long d : done) {
+            if (days.containsKey(d)) continue;
+            long lead = Math.max(0, at - LocalDate.ofEpochDay(d).atStartOfDay(zone).toInstant().toEpochMilli());
+            days.put(d, new long[]{at, lead});
+            append(COMPLETED, t.id, at, lead);
+        }
+    }
+
+    private void append(byte kind, long id, long at, long lead) {
+        apply(kind, at, lead);
+        if (path == null) return;
+        if (pending.remaining() < RECORD) flush();
+        pending.put(kind).putLong(id).putLong(at).putLong(lead);
+    }
+
+    @SuppressWarnings("try") // the lock is held for the block, not referenced
+    void flush() {
+        if (path == null || pending.position() == 0) return;
+        pending.flip();
+        try {
+            if (out == null) out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try (FileLock ignored = out.lock()) {
+                scan(out); // what another program appended since
+                if (end == 0) {
+                    out.write(ByteBuffer.allocate(HEADER).putInt(0, MAGIC), 0);
+                    end = HEADER;
+                }
+                out.truncate(end); // a torn record from a crash
+                int n = pending.remaining();
+                while (pending.hasRemaining()) out.write(pending, end + n - pending.remaining());
+                end += n;
+            }
+        } catch (IOException e) {
+            System.err.println("History not written: " + e); // the rollups keep the events for this run
+        } finally {
+            pending.clear();
+        }
+    }
+
+    void close() {
+        flush();
+        try {
+            if (out != null) out.close();
+        } catch (IOException ignored) { }
+        out = null;
+    }
+
+    // ---------------- Rollups ----------------
+
+    private void apply(byte kind, long at, long lead) {
+        long day = localDay(at);
+        bucket(Resolution.HOUR, Math.floorDiv(at, 3_600_000L), kind, lead);
+        bucket(Resolution.DAY, day, kind, lead);
+        bucket(Resolution.WEEK, week(day), kind, lead);
+    }
+
+    private void bucket(Resolution r, long key, byte kind, long lead) {
+        Bucket b = rollups.get(r.ordinal()).computeIfAbsent(key, k -> new Bucket());
+        switch (kind) {
+            case CREATED -> b.created++;
+            case COMPLETED -> { b.completed++; b.leadSum += lead; }
+            case REOPENED -> { b.completed--; b.leadSum -= lead; }
+            default -> { }
+        }
+    }
+
+    long key(Resolution r, long millis) {
+        if (r == Resolution.HOUR) return Math.floorDiv(millis, 3_600_000L);
+        long day = localDay(millis);
+        return r == Resolution.DAY ? day : week(day);
+    }
+
+    private long localDay(long millis) {
+        int offset = zone.getRules().getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds();
+        return Math.floorDiv(millis / 1000 + offset, 86_400L);
+    }
+
+    private static long week(long epochDay) { return Math.floorDiv(epochDay + 3, 7); } // 1970-01-01 was a Thursday
+
+    // First day of a DAY or WEEK bucket.
+    static LocalDate day(Resolution r, long key) {
+        return LocalDate.ofEpochDay(r == Resolution.WEEK ? key * 7 - 3 : key);
+    }
+
+    // The 'count' buckets up to and including the one holding 'now', oldest first; EMPTY where
+    // nothing happened.
+    Bucket[] range(Resolution r, long now, int count) {
+        Bucket[] out = new Bucket[count];
+        Map<Long, Bucket> buckets = rollups.get(r.ordinal());
+        long first = key(r, now) - count + 1;
+        for (int i = 0; i < count; i++) out[i] = buckets.getOrDefault(first + i, Bucket.EMPTY);
+        return out;
+    }
+}
@@ -0,0 +1,259 @@
+import java.time.LocalDate;
+import java.util.*;
+import java.util.List;
+
+/**
+ * TaskIndex.java
+ *
+ * Secondary indexes over the task list, kept in step with masterModel
+ * (TodoApp.indexAdd / indexRemove):
+ *  - status: done / active sets
+ *  - category postings and counts (CategoryRegistry), priority postings
+ *  - due dates: epoch-day -> tasks (sorted, for range scans) plus the tasks without a due date
+ *  - per-day due / open / completed counts for the calendar (DayCounters)
+ *  - text: sorted word dictionary over title + notes, so a word prefix is a sub-map scan
+ *  - order: one red-black tree per sort order (newest, due date, priority, manual), so a sorted
+ *    view or a due-date range is an in-order walk instead of a sort on every refresh
+ *  - recurring tasks are kept aside; occurrences() expands them for a date window on demand
+ *
+ * Sets are identity based, like the indexOfRef lookups in TodoApp.
+ */
+class TaskIndex {
+    enum Order {
+        NEWEST("Newest first"), DUE("Due date"), PRIORITY("Priority"), MANUAL("Manual");
+
+        final String label;
+        Order(String label) { this.label = label; }
+        @Override public String toString() { return label; }
+    }
+
+    // Snapshot of the sort keys of one task; the trees never look at the (mutable) task itself.
+    static final class Entry {
+        final TodoApp.Task task;
+        final long due, created, seq, id;
+        final int rank;
+        final String position;  // TaskCrdt key of the manual order ("" = none yet)
+
+        Entry(TodoApp.Task task, long due, long created, int rank, long seq) {
+            this.task = task;
+            this.due = due;
+            this.created = created;
+            this.rank = rank;
+            this.seq = seq;
+            this.id = task == null ? 0 : task.id;
+            this.position = task == null || task.position == null ? "" : task.position;
+        }
+    }
+
+    static final long NO_DUE_KEY = Long.MAX_VALUE; // tasks without a due date sort last
+
+    static final Comparator<Entry> BY_NEWEST = (a, b) -> {
+        int c = Long.compare(b.created, a.created);
+        return c != 0 ? c : Long.compare(a.seq, b.seq);
+    };
+    static final Comparator<Entry> BY_DUE = (a, b) -> {
+        int c = Long.compare(a.due, b.due);
+        return c != 0 ? c : BY_NEWEST.compare(a, b);
+    };
+    static final Comparator<Entry> BY_PRIORITY = (a, b) -> {
+        int c = Integer.compare(a.rank, b.rank);
+        return c != 0 ? c : BY_DUE.compare(a, b);
+    };
+    // Equal keys (concurrent moves to the same spot) sort by id, the same on every instance.
+    static final Comparator<Entry> BY_MANUAL = (a, b) -> {
+        int c = a.position.compareTo(b.position);
+        if (c == 0) c = Long.compare(a.id, b.id);
+        return c != 0 ? c : Long.compare(a.seq, b.seq);
+    };
+
+    final Set<TodoApp.Task> all = identitySet();
+    final Set<TodoApp.Task> done = identitySet();
+    final Set<TodoApp.Task> active = identitySet();
+    final CategoryRegistry categories = new CategoryRegistry();
+    final DayCounters days = new DayCounters();
+    final Map<String, Set<TodoApp.Task>> byPriority = new HashMap<>();
+    final TreeMap<Long, Set<TodoApp.Task>> byDue = new TreeMap<>();
+    final Set<TodoApp.Task> noDue = identitySet();
+    final TreeMap<String, Set<TodoApp.Task>> words = new TreeMap<>();
+    private final Map<TodoApp.Task, Entry> entries = new IdentityHashMap<>();
+    private final TreeSet<Entry> newest = new TreeSet<>(BY_NEWEST);
+    private final TreeSet<Entry> dueOrder = new TreeSet<>(BY_DUE);
+    private final TreeSet<Entry> priorityOrder = new TreeSet<>(BY_PRIORITY);
+    private final TreeSet<Entry> manualOrder = new TreeSet<>(BY_MANUAL);
+    private long seq;
+    final Set<TodoApp.Task> recurring = identitySet();
+    private final Map<TodoApp.Task, Map<Long, TodoApp.Occurrence>> occurrenceCache = new IdentityHashMap<>();
+
+    // Default occurrence window around today (days) and the widest window a due-date query may ask for.
+    static final int OCCURRENCE_LOOKBACK = 7, OCCURRENCE_HORIZON = 14, MAX_OCCURRENCE_WINDOW = 366;
+
+    static <T> Set<T> identitySet() { return Collections.newSetFromMap(new IdentityHashMap<>()); }
+
+    int size() { return all.size(); }
+
+    boolean contains(TodoApp.Task t) { return all.contains(t) || recurring.contains(t); }
+
+    void add(TodoApp.Task t) {
+        if (t.isRecurring()) {
+            if (recurring.add(t)) categories.add(t);
+            return;
+        }
+        if (!all.add(t)) return;
+        (t.done ? done : active).add(t);
+        categories.add(t);
+        days.add(t);
+        byPriority.computeIfAbsent(t.priority, k -> identitySet()).add(t);
+        if (t.due == null) noDue.add(t);
+        else byDue.computeIfAbsent(t.due.toEpochDay(), k -> identitySet()).add(t);
+        for (String w : words(t)) words.computeIfAbsent(w, k -> identitySet()).add(t);
+        Entry e = new Entry(t, t.due == null ? NO_DUE_KEY : t.due.toEpochDay(), t.createdAt, rank(t.priority), seq++);
+        entries.put(t, e);
+        newest.add(e);
+        dueOrder.add(e);
+        priorityOrder.add(e);
+        manualOrder.add(e);
+    }
+
+    // Must be called with the task's indexed field values (before mutating it).
+    void remove(TodoApp.Task t) {
+        if (recurring.remove(t)) {
+            occurrenceCache.remove(t);
+            categories.remove(t);
+            return;
+        }
+        if (!all.remove(t)) return;
+        (t.done ? done : active).remove(t);
+        categories.remove(t);
+        days.remove(t);
+        removeFrom(byPriority, t.priority, t);
+        if (t.due == null) noDue.remove(t);
+        else removeFrom(byDue, t.due.toEpochDay(), t);
+        for (String w : words(t)) removeFrom(words, w, t);
+        Entry e = entries.remove(t);
+        newest.remove(e);
+        dueOrder.remove(e);
+        priorityOrder.remove(e);
+        manualOrder.remove(e);
+    }
+
+    void clear() {
+        all.clear(); done.clear(); active.clear();
+        categories.clear(); days.clear(); byPriority.clear(); byDue.clear(); noDue.clear(); words.clear();
+        entries.clear(); newest.clear(); dueOrder.clear(); priorityOrder.clear(); manualOrder.clear();
+        recurring.clear(); occurrenceCache.clear();
+    }
+
+    // Re-keys the category after TodoApp.renameCategory: O(1), or O(smaller side) for a merge.
+    void renameCategory(String from, String to) {
+        occurrenceCache.clear();
+        categories.rename(from, to);
+    }
+
+    // One task's category changed from 'from' (undo of a rename); O(1).
+    void moveCategory(TodoApp.Task t, String from) {
+        if (recurring.contains(t)) occurrenceCache.remove(t);
+        else if (!all.contains(t)) return;
+        categories.move(t, from);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<TodoApp.Task>> map, K key, TodoApp.Task t) {
+        Set<TodoApp.Task> set = map.get(key);
+        if (set == null) return;
+        set.remove(t);
+        if (set.isEmpty()) map.remove(key);
+    }
+
+    // ---------------- Lookups ----------------
+
+    Set<TodoApp.Task> category(String name) { return categories.tasks(name); }
+
+    Set<TodoApp.Task> priority(String name) { return byPriority.getOrDefault(name, Collections.emptySet()); }
+
+    // Due dates in [from, to] (epoch days, inclusive), ascending.
+    NavigableMap<Long, Set<TodoApp.Task>> dueRange(long from, long to) {
+        if (from > to) return Collections.emptyNavigableMap();
+        return byDue.subMap(from, true, to, true);
+    }
+
+    // Every task in the given order.
+    NavigableSet<Entry> ordered(Order order) {
+        return switch (order) {
+            case NEWEST -> newest;
+            case DUE -> dueOrder;
+            case PRIORITY -> priorityOrder;
+            case MANUAL -> manualOrder;
+        };
+    }
+
+    // Tasks due in [from, to] (epoch days, inclusive) in due order; a range scan of the due tree.
+    NavigableSet<Entry> dueOrdered(long from, long to) {
+        to = Math.min(to, NO_DUE_KEY - 1);
+        if (from > to) return Collections.emptyNavigableSet();
+        return dueOrder.subSet(new Entry(null, from, Long.MAX_VALUE, 0, Long.MIN_VALUE), true,
+                new Entry(null, to, Long.MIN_VALUE, 0, Long.MAX_VALUE), true);
+    }
+
+    // Tasks of one priority in priority order.
+    NavigableSet<Entry> priorityOrdered(String priority) {
+        int r = rank(priority);
+        return priorityOrder.subSet(new Entry(null, Long.MIN_VALUE, Long.MAX_VALUE, r, Long.MIN_VALUE), true,
+                new Entry(null, Long.MAX_VALUE, Long.MIN_VALUE, r, Long.MAX_VALUE), true);
+    }
+
+    Comparator<TodoApp.Task> comparator(Order order) {
+        Comparator<Entry> c = switch (order) {
+            case NEWEST -> BY_NEWEST;
+            case DUE -> BY_DUE;
+            case PRIORITY -> BY_PRIORITY;
+            case MANUAL -> BY_MANUAL;
+        };
+        return (a, b) -> c.compare(entryOf(a), entryOf(b));
+    }
+
+    // Manual-order key of the task just before / after 't' (null at the ends), for placing a moved task.
+    String positionNear(TodoApp.Task t, boolean before) {
+        Entry e = before ? manualOrder.lower(entryOf(t)) : manualOrder.higher(entryOf(t));
+        return e == null ? null : e.position;
+    }
+
+    String firstPosition() { return manualOrder.isEmpty() ? null : manualOrder.first().position; }
+
+    private Entry entryOf(TodoApp.Task t) {
+        Entry e = entries.get(t);
+        return e != null ? e : new Entry(t, t.due == null ? NO_DUE_KEY : t.due.toEpochDay(), t.createdAt, rank(t.priority), Long.MAX_VALUE);
+    }
+
+    // Occurrences of the recurring tasks in [from, to]. Cached per series, so the same day
+    // is the same object across refreshes (selection survives) until the series changes.
+    List<TodoApp.Task> occurrences(LocalDate from, LocalDate to) {
+        List<TodoApp.Task> out = new ArrayList<>();
+        for (TodoApp.Task series : recurring) {
+            Map<Long, TodoApp.Occurrence> cache = occurrenceCache.computeIfAbsent(series, k -> new HashMap<>());
+            for (LocalDate d : series.repeat.between(series.due, from, to)) {
+                out.add(cache.computeIfAbsent(d.toEpochDay(), k -> new TodoApp.Occurrence(series, d)));
+            }
+            if (cache.size() > 4 * MAX_OCCURRENCE_WINDOW) cache.clear();
+        }
+        return out;
+    }
+
+    static int rank(String priority) {
+        return switch (priority) {
+            case "High" -> 0;
+            case "Medium" -> 1;
+            case "Low" -> 2;
+            default -> 3;
+        };
+    }
+
+    // Words starting with the prefix.
+    SortedMap<String, Set<TodoApp.Task>> wordsWithPrefix(String prefix) {
+        return words.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    static Set<String> words(TodoApp.Task t) {
+        Set<String> out = new LinkedHashSet<>(FuzzyIndex.terms(t.title));
+        out.addAll(FuzzyIndex.terms(t.notes));
+        return out;
+    }
+}
@@ -0,0 +1,533 @@
+import java.time.LocalDate;
+import java.util.*;
+import java.util.List;
+
+/**
+ * TaskQuery.java
+ *
+ * Small query language for the search field, e.g.
+ *
+ *     cat:Work pri:High due<2026-11-01 !done "budget"
+ *
+ *  - cat:NAME / pri:High|Medium|Low          (case-insensitive; quote names with spaces: cat:"Side project")
+ *  - is:done, is:active, is:overdue; !done (a bare done, active or overdue is a word like any other)
+ *  - due<D  due<=D  due>D  due>=D  due:D  due:none  due:any
+ *    where D is YYYY-MM-DD, today, tomorrow, yesterday, +N / -N days or +Nw weeks
+ *  - word      a word of the title, notes or category starts with it (a single character: a substring
+ *              of them, like a phrase)
+ *  - "phrase"  case-insensitive substring of title, notes or category
+ *  - prefix any clause with ! or - to negate it
+ *
+ * All clauses must hold. plan() asks TaskIndex for the cardinality of every positive clause,
+ * drives the scan from the most selective one and checks the others per candidate,
+ * cheapest-and-most-selective first. execute(order) returns the result in a TaskIndex order
+ * without sorting the whole list. explain() shows the choices.
+ */
+class TaskQuery {
+    enum Kind { STATUS, CATEGORY, PRIORITY, DUE, WORD, PHRASE, ALL }
+
+    static final long NO_DUE = Long.MIN_VALUE;
+
+    static final class Clause {
+        final Kind kind;
+        final boolean negated;
+        final String value;     // lower-cased for WORD / PHRASE
+        final long from, to;    // DUE: inclusive epoch-day range, or from == NO_DUE for "no due date"
+        long estimate;
+
+        Clause(Kind kind, boolean negated, String value, long from, long to) {
+            this.kind = kind;
+            this.negated = negated;
+            this.value = value;
+            this.from = from;
+            this.to = to;
+        }
+
+        Clause(Kind kind, boolean negated, String value) { this(kind, negated, value, 0, 0); }
+
+        boolean test(TodoApp.Task t) {
+            boolean r = switch (kind) {
+                case STATUS -> value.equals("done") ? t.done
+                        : value.equals("overdue") ? !t.done && t.due != null && t.due.toEpochDay() < from
+                        : !t.done;
+                case CATEGORY -> t.category.equalsIgnoreCase(value);
+                case PRIORITY -> t.priority.equalsIgnoreCase(value);
+                case DUE -> from == NO_DUE ? t.due == null
+                        : t.due != null && t.due.toEpochDay() >= from && t.due.toEpochDay() <= to;
+                case WORD -> hasWordPrefix(t, value);
+                case PHRASE -> (t.title + "\n" + t.notes + "\n" + t.category).toLowerCase(Locale.ROOT).contains(value);
+                case ALL -> true;
+            };
+            return r != negated;
+        }
+
+        @Override public String toString() {
+            String s = switch (kind) {
+                case STATUS -> "status=" + value;
+                case CATEGORY -> "category=" + value;
+                case PRIORITY -> "priority=" + value;
+                case DUE -> from == NO_DUE ? "due=none"
+                        : "due in [" + (from == Long.MIN_VALUE + 1 ? "-inf" : LocalDate.ofEpochDay(from))
+                        + ", " + (to == Long.MAX_VALUE ? "+inf" : LocalDate.ofEpochDay(to)) + "]";
+                case WORD -> "word " + value + "*";
+                case PHRASE -> "phrase \"" + value + "\"";
+                case ALL -> "all";
+            };
+            return (negated ? "NOT " : "") + s;
+        }
+    }
+
+    final String source;
+    final List<Clause> clauses = new ArrayList<>();
+    final List<String> warnings = new ArrayList<>();
+
+    private TaskQuery(String source) { this.source = source; }
+
+    // ---------------- Parsing ----------------
+
+    static TaskQuery parse(String input) { return parse(input, LocalDate.now()); }
+
+    static TaskQuery parse(String input, LocalDate today) {
+        TaskQuery q = new TaskQuery(input == null ? "" : input.trim());
+        for (String tok : tokenize(q.source)) q.parseToken(tok, today);
+        return q;
+    }
+
+    TaskQuery and(Clause c) { clauses.add(c); return this; }
+
+    // The plain words and phrases of the query (what the fuzzy index is asked about).
+    String freeText() {
+        StringBuilder sb = new StringBuilder();
+        for (Clause c : clauses) {
+            if (!c.negated && (c.kind == Kind.WORD || c.kind == Kind.PHRASE)) sb.append(c.value).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    private void parseToken(String tok, LocalDate today) {
+        boolean neg = false;
+        if (tok.length() > 1 && (tok.charAt(0) == '!' || tok.charAt(0) == '-') && !tok.matches("-\\d.*")) {
+            neg = true;
+            tok = tok.substring(1);
+        }
+        String lower = tok.toLowerCase(Locale.ROOT);
+
+        if (tok.startsWith("\"")) {
+            String phrase = unquote(tok).toLowerCase(Locale.ROOT);
+            if (!phrase.isEmpty()) clauses.add(new Clause(Kind.PHRASE, neg, phrase));
+            return;
+        }
+        if (lower.equals("is:done") || lower.equals("is:completed") || neg && lower.equals("done")) {
+            clauses.add(new Clause(Kind.STATUS, neg, "done"));
+            return;
+        }
+        if (lower.equals("is:active") || lower.equals("is:open")) {
+            clauses.add(new Clause(Kind.STATUS, neg, "active"));
+            return;
+        }
+        if (lower.equals("is:overdue")) {
+            clauses.add(new Clause(Kind.STATUS, neg, "overdue", today.toEpochDay(), 0));
+            return;
+        }
+        int colon = tok.indexOf(':');
+        if (colon > 0) {
+            String field = lower.substring(0, colon), val = unquote(tok.substring(colon + 1));
+            switch (field) {
+                case "cat", "category" -> { clauses.add(new Clause(Kind.CATEGORY, neg, val)); return; }
+                case "pri", "p", "priority" -> {
+                    String p = normalizePriority(val);
+                    if (p != null) { clauses.add(new Clause(Kind.PRIORITY, neg, p)); return; }
+                    warnings.add("unknown priority '" + val + "'");
+                    return;
+                }
+                case "due" -> {
+                    if (val.equalsIgnoreCase("none")) { clauses.add(new Clause(Kind.DUE, neg, "none", NO_DUE, NO_DUE)); return; }
+                    if (val.equalsIgnoreCase("any")) { clauses.add(new Clause(Kind.DUE, !neg, "none", NO_DUE, NO_DUE)); return; }
+                    Long d = parseDay(val, today);
+                    if (d != null) { clauses.add(new Clause(Kind.DUE, neg, val, d, d)); return; }
+                    warnings.add("bad date '" + val + "'");
+                    return;
+                }
+                default -> { }
+            }
+        }
+        if (lower.startsWith("due<") || lower.startsWith("due>")) {
+            boolean lt = lower.charAt(3) == '<';
+            boolean eq = lower.length() > 4 && lower.charAt(4) == '=';
+            String val = tok.substring(eq ? 5 : 4);
+            Long d = parseDay(val, today);
+            if (d == null) { warnings.add("bad date '" + val + "'"); return; }
+            long from = lt ? Long.MIN_VALUE + 1 : (eq ? d : d + 1);
+            long to = lt ? (eq ? d : d - 1) : Long.MAX_VALUE;
+            clauses.add(new Clause(Kind.DUE, neg, val, from, to));
+            return;
+        }
+        List<String> words = FuzzyIndex.terms(tok);
+        if (words.isEmpty()) { // too short for a word (the index skips them): a substring, as before the index
+            if (!lower.isBlank()) clauses.add(new Clause(Kind.PHRASE, neg, lower));
+            return;
+        }
+        for (String w : words) clauses.add(new Clause(Kind.WORD, neg, w));
+    }
+
+    static String normalizePriority(String v) {
+        switch (v.toLowerCase(Locale.ROOT)) {
+            case "high": case "h": return "High";
+            case "medium": case "med": case "m": return "Medium";
+            case "low": case "l": return "Low";
+            default: return null;
+        }
+    }
+
+    static Long parseDay(String v, LocalDate today) {
+        String s = v.toLowerCase(Locale.ROOT);
+        try {
+            switch (s) {
+                case "today": return today.toEpochDay();
+                case "tomorrow": return today.toEpochDay() + 1;
+                case "yesterday": return today.toEpochDay() - 1;
+                default:
+            }
+            if (s.matches("[+-]\\d+w")) return today.toEpochDay() + 7L * Long.parseLong(s.substring(0, s.length() - 1));
+            if (s.matches("[+-]\\d+d?")) return today.toEpochDay() + Long.parseLong(s.replace("d", ""));
+            return LocalDate.parse(v).toEpochDay();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    static List<String> tokenize(String s) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') quoted = !quoted;
+            if (Character.isWhitespace(c) && !quoted) {
+                if (cur.length() > 0) { out.add(cur.toString()); cur.setLength(0); }
+            } else {
+                cur.append(c);
+            }
+        }
+        if (cur.length() > 0) out.add(cur.toString());
+        return out;
+    }
+
+    private static String unquote(String s) {
+        s = s.trim();
+        if (s.startsWith("\"")) s = s.substring(1);
+        if (s.endsWith("\"")) s = s.substring(0, s.length() - 1);
+        return s.trim();
+    }
+
+    static boolean hasWordPrefix(TodoApp.Task t, String prefix) {
+        String blob = (t.title + "\n" + t.notes + "\n" + t.category).toLowerCase(Locale.ROOT);
+        int i = blob.indexOf(prefix);
+        while (i >= 0) {
+            if (i == 0 || !Character.isLetterOrDigit(blob.charAt(i - 1))) return true;
+            i = blob.indexOf(prefix, i + 1);
+        }
+        return false;
+    }
+
+    // ---------------- Planning ----------------
+
+    Plan plan(TaskIndex index) {
+        mergeDueRanges();
+        Plan p = new Plan(this, index);
+        Clause best = null;
+        for (Clause c : clauses) {
+            c.estimate = estimate(c, index);
+            if (!c.negated && c.kind != Kind.ALL && (best == null || c.estimate < best.estimate)) best = c;
+        }
+        if (best == null || best.estimate >= index.size()) {
+            best = new Clause(Kind.ALL, false, "");
+            best.estimate = index.size();
+        }
+        p.driver = best;
+        for (Clause c : clauses) if (c != best) p.residual.add(c);
+        // cheap, selective checks first; text checks are the most expensive
+        p.residual.sort(Comparator.comparingDouble(c -> cost(c) * (double) (c.negated ? index.size() - c.estimate : c.estimate)));
+        return p;
+    }
+
+    // due>=today due<+7 becomes one range clause, so it can drive a single range scan.
+    private void mergeDueRanges() {
+        Clause first = null;
+        long from = Long.MIN_VALUE + 1, to = Long.MAX_VALUE;
+        int n = 0;
+        for (Clause c : clauses) {
+            if (c.kind != Kind.DUE || c.negated || c.from == NO_DUE) continue;
+            if (first == null) first = c;
+            from = Math.max(from, c.from);
+            to = Math.min(to, c.to);
+            n++;
+        }
+        if (n < 2) return;
+        int at = clauses.indexOf(first);
+        clauses.removeIf(c -> c.kind == Kind.DUE && !c.negated && c.from != NO_DUE);
+        clauses.add(at, new Clause(Kind.DUE, false, "range", from, to));
+    }
+
+    private static double cost(Clause c) {
+        return c.kind == Kind.WORD || c.kind == Kind.PHRASE ? 8 : 1;
+    }
+
+    // Number of tasks the clause selects (before negation), from the index.
+    static long estimate(Clause c, TaskIndex idx) {
+        switch (c.kind) {
+            case STATUS:
+                if (c.value.equals("done")) return idx.done.size();
+                if (c.value.equals("active")) return idx.active.size();
+                long overdue = 0;
+                for (Set<TodoApp.Task> s : idx.dueRange(Long.MIN_VALUE + 1, c.from - 1).values()) overdue += s.size();
+                return Math.min(overdue, idx.active.size());
+            case CATEGORY: {
+                long n = 0;
+                for (CategoryRegistry.Category cat : idx.categories.all()) {
+                    if (cat.name.equalsIgnoreCase(c.value)) n += cat.tasks.size();
+                }
+                return n;
+            }
+            case PRIORITY:
+                return idx.priority(c.value).size();
+            case DUE: {
+                if (c.from == NO_DUE) return idx.noDue.size();
+                long n = 0;
+                for (Set<TodoApp.Task> s : idx.dueRange(c.from, c.to).values()) n += s.size();
+                return n;
+            }
+            case WORD: {
+                long n = 0;
+                for (Set<TodoApp.Task> s : idx.wordsWithPrefix(c.value).values()) {
+                    n += s.size();
+                    if (n >= idx.size()) return idx.size();
+                }
+                for (CategoryRegistry.Category cat : idx.categories.all()) {
+                    if (categoryHasWordPrefix(cat.name, c.value)) n += cat.tasks.size();
+                }
+                return Math.min(n, idx.size());
+            }
+            case PHRASE: {
+                // only a multi-word phrase has an indexable part: its last word starts a word
+                String last = lastWordOfPhrase(c.value);
+                if (last == null) return idx.size();
+                return estimate(new Clause(Kind.WORD, false, last), idx);
+            }
+            default:
+                return idx.size();
+        }
+    }
+
+    private static boolean categoryHasWordPrefix(String category, String prefix) {
+        for (String w : FuzzyIndex.terms(category)) if (w.startsWith(prefix)) return true;
+        return false;
+    }
+
+    static String lastWordOfPhrase(String phrase) {
+        List<String> w = FuzzyIndex.terms(phrase);
+        if (w.size() < 2) return null;
+        int at = phrase.lastIndexOf(w.get(w.size() - 1));
+        if (at <= 0 || Character.isLetterOrDigit(phrase.charAt(at - 1))) return null;
+        return w.get(w.size() - 1);
+    }
+
+    // Candidate tasks for a positive clause, straight from the index (may repeat for WORD).
+    static Iterator<TodoApp.Task> candidates(Clause c, TaskIndex idx) {
+        List<Collection<TodoApp.Task>> parts = new ArrayList<>();
+        switch (c.kind) {
+            case STATUS -> {
+                if (c.value.equals("done")) parts.add(idx.done);
+                else if (c.value.equals("active")) parts.add(idx.active);
+                else parts.addAll(idx.dueRange(Long.MIN_VALUE + 1, c.from - 1).values());
+            }
+            case CATEGORY -> {
+                for (CategoryRegistry.Category cat : idx.categories.all()) {
+                    if (cat.name.equalsIgnoreCase(c.value)) parts.add(cat.tasks);
+                }
+            }
+            case PRIORITY -> parts.add(idx.priority(c.value));
+            case DUE -> {
+                if (c.from == NO_DUE) parts.add(idx.noDue);
+                else parts.addAll(idx.dueRange(c.from, c.to).values());
+            }
+            case WORD, PHRASE -> {
+                String w = c.kind == Kind.WORD ? c.value : lastWordOfPhrase(c.value);
+                if (w == null) parts.add(idx.all);
+                else {
+                    parts.addAll(idx.wordsWithPrefix(w).values());
+                    for (CategoryRegistry.Category cat : idx.categories.all()) {
+                        if (categoryHasWordPrefix(cat.name, w)) parts.add(cat.tasks);
+                    }
+                }
+            }
+            default -> parts.add(idx.all);
+        }
+        return parts.stream().flatMap(Collection::stream).iterator();
+    }
+
+    static final class Plan {
+        final TaskQuery query;
+        final TaskIndex index;
+        Clause driver;
+        final List<Clause> residual = new ArrayList<>();
+        long scanned, matched, nanos;
+        String strategy = "unordered";
+        String occurrenceWindow;
+        int occurrences;
+
+        Plan(TaskQuery query, TaskIndex index) { this.query = query; this.index = index; }
+
+        // Lazily walks the driver's postings and yields the candidates that pass every other clause.
+        Iterator<TodoApp.Task> iterator() {
+            Iterator<TodoApp.Task> src = candidates(driver, index);
+            // word postings overlap (several words of one task share the prefix) and so do
+            // the extra category postings; everything else is a disjoint union
+            boolean dedupe = driver.kind == Kind.WORD || driver.kind == Kind.PHRASE;
+            Set<TodoApp.Task> seen = dedupe ? TaskIndex.identitySet() : null;
+            return new Iterator<>() {
+                TodoApp.Task next;
+
+                @Override public boolean hasNext() {
+                    while (next == null && src.hasNext()) {
+                        TodoApp.Task t = src.next();
+                        scanned++;
+                        if (seen != null && !seen.add(t)) continue;
+                        if (driver.kind != Kind.ALL && !driver.test(t)) continue; // e.g. phrase verification
+                        if (matchesResidual(t)) next = t;
+                    }
+                    return next != null;
+                }
+
+                @Override public TodoApp.Task next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    TodoApp.Task t = next;
+                    next = null;
+                    matched++;
+                    return t;
+                }
+            };
+        }
+
+        List<TodoApp.Task> execute() {
+            long t0 = System.nanoTime();
+            List<TodoApp.Task> out = new ArrayList<>();
+            for (Iterator<TodoApp.Task> it = iterator(); it.hasNext(); ) out.add(it.next());
+            nanos = System.nanoTime() - t0;
+            return out;
+        }
+
+        // The matching tasks in 'order':
+        //  - a due-date driver under due order (or a priority driver under priority order) is a range scan
+        //  - a broad result is collected unordered, then picked out of the order's tree in one walk,
+        //    which beats sorting most of the list
+        //  - a selective driver sorts only its own small result
+        List<TodoApp.Task> execute(TaskIndex.Order order) {
+            long t0 = System.nanoTime();
+            List<TodoApp.Task> out = new ArrayList<>();
+            NavigableSet<TaskIndex.Entry> range = orderedRange(order);
+            long est = driver.estimate;
+            if (range != null || driver.kind == Kind.ALL) {
+                strategy = range != null ? "range scan in " + order : "walk " + order + " order";
+                for (TaskIndex.Entry e : range != null ? range : index.ordered(order)) {
+                    scanned++;
+                    if ((driver.kind == Kind.ALL || driver.test(e.task)) && matchesResidual(e.task)) out.add(e.task);
+                }
+                matched = out.size();
+            } else if (est * (64 - Long.numberOfLeadingZeros(est)) > index.size()) {
+                strategy = "pick from " + order + " order";
+                Set<TodoApp.Task> hits = TaskIndex.identitySet();
+                for (Iterator<TodoApp.Task> it = iterator(); it.hasNext(); ) hits.add(it.next());
+                if (!hits.isEmpty()) {
+                    for (TaskIndex.Entry e : index.ordered(order)) {
+                        if (hits.contains(e.task)) out.add(e.task);
+                        if (out.size() == hits.size()) break;
+                    }
+                }
+            } else {
+                strategy = "sort result by " + order;
+                for (Iterator<TodoApp.Task> it = iterator(); it.hasNext(); ) out.add(it.next());
+                out.sort(index.comparator(order));
+            }
+            nanos = System.nanoTime() - t0;
+            return out;
+        }
+
+        private NavigableSet<TaskIndex.Entry> orderedRange(TaskIndex.Order order) {
+            if (driver.negated) return null;
+            if (order == TaskIndex.Order.DUE && driver.kind == Kind.DUE && driver.from != NO_DUE) {
+                return index.dueOrdered(driver.from, driver.to);
+            }
+            if (order == TaskIndex.Order.DUE && driver.kind == Kind.STATUS && driver.value.equals("overdue")) {
+                return index.dueOrdered(Long.MIN_VALUE + 1, driver.from - 1);
+            }
+            if (order == TaskIndex.Order.PRIORITY && driver.kind == Kind.PRIORITY) {
+                return index.priorityOrdered(driver.value);
+            }
+            return null;
+        }
+
+        // Adds the matching occurrences of recurring tasks to an ordered result (a merge, no full sort).
+        // The window is a few weeks around today, or the query's due range capped at MAX_OCCURRENCE_WINDOW days.
+        List<TodoApp.Task> withOccurrences(List<TodoApp.Task> ordered, TaskIndex.Order order, LocalDate today) {
+            if (index.recurring.isEmpty()) return ordered;
+            long lo = today.toEpochDay() - TaskIndex.OCCURRENCE_LOOKBACK, hi = today.toEpochDay() + TaskIndex.OCCURRENCE_HORIZON;
+            for (Clause c : query.clauses) {
+                if (c.kind != Kind.DUE || c.negated || c.from == NO_DUE) continue;
+                if (c.from != Long.MIN_VALUE + 1) lo = c.from;
+                hi = c.to != Long.MAX_VALUE ? c.to : Math.max(lo, today.toEpochDay()) + TaskIndex.OCCURRENCE_HORIZON;
+            }
+            hi = Math.min(hi, lo + TaskIndex.MAX_OCCURRENCE_WINDOW);
+            if (lo > hi) return ordered;
+            occurrenceWindow = LocalDate.ofEpochDay(lo) + " .. " + LocalDate.ofEpochDay(hi);
+
+            List<TodoApp.Task> occ = new ArrayList<>();
+            for (TodoApp.Task t : index.occurrences(LocalDate.ofEpochDay(lo), LocalDate.ofEpochDay(hi))) {
+                if (matchesAll(t)) occ.add(t);
+            }
+            occurrences = occ.size();
+            if (occ.isEmpty()) return ordered;
+            Comparator<TodoApp.Task> cmp = index.comparator(order);
+            occ.sort(cmp);
+            List<TodoApp.Task> out = new ArrayList<>(ordered.size() + occ.size());
+            int i = 0, j = 0;
+            while (i < ordered.size() || j < occ.size()) {
+                if (j == occ.size() || (i < ordered.size() && cmp.compare(ordered.get(i), occ.get(j)) <= 0)) out.add(ordered.get(i++));
+                else out.add(occ.get(j++));
+            }
+            return out;
+        }
+
+        boolean matchesAll(TodoApp.Task t) {
+            for (Clause c : query.clauses) if (!c.test(t)) return false;
+            return true;
+        }
+
+        boolean matchesResidual(TodoApp.Task t) {
+            for (Clause c : residual) if (!c.test(t)) return false;
+            return true;
+        }
+
+        // Every clause except free-text ones (used to filter fuzzy matches).
+        boolean matchesStructured(TodoApp.Task t) {
+            for (Clause c : query.clauses) {
+                if (c.kind != Kind.WORD && c.kind != Kind.PHRASE && !c.test(t)) return false;
+            }
+            return true;
+        }
+
+        String explain() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("query: ").append(query.source.isEmpty() ? "(empty)" : query.source).append('\n');
+            sb.append("drive: ").append(driver).append("  ~").append(driver.estimate).append(" of ").append(index.size()).append('\n');
+            for (Clause c : residual) {
+                sb.append("check: ").append(c).append("  ~").append(c.negated ? index.size() - c.estimate : c.estimate).append('\n');
+            }
+            sb.append("order: ").append(strategy).append('\n');
+            if (occurrenceWindow != null) sb.append("recurring: ").append(occurrences).append(" occurrences in ").append(occurrenceWindow).append('\n');
+            for (String w : query.warnings) sb.append("warning: ").append(w).append('\n');
+            if (nanos > 0) sb.append(String.format("scanned %d, matched %d in %.2f ms", scanned, matched, nanos / 1e6));
+            return sb.toString().trim();
+        }
+    }
+}
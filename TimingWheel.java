@@ -0,0 +1,126 @@
+import java.util.List;
+
+/**
+ * TimingWheel.java
+ *
+ * Hierarchical timing wheel (Varghese & Lauck), as used for the due-date reminders.
+ *  - LEVELS wheels of 64 slots; level L holds timeouts whose deadline first differs from the
+ *    current tick in its L-th 6-bit digit, so 6 levels of 1 s ticks reach about 2000 years
+ *  - every slot is an intrusive doubly-linked list: schedule and cancel are O(1)
+ *  - advancing one tick expires one level-0 slot; a higher-level slot is cascaded down
+ *    only when the lower digits of the tick roll over to zero
+ *
+ * Not thread-safe; ReminderScheduler guards it with its own lock.
+ */
+class TimingWheel<T> {
+    static final int BITS = 6, SLOTS = 1 << BITS, MASK = SLOTS - 1, LEVELS = 6;
+    static final long MAX_TICKS = 1L << (BITS * LEVELS);
+
+    static final class Timeout<T> {
+        final T value;
+        long deadline; // tick
+        Timeout<T> prev, next;
+        boolean linked;
+
+        Timeout(T value, long deadline) { this.value = value; this.deadline = deadline; }
+    }
+
+    final long tickMillis;
+    private final Timeout<T>[][] heads; // sentinel of each slot's circular list
+    private long current;               // last processed tick
+    private int size;
+
+    TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.current = startMillis / tickMillis;
+        heads = newSlots();
+        for (Timeout<T>[] level : heads) {
+            for (int i = 0; i < SLOTS; i++) {
+                Timeout<T> s = new Timeout<>(null, 0);
+                s.prev = s.next = s;
+                level[i] = s;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked") // generic array creation; every element is a Timeout<T>
+    private static <T> Timeout<T>[][] newSlots() { return (Timeout<T>[][]) new Timeout<?>[LEVELS][SLOTS]; }
+
+    int size() { return size; }
+
+    long currentMillis() { return current * tickMillis; }
+
+    // Schedules 'value' for 'atMillis' (wall clock); past deadlines expire on the next tick.
+    Timeout<T> schedule(T value, long atMillis) {
+        long tick = Math.max(atMillis / tickMillis, current + 1);
+        Timeout<T> t = new Timeout<>(value, Math.min(tick, current | (MAX_TICKS - 1))); // clamp to the top wheel
+        link(t);
+        size++;
+        return t;
+    }
+
+    boolean cancel(Timeout<T> t) {
+        if (t == null || !t.linked) return false;
+        unlink(t);
+        size--;
+        return true;
+    }
+
+    // Processes every tick up to 'nowMillis' and adds the expired values to 'out' in deadline order.
+    void advance(long nowMillis, List<T> out) {
+        long target = nowMillis / tickMillis;
+        while (current < target) {
+            if (size == 0) { current = target; return; }
+            current++;
+            // cascade from the highest level whose lower digits just rolled over
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((current & ((1L << (BITS * level)) - 1)) == 0) cascade(level, (int) (current >>> (BITS * level)) & MASK);
+            }
+            Timeout<T> head = heads[0][(int) current & MASK];
+            while (head.next != head) {
+                Timeout<T> t = head.next;
+                unlink(t);
+                size--;
+                out.add(t.value);
+            }
+        }
+    }
+
+    // Millis until the next tick that has work, capped at 'max' (lets the scheduler sleep through idle time).
+    long millisToNextWork(long nowMillis, long max) {
+        if (size == 0) return max;
+        long base = current + 1;
+        for (long tick = base; tick < base + SLOTS && (tick - base) * tickMillis < max; tick++) {
+            if (heads[0][(int) tick & MASK].next != heads[0][(int) tick & MASK]) return Math.max(0, tick * tickMillis - nowMillis);
+            if ((tick & MASK) == 0) return Math.max(0, tick * tickMillis - nowMillis); // a cascade is due
+        }
+        return Math.min(max, Math.max(0, (base + SLOTS) * tickMillis - nowMillis));
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout<T> head = heads[level][slot];
+        while (head.next != head) {
+            Timeout<T> t = head.next;
+            unlink(t);
+            link(t);
+        }
+    }
+
+    private void link(Timeout<T> t) {
+        long diff = t.deadline ^ current;
+        int level = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / BITS;
+        Timeout<T> head = heads[level][(int) (t.deadline >>> (BITS * level)) & MASK];
+        t.prev = head.prev;
+        t.next = head;
+        head.prev.next = t;
+        head.prev = t;
+        t.linked = true;
+    }
+
+    private void unlink(Timeout<T> t) {
+        t.prev.next = t.next;
+        t.next.prev = t.prev;
+        t.prev = t.next = null;
+        t.linked = false;
+    }
+}
@@ -0,0 +1,85 @@
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Toast.java
+ *
+ * Non-blocking notification: a small non-focusable window stacked in the bottom-right
+ * corner of the screen, closed by a click or after a few seconds. Unlike JOptionPane
+ * it never takes focus or blocks the EDT. Call on the EDT.
+ */
+class Toast {
+    static final int SHOW_MILLIS = 6000, MAX_VISIBLE = 3, GAP = 10;
+
+    private static final List<JWindow> visible = new ArrayList<>();
+
+    static void show(Window owner, String title, String message) {
+        JWindow w = new JWindow(owner);
+        w.setFocusableWindowState(false);
+        w.setAlwaysOnTop(true);
+        w.setBackground(new Color(0, 0, 0, 0));
+
+        JPanel card = new JPanel(new BorderLayout(0, 4)) {
+            @Override protected void paintComponent(Graphics g) {
+                Graphics2D g2 = (Graphics2D) g.create();
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.setColor(new Color(255, 255, 255, 245));
+                g2.fillRoundRect(0, 0, getWidth() - 1, getHeight() - 1, 16, 16);
+                g2.setColor(new Color(0, 0, 0, 40));
+                g2.drawRoundRect(0, 0, getWidth() - 1, getHeight() - 1, 16, 16);
+                g2.setColor(new Color(60, 120, 250));
+                g2.fillRoundRect(0, 0, 6, getHeight() - 1, 6, 6);
+                g2.dispose();
+            }
+        };
+        card.setOpaque(false);
+        card.setBorder(new EmptyBorder(10, 16, 10, 14));
+        JLabel head = new JLabel(title);
+        head.setFont(head.getFont().deriveFont(Font.BOLD));
+        JLabel body = new JLabel("<html><div style='width:240px'>" + escape(message).replace("\n", "<br>") + "</div></html>");
+        body.setForeground(new Color(100, 110, 130));
+        card.add(head, BorderLayout.NORTH);
+        card.add(body, BorderLayout.CENTER);
+        w.setContentPane(card);
+        w.pack();
+
+        Timer timer = new Timer(SHOW_MILLIS, e -> close(w));
+        timer.setRepeats(false);
+        card.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) { timer.stop(); close(w); }
+        });
+
+        while (visible.size() >= MAX_VISIBLE) close(visible.get(0));
+        visible.add(w);
+        layout();
+        w.setVisible(true);
+        timer.start();
+    }
+
+    private static void close(JWindow w) {
+        if (!visible.remove(w)) return;
+        w.dispose();
+        layout();
+    }
+
+    // Newest at the bottom, older ones stacked above it.
+    private static void layout() {
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        int y = screen.y + screen.height - GAP;
+        for (int i = visible.size() - 1; i >= 0; i--) {
+            JWindow w = visible.get(i);
+            y -= w.getHeight();
+            w.setLocation(screen.x + screen.width - w.getWidth() - GAP, y);
+            y -= GAP;
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
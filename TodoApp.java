@@ -8,9 +8,12 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.plaf.basic.BasicScrollBarUI;
 import java.awt.*;
+import java.awt.datatransfer.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
@@ -31,10 +34,18 @@ import java.util.List;
  *
  * Compile: javac TodoApp.java
  * Run:     java TodoApp
+ * Stress:  java TodoApp --stress 1000000 [--seed 7]   (generated tasks, saving disabled)
+ * Monitor: java TodoApp --edt-monitor [thresholdMs]  (EDT latency stats, Diagnostics button)
+ * Explain: java -Dtodo.explain=true TodoApp            (prints the search planner's choices)
+ * Remind:  java -Dtodo.remindAt=08:30 TodoApp          (due-date reminder time, default 09:00)
+ * API:     java TodoApp --api [port]                  (local HTTP API, default port 7878, see TaskApi)
+ * Sync:    java TodoApp --sync http://localhost:7879  (delta sync; java SyncServer runs a local server)
+ * Archive: java -Dtodo.archiveAfterDays=90 TodoApp     (tasks completed longer ago move to the archive; 0 = never)
  */
 public class TodoApp extends JFrame {
     // ---- Model ----
     static class Task implements Serializable {
+        private static final long serialVersionUID = 3212722644149539838L;
         String title;
         String notes;
         LocalDate due; // nullable
@@ -42,6 +53,15 @@ public class TodoApp extends JFrame {
         String category;      // e.g. "Work", "Personal"
         String priority;      // "High","Medium","Low"
         long createdAt = System.currentTimeMillis();
+        long id = java.util.concurrent.ThreadLocalRandom.current().nextLong(); // stable across saves, for merging
+        long modifiedAt = createdAt;    // bumped on every edit (sync looks for it moving)
+        Recurrence repeat;              // nullable; 'due' is then the first occurrence
+        TreeSet<Long> doneOccurrences;  // epoch days of completed occurrences (recurring tasks only)
+        long[] clock;                   // TaskCrdt: stamp of the last write per field (null = from modifiedAt)
+        String position;                // TaskCrdt: manual-order key
+        long deletedAt;                 // TaskCrdt: delete stamp; such tombstones are kept aside, not listed
+        VersionVector version;          // sync: edits seen per replica (null = never synced)
+        long syncedAt;                  // sync: modifiedAt last pushed or pulled; differs while edited locally
 
         Task(String title, String notes, LocalDate due, String category, String priority) {
             this.title = title == null ? "" : title.trim();
@@ -51,10 +71,133 @@ public class TodoApp extends JFrame {
             this.priority = (priority == null || priority.isBlank()) ? "Medium" : priority;
             this.done = false;
         }
+
+        boolean isRecurring() { return repeat != null && due != null; }
+
+        boolean isDoneOn(LocalDate day) { return doneOccurrences != null && doneOccurrences.contains(day.toEpochDay()); }
+
+        void setDoneOn(LocalDate day, boolean value) {
+            if (value) {
+                if (doneOccurrences == null) doneOccurrences = new TreeSet<>();
+                doneOccurrences.add(day.toEpochDay());
+            } else if (doneOccurrences != null) {
+                doneOccurrences.remove(day.toEpochDay());
+            }
+        }
+
+        // A detached copy (same id) sharing nothing the EDT mutates, for readers on other threads.
+        Task copy() {
+            Task c = new Task(title, notes, due, category, priority);
+            c.done = done;
+            c.createdAt = createdAt;
+            c.id = id;
+            c.modifiedAt = modifiedAt;
+            c.repeat = repeat;
+            c.doneOccurrences = doneOccurrences == null ? null : new TreeSet<>(doneOccurrences);
+            c.clock = clock == null ? null : clock.clone();
+            c.position = position;
+            c.deletedAt = deletedAt;
+            c.version = version;
+            c.syncedAt = syncedAt;
+            return c;
+        }
     }
 
+    // One day of a recurring task, generated on demand (TaskIndex.occurrences); never saved.
+    static final class Occurrence extends Task {
+        final Task series;
+
+        Occurrence(Task series, LocalDate day) {
+            super(series.title, series.notes, day, series.category, series.priority);
+            this.series = series;
+            this.createdAt = series.createdAt;
+            this.repeat = series.repeat;
+            this.position = series.position;
+            this.done = series.isDoneOn(day);
+        }
+    }
+
+    // The stored task behind a list entry.
+    static Task seriesOf(Task t) { return t instanceof Occurrence o ? o.series : t; }
+
     // Persistence path
     private static final Path SAVE_PATH = Paths.get(System.getProperty("user.home"), ".swing-todo.dat");
+    private static final Path INDEX_PATH = SAVE_PATH.resolveSibling(SAVE_PATH.getFileName() + ".idx"); // IndexSnapshot
+
+    // Live reload: watches SAVE_PATH and merges external changes task by task (see mergeExternal, TaskCrdt)
+    private FileWatcher watcher;
+    private final Map<Long, Task> tasksById = new HashMap<>();
+    private final Map<Long, Task> tombstones = new HashMap<>(); // deleted tasks, saved until TaskCrdt GC drops them
+    private TaskQuery.Plan lastPlan;
+    private volatile long knownSeq = -1; // TaskFile seq we last wrote or merged
+
+    // Stress mode (--stress N [--seed S]): generated in-memory tasks, nothing is saved
+    private static int stressTasks = 0;
+    private static long stressSeed = 1;
+
+    // Local HTTP API (--api [port]) and delta sync (--sync URL); their changes are indexed at once
+    // but saved and shown in batches (see applyPendingChanges)
+    private static int apiPort = 0;
+    private static String syncUrl;
+    private TaskApi api;
+    private SyncClient sync;
+    private final Set<Task> pendingTouched = TaskIndex.identitySet(), pendingRemoved = TaskIndex.identitySet();
+    private boolean pendingSave;
+    private final javax.swing.Timer pendingFlush = new javax.swing.Timer(150, e -> applyPendingChanges());
+    // Change events of the list, dispatched once per EDT tick (see TaskChanges)
+    private final TaskChanges changes = new TaskChanges();
+
+    // Readers off the EDT (the API, the save and archive encoders) get the list from tasksView: an
+    // immutable HashTrie of detached task copies, republished once per EDT event that changed tasks.
+    // tasksEdit takes the changes in between (see publishTasks)
+    private final java.util.concurrent.atomic.AtomicReference<HashTrie<Task>> tasksView = new java.util.concurrent.atomic.AtomicReference<>(HashTrie.empty());
+    private HashTrie.Editor<Task> tasksEdit = HashTrie.<Task>empty().edit();
+    private boolean publishQueued;
+
+    // Progressive load: the file's head segment is shown first, the rest streams in on a background
+    // thread (see load); saving waits for it and the watcher, API and sync start after it
+    private static final String TITLE = "To-Do — Clean";
+    private static final int HEAD_TASKS = 200; // saved as the head segment: a screenful and then some
+    private boolean loading, loadedSinceTick;
+    private TodoEvents.Load loadEvent;
+    private final javax.swing.Timer loadTick = new javax.swing.Timer(250, e -> showLoaded());
+    private TaskFile.Segments<Task> segments;               // while loading
+    private java.util.concurrent.atomic.AtomicIntegerArray claimed; // segment taken by the loader or the EDT
+    // While loading, searches and the chart are answered from the index snapshot of the file (if it
+    // matches), with tasks looked up by file ordinal; without one, the file order is kept to write it
+    private IndexSnapshot snapshot;
+    private Task[] byOrdinal;
+    private final List<Task> fileOrder = new ArrayList<>();
+    private int fileHead;
+    private boolean rebuildIndex;
+    // The snapshot is written once a burst of saves is over (it costs about as much as the save)
+    private final javax.swing.Timer indexWrite = new javax.swing.Timer(2000, e -> writeIndexNow());
+    private List<Task> savedData;
+    private int savedHead;
+    private long savedSeq;
+
+    // Saving off the EDT (see save): the write in flight, whether changes came in while it ran, and
+    // whether the window is closing (saves then finish on the EDT)
+    private final java.util.concurrent.ExecutorService saver = java.util.concurrent.Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "todo-save");
+        t.setDaemon(true);
+        return t;
+    });
+    private java.util.concurrent.Future<Saved> saveJob;
+    private boolean saveAgain, closing;
+
+    // Cold tier: tasks completed more than ARCHIVE_AFTER_DAYS ago leave the task file, the model and the
+    // indexes for the archive (TaskArchive). Searches and the Completed filter read it back on first need
+    private static final Path ARCHIVE_PATH = SAVE_PATH.resolveSibling(SAVE_PATH.getFileName() + ".archive");
+    private static final int ARCHIVE_AFTER_DAYS = Integer.getInteger("todo.archiveAfterDays", 90);
+    private TaskArchive archive;
+    private Thread archiveLoad;
+    private boolean archiving;
+    private final javax.swing.Timer archiveTick = new javax.swing.Timer(3_600_000, e -> archiveOld());
+
+    // Completion history: creations and completions, rolled up per hour / day / week for the trend chart
+    private static final Path HISTORY_PATH = SAVE_PATH.resolveSibling(SAVE_PATH.getFileName() + ".history");
+    private TaskHistory history = TaskHistory.empty();
 
     // UI State
     private final DefaultListModel<Task> masterModel = new DefaultListModel<>();
@@ -73,13 +216,32 @@ public class TodoApp extends JFrame {
     private final JButton editBtn = new JButton("Edit");
     private final JButton delBtn = new JButton("Delete");
     private final JCheckBox showDueTodayFirst = new JCheckBox("Prioritize today");
+    private final JComboBox<TaskIndex.Order> sortBox = new JComboBox<>(TaskIndex.Order.values());
     private final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("EEE, d MMM");
 
     // Chart panel
     private final ChartPanel chartPanel = new ChartPanel();
+    private final CalendarPanel calendarPanel = new CalendarPanel();
+
+    // Autocompletion (maintained incrementally via indexAdd / indexRemove)
+    private final PrefixTrie titleTrie = new PrefixTrie();
+    private final PrefixTrie categoryTrie = new PrefixTrie();
+
+    // Typo-tolerant title search, appended after exact matches
+    private final FuzzyIndex<Task> fuzzyIndex = new FuzzyIndex<>();
+
+    // Status / category / priority / due / word indexes for the query planner
+    private final TaskIndex taskIndex = new TaskIndex();
+    private static final boolean EXPLAIN_QUERIES = Boolean.getBoolean("todo.explain");
+
+    // Due-date reminders, rescheduled from indexAdd / indexRemove
+    private final ReminderScheduler reminders = new ReminderScheduler(this::showReminders);
+
+    // Undo / redo of the user's edits (Ctrl+Z, Ctrl+Y): inverse commands, see UndoLog
+    private final UndoLog undoLog = new UndoLog();
 
     public TodoApp() {
-        super("To-Do — Clean");
+        super(TITLE);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setMinimumSize(new Dimension(1000, 640));
         setLocationByPlatform(true);
@@ -110,7 +272,7 @@ public class TodoApp extends JFrame {
         root.add(right, BorderLayout.EAST);
 
         // Footer tip
-        JLabel tip = new JLabel("Tip: Double-click a task to edit · Drag to reorder · Delete key removes selected");
+        JLabel tip = new JLabel("Tip: Double-click a task to edit · Drag to reorder · Delete key removes selected · Ctrl+Z undoes");
         tip.setHorizontalAlignment(SwingConstants.CENTER);
         tip.setBorder(new EmptyBorder(8, 12, 12, 12));
         tip.setForeground(new Color(100, 110, 130));
@@ -119,6 +281,7 @@ public class TodoApp extends JFrame {
         // Interactions wiring
         addBtn.addActionListener(e -> onAdd());
         addField.addActionListener(e -> onAdd());
+        new SuggestionPopup(addField, text -> titleTrie.complete(text, 8, PrefixTrie.normalize(text)));
         editBtn.addActionListener(e -> onEdit());
         delBtn.addActionListener(e -> onDelete());
 
@@ -138,10 +301,17 @@ public class TodoApp extends JFrame {
                             t.done ? "Mark this task as not completed?" : "Mark this task as completed?",
                             "Confirm", JOptionPane.YES_NO_OPTION);
                     if (confirm == JOptionPane.YES_OPTION) {
-                        t.done = !t.done;
-                        save();
-                        refreshView();
-                        updateCategoriesAndChart();
+                        Task stored = thaw(seriesOf(t));
+                        Task before = TaskCrdt.values(stored);
+                        String label = t.done ? "Reopen task" : "Complete task";
+                        int field = t instanceof Occurrence ? TaskCrdt.OCCURRENCES : TaskCrdt.DONE;
+                        indexRemove(stored);
+                        if (t instanceof Occurrence) stored.setDoneOn(t.due, !t.done);
+                        else stored.done = !stored.done;
+                        TaskCrdt.touch(stored, field);
+                        indexAdd(stored);
+                        undoLog.record(new EditCommand(label, stored, before));
+                        changes.fields(TaskChanges.Origin.LOCAL, stored, TaskChanges.mask(field));
                     }
                 } else {
                     list.setSelectedIndex(idx);
@@ -149,6 +319,12 @@ public class TodoApp extends JFrame {
             }
         });
 
+        // Reactions to task changes, once per EDT tick (see TaskChanges)
+        changes.listen(this::persistChanges);
+        changes.listen(this::viewChanges);
+        changes.listen(this::sidebarChanges);
+        changes.listen(this::historyChanges);
+
         // Drag to reorder
         list.setDragEnabled(true);
         list.setDropMode(DropMode.INSERT);
@@ -157,6 +333,7 @@ public class TodoApp extends JFrame {
         // Filtering & search
         filterBox.addActionListener(e -> refreshView());
         showDueTodayFirst.addActionListener(e -> refreshView());
+        sortBox.addActionListener(e -> refreshView());
         searchField.getDocument().addDocumentListener(new DocumentListener() {
             public void insertUpdate(DocumentEvent e) { refreshView(); }
             public void removeUpdate(DocumentEvent e) { refreshView(); }
@@ -177,7 +354,51 @@ public class TodoApp extends JFrame {
             public void actionPerformed(ActionEvent e) { onDelete(); }
         });
 
-        // Load data
+        // Undo / redo
+        int menuKey = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        InputMap keys = list.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, menuKey), "undo");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, menuKey), "redo");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, menuKey | InputEvent.SHIFT_DOWN_MASK), "redo");
+        list.getActionMap().put("undo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) { undo(false); }
+        });
+        list.getActionMap().put("redo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) { undo(true); }
+        });
+
+        // Closing before the file is fully in would drop edits made meanwhile; finish loading first.
+        // A save in flight is waited for, and a pending index snapshot written now rather than lost
+        addWindowListener(new WindowAdapter() {
+            @Override public void windowClosing(WindowEvent e) {
+                closing = true;
+                changes.flush();
+                history.close();
+                if (pendingFlush.isRunning()) { // an API or sync burst not saved yet
+                    pendingFlush.stop();
+                    applyPendingChanges();
+                }
+                if (loading && pendingSave) loadRestNow();
+                if (saveJob != null) awaitSave();
+                if (indexWrite.isRunning()) {
+                    indexWrite.stop();
+                    writeIndexNow();
+                }
+            }
+        });
+
+        // Load data: the archive's headers, the head now, the rest in the background
+        try {
+            archive = stressTasks > 0 ? TaskArchive.empty() : TaskArchive.open(ARCHIVE_PATH);
+        } catch (IOException e) {
+            System.err.println("Archive not opened, nothing is archived this time: " + e);
+            archive = TaskArchive.empty();
+        }
+        try {
+            if (stressTasks == 0) history = TaskHistory.open(HISTORY_PATH);
+        } catch (IOException e) {
+            System.err.println("History not opened, nothing is recorded this time: " + e);
+        }
         load();
         if (categoryModel.isEmpty()) {
             categoryModel.addElement("All Categories");
@@ -188,6 +409,10 @@ public class TodoApp extends JFrame {
 
         refreshView();
         updateCategoriesAndChart();
+        reminders.start();
+        pendingFlush.setRepeats(false);
+        indexWrite.setRepeats(false);
+        if (!loading) onLoaded();
     }
 
     private void beautifyScrollBar(JScrollPane scroll) {
@@ -251,6 +476,8 @@ private void enableHoverEffect(JList<String> list) {
                                                       boolean cellHasFocus) {
 
             JLabel lbl = (JLabel) super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            int open = taskIndex.categories.open("All Categories".equals(value) ? null : (String) value); // running count
+            if (open > 0) lbl.setText(value + "  (" + open + ")");
 
             lbl.setBorder(new EmptyBorder(8, 10, 8, 10));
             lbl.setOpaque(true);
@@ -298,6 +525,11 @@ private JPanel buildLeftSidebar() {
     nav.add(completedBtn); 
     nav.add(chartBtn); 
     nav.add(manageCatBtn);
+    if (EdtMonitor.get() != null) {
+        JButton diagBtn = makeHoverButton("🩺  Diagnostics");
+        diagBtn.addActionListener(e -> showDiagnosticsDialog());
+        nav.add(diagBtn);
+    }
 
     left.add(nav, BorderLayout.NORTH);
 
@@ -472,11 +704,14 @@ private JButton makeHoverButton(String text) {
 
         searchField.setColumns(18);
         searchField.setBorder(BorderFactory.createCompoundBorder(new RoundedBorder(12), new EmptyBorder(6,10,6,10)));
-        searchField.setToolTipText("Search tasks");
+        searchField.setToolTipText("Search tasks, e.g. cat:Work pri:High due<+7 !done \"budget\"");
 
         filterBox.setBorder(new RoundedBorder(12));
         filterBox.setToolTipText("Filter tasks");
 
+        sortBox.setBorder(new RoundedBorder(12));
+        sortBox.setToolTipText("Sort tasks");
+
         showDueTodayFirst.setOpaque(false);
 
         stylePillButton(editBtn);
@@ -486,6 +721,8 @@ private JButton makeHoverButton(String text) {
         tools.add(searchField);
         tools.add(new JLabel("Filter:"));
         tools.add(filterBox);
+        tools.add(new JLabel("Sort:"));
+        tools.add(sortBox);
         tools.add(showDueTodayFirst);
         tools.add(editBtn);
         tools.add(delBtn);
@@ -505,6 +742,7 @@ private JButton makeHoverButton(String text) {
         rightPanel.add(lbl, BorderLayout.NORTH);
 
         rightPanel.add(chartPanel, BorderLayout.CENTER);
+        rightPanel.add(calendarPanel, BorderLayout.SOUTH);
         rightOuter.add(rightPanel, new GridBagConstraints());
         return rightOuter;
     }
@@ -523,80 +761,169 @@ private JButton makeHoverButton(String text) {
         Task base = new Task(titleText,"",null,"General","Medium");
         Task t = showTaskDialog(base, true);
         if (t != null) {
+            TaskCrdt.created(t, taskIndex.firstPosition());
             masterModel.add(0, t);
-            save();
+            indexAdd(t);
+            undoLog.record(new PresenceCommand("Add task", List.of(t), true));
+            changes.post(TaskChanges.Origin.LOCAL, new TaskChanges.Added(t));
             addField.setText("");
-            refreshView();
-            updateCategoriesAndChart();
         }
     }
 
     private void onEdit() {
         int idx = list.getSelectedIndex();
         if (idx < 0) return;
-        Task original = viewModel.get(idx);
+        Task shown = viewModel.get(idx);
+        Task original = seriesOf(shown);
         Task copy = new Task(original.title, original.notes, original.due, original.category, original.priority);
-        copy.done = original.done;
+        copy.done = shown.done;
+        copy.repeat = original.repeat;
         Task edited = showTaskDialog(copy, false);
         if (edited != null) {
-            original.title = edited.title;
-            original.notes = edited.notes;
-            original.due = edited.due;
-            original.category = edited.category;
-            original.priority = edited.priority;
-            original.done = edited.done;
-            save();
-            refreshView();
-            updateCategoriesAndChart();
+            edited.position = original.position;
+            if (original.doneOccurrences != null) edited.doneOccurrences = new TreeSet<>(original.doneOccurrences);
+            // for an occurrence, "Completed" applies to that day only
+            if (shown instanceof Occurrence) {
+                edited.setDoneOn(shown.due, edited.done);
+                edited.done = original.done;
+            }
+            thaw(original);
+            Task before = TaskCrdt.values(original);
+            indexRemove(original);
+            int changed = TaskCrdt.edit(original, edited); // stamps only the fields that changed
+            indexAdd(original);
+            if (changed != 0) undoLog.record(new EditCommand("Edit task", original, before));
+            changes.fields(TaskChanges.Origin.LOCAL, original, changed);
         }
     }
 
     private void onDelete() {
         int idx = list.getSelectedIndex();
         if (idx < 0) return;
-        Task toRemove = viewModel.get(idx);
-        int confirm = JOptionPane.showConfirmDialog(this, "Delete selected task?", "Confirm", JOptionPane.YES_NO_OPTION);
+        Task toRemove = seriesOf(viewModel.get(idx));
+        String question = toRemove.isRecurring() ? "Delete this recurring task and all its occurrences?" : "Delete selected task?";
+        int confirm = JOptionPane.showConfirmDialog(this, question, "Confirm", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            for (int i = 0; i < masterModel.size(); i++) {
-                if (masterModel.get(i) == toRemove) { masterModel.remove(i); break; }
-            }
-            save();
-            refreshView();
-            updateCategoriesAndChart();
+            deleteTask(thaw(toRemove), TaskChanges.Origin.LOCAL);
+            syncDeleted(toRemove);
+            undoLog.record(new PresenceCommand("Delete task", List.of(toRemove), false));
         }
     }
 
     private void refreshView() {
+        TodoEvents.RefreshView ev = new TodoEvents.RefreshView();
+        ev.begin();
         viewModel.clear();
-        String q = searchField.getText().trim().toLowerCase(Locale.ROOT);
+        String q = searchField.getText().trim();
         String filter = (String) filterBox.getSelectedItem();
 
-        List<Task> items = Collections.list(masterModel.elements());
-        items.sort((a,b) -> {
-            int pToday = Boolean.compare(isToday(b.due), isToday(a.due));
-            if (showDueTodayFirst.isSelected() && pToday != 0) return pToday;
-            int pDone = Boolean.compare(a.done, b.done);
-            if (pDone != 0) return pDone;
-            return Long.compare(b.createdAt, a.createdAt);
-        });
-
         String selectedCategory = "All Categories";
         if (categoryList.getSelectedValue() != null) selectedCategory = categoryList.getSelectedValue();
 
-        for (Task t : items) {
-            if (filter.equals("Active") && t.done) continue;
-            if (filter.equals("Completed") && !t.done) continue;
-            if (!q.isEmpty()) {
-                String blob = (t.title + "\n" + t.notes + "\n" + t.category).toLowerCase(Locale.ROOT);
-                if (!blob.contains(q)) continue;
-            }
-            if (!selectedCategory.equals("All Categories") && !t.category.equals(selectedCategory)) continue;
-            viewModel.addElement(t);
-        }
+        TaskQuery.Plan plan = planView(taskIndex, q, filter, selectedCategory);
+        lastPlan = plan;
+        TaskIndex.Order order = (TaskIndex.Order) sortBox.getSelectedItem();
+        List<Task> ordered = snapshotUsable() ? snapshotResult(plan, order) : plan.execute(order);
+        ordered = withArchived(ordered, q, filter, selectedCategory, order);
+        List<Task> result = groupForView(plan.withOccurrences(ordered, order, LocalDate.now()), showDueTodayFirst.isSelected());
+        if (!plan.query.freeText().isEmpty()) appendFuzzyMatches(result, plan);
+        for (Task t : result) viewModel.addElement(t);
         list.repaint();
+
+        if (EXPLAIN_QUERIES) {
+            System.err.println(plan.explain());
+            searchField.setToolTipText("<html><pre>" + plan.explain().replace("&", "&amp;").replace("<", "&lt;") + "</pre></html>");
+        }
+
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.taskCount = masterModel.size();
+            ev.resultCount = viewModel.size();
+            ev.queryLength = q.length();
+            ev.filter = filter;
+            ev.commit();
+        }
+    }
+
+    // The search text (query language, see TaskQuery) combined with the filter box and selected category.
+    static TaskQuery.Plan planView(TaskIndex index, String search, String filter, String selectedCategory) {
+        TaskQuery query = TaskQuery.parse(search);
+        if (filter.equals("Active")) query.and(new TaskQuery.Clause(TaskQuery.Kind.STATUS, false, "active"));
+        if (filter.equals("Completed")) query.and(new TaskQuery.Clause(TaskQuery.Kind.STATUS, false, "done"));
+        if (!selectedCategory.equals("All Categories")) query.and(new TaskQuery.Clause(TaskQuery.Kind.CATEGORY, false, selectedCategory));
+        return query.plan(index);
+    }
+
+    // Due-today first (optional), then open before done: a stable partition of the already ordered result.
+    static List<Task> groupForView(List<Task> ordered, boolean todayFirst) {
+        LocalDate today = LocalDate.now();
+        List<List<Task>> groups = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        for (Task t : ordered) groups.get(viewGroup(t, today, todayFirst)).add(t);
+        List<Task> out = new ArrayList<>(ordered.size());
+        for (List<Task> g : groups) out.addAll(g);
+        return out;
+    }
+
+    static int viewGroup(Task t, LocalDate today, boolean todayFirst) {
+        boolean later = todayFirst && !today.equals(t.due);
+        return (later ? 2 : 0) + (t.done ? 1 : 0);
+    }
+
+    static List<Task> selectForView(TaskIndex index, String search, String filter, String selectedCategory,
+                                    TaskIndex.Order order, boolean todayFirst) {
+        TaskQuery.Plan plan = planView(index, search, filter, selectedCategory);
+        return groupForView(plan.withOccurrences(plan.execute(order), order, LocalDate.now()), todayFirst);
+    }
+
+    // Adds title matches within the fuzzy edit budget that the exact search missed, best first.
+    private void appendFuzzyMatches(List<Task> result, TaskQuery.Plan plan) {
+        Set<Task> shown = Collections.newSetFromMap(new IdentityHashMap<>());
+        shown.addAll(result);
+        for (FuzzyIndex.Match<Task> m : fuzzyIndex.search(plan.query.freeText())) {
+            if (m.item.isRecurring() || shown.contains(m.item) || !plan.matchesStructured(m.item)) continue;
+            result.add(m.item);
+        }
+    }
+
+    // Keeps the incremental indexes in step with masterModel; call indexRemove before mutating a task.
+    private void indexAdd(Task t) {
+        titleTrie.add(t.title, t.createdAt);
+        categoryTrie.add(t.category, t.createdAt);
+        fuzzyIndex.add(t, t.title);
+        taskIndex.add(t);
+        reminders.schedule(t);
+        tasksById.put(t.id, t);
+        archive.shadow(t.id); // the copy in the task file wins
+        viewPut(t);
+    }
+
+    private void indexRemove(Task t) {
+        titleTrie.remove(t.title, t.createdAt);
+        categoryTrie.remove(t.category, t.createdAt);
+        fuzzyIndex.remove(t, t.title);
+        taskIndex.remove(t);
+        reminders.cancel(t);
+        tasksById.remove(t.id);
+        tasksEdit.remove(t.id);
+        publishLater();
     }
 
-    private boolean isToday(LocalDate d) {
+    // Toasts for tasks whose reminder fired; a burst (e.g. many tasks due the same morning) becomes one toast.
+    private void showReminders(List<Task> due) {
+        List<Task> open = new ArrayList<>();
+        for (Task t : due) if (!t.done && taskIndex.contains(seriesOf(t))) open.add(t);
+        if (open.isEmpty()) return;
+        if (open.size() <= 2) {
+            for (Task t : open) Toast.show(this, "Due " + (isToday(t.due) ? "today" : DATE_FMT.format(t.due)), t.title + "\n" + t.category + " · " + t.priority);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(3, open.size()); i++) sb.append("• ").append(open.get(i).title).append('\n');
+        if (open.size() > 3) sb.append("…and ").append(open.size() - 3).append(" more");
+        Toast.show(this, open.size() + " tasks due", sb.toString().trim());
+    }
+
+    private static boolean isToday(LocalDate d) {
         return d != null && d.equals(LocalDate.now());
     }
 
@@ -610,12 +937,20 @@ private JButton makeHoverButton(String text) {
         for (int i = 0; i < categoryModel.size(); i++) categoryBox.addItem(categoryModel.get(i));
         if (categoryBox.getItemCount() == 0) categoryBox.addItem("General");
         categoryBox.setSelectedItem(task.category == null ? "General" : task.category);
+        categoryBox.setEditable(true);
+        SuggestionPopup.inlineComplete((JTextField) categoryBox.getEditor().getEditorComponent(),
+                prefix -> categoryTrie.complete(prefix, 1));
 
         JComboBox<String> priorityBox = new JComboBox<>(new String[]{"High","Medium","Low"});
         priorityBox.setSelectedItem(task.priority == null ? "Medium" : task.priority);
 
         JCheckBox done = new JCheckBox("Completed", task.done);
 
+        // presets or a typed RRULE, e.g. FREQ=WEEKLY;BYDAY=MO,TH
+        JComboBox<String> repeatBox = new JComboBox<>(Recurrence.PRESETS.keySet().toArray(new String[0]));
+        repeatBox.setEditable(true);
+        repeatBox.setSelectedItem(task.repeat == null ? "Never" : task.repeat.label());
+
         notes.setLineWrap(true);
         notes.setWrapStyleWord(true);
 
@@ -642,7 +977,10 @@ private JButton makeHoverButton(String text) {
         c.gridx = 0; c.gridy = 4; panel.add(new JLabel("Priority"), c);
         c.gridx = 1; c.gridy = 4; panel.add(priorityBox, c);
 
-        c.gridx = 1; c.gridy = 5; panel.add(done, c);
+        c.gridx = 0; c.gridy = 5; panel.add(new JLabel("Repeat"), c);
+        c.gridx = 1; c.gridy = 5; panel.add(repeatBox, c);
+
+        c.gridx = 1; c.gridy = 6; panel.add(done, c);
 
         int res = JOptionPane.showConfirmDialog(this, panel, isNew ? "Add Task" : "Edit Task", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
         if (res == JOptionPane.OK_OPTION) {
@@ -656,43 +994,1153 @@ private JButton makeHoverButton(String text) {
                     return null;
                 }
             }
-            String cat = categoryBox.getSelectedItem() == null ? "General" : categoryBox.getSelectedItem().toString();
+            Recurrence repeat;
+            try { repeat = Recurrence.parse(String.valueOf(repeatBox.getEditor().getItem())); }
+            catch (RuntimeException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid repeat rule: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return null;
+            }
+            if (repeat != null && parsedDue == null) parsedDue = LocalDate.now();
+            Object typedCat = categoryBox.getEditor().getItem();
+            String cat = typedCat == null || typedCat.toString().isBlank() || typedCat.toString().equals("All Categories")
+                    ? "General" : typedCat.toString();
             String pr = (String) priorityBox.getSelectedItem();
             Task out = new Task(newTitle, notes.getText(), parsedDue, cat, pr);
             out.done = done.isSelected();
+            out.repeat = repeat;
             return out;
         }
         return null;
     }
 
     // ---------------- Persistence ----------------
+
+    // The list is written on the "todo-save" thread from the published copies (tasksView), one save at
+    // a time; changes made while one runs are saved once it is done. A commit another program made
+    // since knownSeq is not overwritten: the save is handed back, merged here, and written again.
+    // Closing waits for the save in flight and writes what is still due on the EDT (saveNow).
     private void save() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(SAVE_PATH))) {
-            List<Task> data = Collections.list(masterModel.elements());
-            oos.writeObject(new ArrayList<>(data));
+        if (stressTasks > 0) return;
+        if (loading) { pendingSave = true; return; } // a partial list must not replace the file; finishLoad saves
+        if (saveJob != null) {
+            saveAgain = true;
+            if (closing) awaitSave();
+            return;
+        }
+        if (closing) {
+            saveNow();
+            return;
+        }
+        TaskIndex.Order order = (TaskIndex.Order) sortBox.getSelectedItem();
+        List<Task> headList = headTasks(order);
+        List<Task> data = saveData(headList);
+        publishTasks();
+        HashTrie<Task> view = tasksView.get();
+        List<Task> copies = new ArrayList<>(data.size());
+        for (Task t : data) {
+            Task c = t.deletedAt == 0 ? view.get(t.id) : null;
+            copies.add(c != null ? c : t.copy()); // tombstones are not published: copied here (few)
+        }
+        int head = headList.size(), listed = masterModel.size();
+        long expected = knownSeq;
+        saveJob = saver.submit(() -> {
+            Saved done = write(copies, data, head, order.name(), expected, listed);
+            SwingUtilities.invokeLater(() -> saved(done));
+            return done;
+        });
+    }
+
+    // A save's outcome: the seq it committed (-1: none), the list it wrote (the live tasks, for the
+    // index snapshot) and, if it was handed back, the newer commit it found.
+    private record Saved(long seq, List<Task> data, int head, TaskFile.Snapshot<Task> newer) { }
+
+    // Save thread.
+    private Saved write(List<Task> copies, List<Task> data, int head, String label, long expected, int listed) {
+        TodoEvents.Save ev = new TodoEvents.Save();
+        ev.begin();
+        List<TaskFile.Snapshot<Task>> newer = new ArrayList<>(1);
+        try {
+            long seq = TaskFile.write(SAVE_PATH, copies, head, label, expected, snap -> {
+                newer.add(snap);
+                return null;
+            });
+            if (seq < 0) return new Saved(-1, data, head, newer.get(0));
+            if (watcher != null) watcher.ownWrite();
+            ev.end();
+            if (ev.shouldCommit()) {
+                ev.taskCount = listed;
+                ev.bytes = Files.size(SAVE_PATH);
+                ev.rawBytes = TaskFile.lastRawBytes;
+                ev.commit();
+            }
+            return new Saved(seq, data, head, null);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return new Saved(-1, data, head, null);
+        }
+    }
+
+    // EDT: a save is done; the commit it was handed back is merged, and what is still due is saved.
+    private void saved(Saved s) {
+        if (saveJob == null) return; // taken in by awaitSave
+        saveJob = null;
+        if (s.seq >= 0) {
+            knownSeq = Math.max(knownSeq, s.seq);
+            savedData = s.data;
+            savedHead = TaskFile.firstSegment(s.data.size(), s.head);
+            savedSeq = s.seq;
+            indexWrite.restart();
+        }
+        if (s.newer != null) {
+            upgrade(s.newer.items, 0);
+            knownSeq = Math.max(knownSeq, s.newer.seq);
+            mergeExternal(s.newer.items, true);
+            saveAgain = true;
+        }
+        if (saveAgain) {
+            saveAgain = false;
+            save();
+        }
+    }
+
+    // Closing: waits for the save in flight, then saves what is still due.
+    private void awaitSave() {
+        Saved s;
+        try {
+            s = saveJob.get();
+        } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+            s = new Saved(-1, List.of(), 0, null);
+            saveAgain = true;
+        }
+        saved(s);
+    }
+
+    // On the EDT, merging a commit made since under the file lock (closing: the merge cannot wait for
+    // another EDT event).
+    private void saveNow() {
+        TodoEvents.Save ev = new TodoEvents.Save();
+        ev.begin();
+        try {
+            TaskIndex.Order order = (TaskIndex.Order) sortBox.getSelectedItem();
+            List<Task> headList = headTasks(order);
+            int head = headList.size();
+            List<List<Task>> written = new ArrayList<>(List.of(saveData(headList)));
+            // a commit from another program the watcher has not merged yet is merged first, not overwritten
+            knownSeq = TaskFile.write(SAVE_PATH, written.get(0), head, order.name(), knownSeq, snap -> {
+                upgrade(snap.items, 0);
+                knownSeq = snap.seq;
+                mergeExternal(snap.items, true);
+                written.set(0, saveData(headTasks(order)));
+                return written.get(0);
+            });
+            if (watcher != null) watcher.ownWrite();
+            List<Task> data = written.get(0);
+            savedData = data;
+            savedHead = TaskFile.firstSegment(data.size(), head);
+            savedSeq = knownSeq;
+            indexWrite.restart();
+            ev.end();
+            if (ev.shouldCommit()) {
+                ev.taskCount = masterModel.size();
+                ev.bytes = Files.size(SAVE_PATH);
+                ev.rawBytes = TaskFile.lastRawBytes;
+                ev.commit();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    @SuppressWarnings("unchecked")
+    // The first screen of the unfiltered list in 'order' (open tasks first, as the view groups them,
+    // recurring series with them): saved as the file's head segment for the next start to show first.
+    private List<Task> headTasks(TaskIndex.Order order) {
+        List<Task> head = new ArrayList<>(HEAD_TASKS), done = new ArrayList<>();
+        for (Task t : taskIndex.recurring) {
+            if (head.size() == HEAD_TASKS) break;
+            head.add(t);
+        }
+        for (TaskIndex.Entry e : taskIndex.ordered(order)) {
+            if (head.size() == HEAD_TASKS) break;
+            if (!e.task.done) head.add(e.task);
+            else if (head.size() + done.size() < HEAD_TASKS) done.add(e.task);
+        }
+        for (Task t : done) {
+            if (head.size() == HEAD_TASKS) break;
+            head.add(t);
+        }
+        return head;
+    }
+
+    // Shows the head segment (read here, on the EDT) in the order it was saved in, then streams the
+    // other segments in on a background thread: addLoaded per segment, finishLoad at the end.
+    // Files without a labelled head (older versions, scripts) simply arrive in one or more chunks.
     private void load() {
-        if (!Files.exists(SAVE_PATH)) return;
-        try (ObjectInputStream ois = new ObjectInputStream(Files.newInputStream(SAVE_PATH))) {
-            List<Task> data = (List<Task>) ois.readObject();
-            masterModel.clear();
-            for (Task t : data) masterModel.addElement(t);
-            // build categories from loaded tasks
-            Set<String> cats = new TreeSet<>();
-            cats.add("All Categories");
-            for (int i = 0; i < masterModel.size(); i++) cats.add(masterModel.get(i).category);
-            categoryModel.clear();
-            for (String c : cats) categoryModel.addElement(c);
+        if (stressTasks == 0 && !Files.exists(SAVE_PATH)) return;
+        loadEvent = new TodoEvents.Load();
+        loadEvent.begin();
+        masterModel.clear();
+        tombstones.clear();
+        titleTrie.clear();
+        categoryTrie.clear();
+        fuzzyIndex.clear();
+        taskIndex.clear();
+        reminders.clear();
+        tasksById.clear();
+        if (stressTasks > 0) {
+            addLoaded(new TaskGenerator(stressSeed).tasks(stressTasks), -1);
+            return;
+        }
+        try {
+            segments = TaskFile.open(SAVE_PATH);
+            knownSeq = segments.seq;
+            claimed = new java.util.concurrent.atomic.AtomicIntegerArray(segments.count());
+            snapshot = IndexSnapshot.open(INDEX_PATH, segments.seq, segments.count());
+            rebuildIndex = snapshot == null;
+            if (snapshot != null) byOrdinal = new Task[snapshot.ordinals];
+            for (TaskIndex.Order o : TaskIndex.Order.values()) if (o.name().equals(segments.head)) sortBox.setSelectedItem(o);
+            int first = -1;
+            if (!segments.head.isEmpty() && segments.count() > 0) {
+                claimed.set(0, 1);
+                List<Task> head = upgrade(segments.segment(0), 0);
+                first = head.size();
+                addLoaded(head, 0);
+            }
+            if (claimed.length() > (first < 0 ? 0 : 1)) streamRest(first);
+            else segments = null;
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    // 'first' = size of the head segment if already read, else -1.
+    private void streamRest(int first) {
+        TaskFile.Segments<Task> file = segments;
+        java.util.concurrent.atomic.AtomicIntegerArray taken = claimed;
+        loading = true;
+        setTitle(TITLE + " · loading…");
+        loadTick.start();
+        Thread loader = new Thread(() -> {
+            int head = first;
+            try {
+                for (int k = 0; k < file.count(); k++) {
+                    if (!taken.compareAndSet(k, 0, 1)) continue; // read by the EDT for a search (loadSegmentNow)
+                    List<Task> chunk = file.segment(k);
+                    if (k == 0) head = chunk.size();
+                    upgrade(chunk, k == 0 ? 0 : head + (k - 1) * TaskFile.SEGMENT);
+                    int segment = k;
+                    SwingUtilities.invokeLater(() -> { if (loading) addLoaded(chunk, segment); });
+                }
+                SwingUtilities.invokeLater(() -> { if (loading) finishLoad(); });
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                // e.g. replaced meanwhile by a copy (see TaskFile.replace): fall back to one whole read
+                System.err.println("Streamed load failed, reading the whole file: " + e);
+                try {
+                    TaskFile.Snapshot<Task> snap = readSnapshot(SAVE_PATH);
+                    SwingUtilities.invokeLater(() -> { if (loading) loadRest(snap); });
+                } catch (IOException | ClassNotFoundException | RuntimeException e2) {
+                    e2.printStackTrace();
+                    SwingUtilities.invokeLater(() -> { if (loading) finishLoad(); });
+                }
+            }
+        }, "todo-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // EDT: lists and indexes one chunk of the file (segment number, or -1 for generated tasks); the
+    // view catches up on the next showLoaded tick.
+    private void addLoaded(List<Task> chunk, int segment) {
+        long now = System.currentTimeMillis();
+        List<Task> live = new ArrayList<>(chunk.size());
+        for (Task t : chunk) {
+            if (t.deletedAt == 0) live.add(t);
+            else if (!TaskCrdt.expired(t, now)) tombstones.put(t.id, t);
+            if (t.deletedAt != 0) archive.shadow(t.id);
+        }
+        masterModel.addAll(masterModel.size(), live);
+        for (Task t : live) indexAdd(t);
+        if (segment >= 0 && snapshot != null) {
+            if (chunk.size() == snapshot.segmentSize(segment)) {
+                for (int i = 0; i < chunk.size(); i++) byOrdinal[snapshot.firstOrdinal(segment) + i] = chunk.get(i);
+            } else {
+                snapshot = null; // does not describe this file after all
+                byOrdinal = null;
+            }
+        }
+        if (segment >= 0 && rebuildIndex) fileOrder.addAll(chunk); // in file order: only the loader reads segments then
+        if (segment == 0) fileHead = chunk.size();
+        loadedSinceTick = true;
+    }
+
+    // EDT: reads a segment a search needs now, unless the loader has taken it (it is then on its way).
+    private void loadSegmentNow(int k) {
+        if (!claimed.compareAndSet(k, 0, 1)) return;
+        try {
+            addLoaded(upgrade(segments.segment(k), snapshot.firstOrdinal(k)), k);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            claimed.set(k, 0); // the loader tries again and falls back to a whole read if it fails too
+        }
+    }
+
+    // While loading, until the first local edit: the index snapshot still describes the whole list.
+    private boolean snapshotUsable() { return loading && snapshot != null && !pendingSave; }
+
+    // The view's matches from the index snapshot, in order. The segments holding the first screen of
+    // them are read at once; the other matches show up as the loader brings their tasks in.
+    private List<Task> snapshotResult(TaskQuery.Plan plan, TaskIndex.Order order) {
+        int[] hits = snapshot.query(plan.query, order);
+        for (int i = 0; i < Math.min(hits.length, HEAD_TASKS) && snapshot != null; i++) {
+            if (byOrdinal[hits[i]] == null) loadSegmentNow(snapshot.segmentOf(hits[i]));
+        }
+        List<Task> out = new ArrayList<>();
+        if (snapshot == null) return out;
+        for (int o : hits) {
+            Task t = byOrdinal[o];
+            if (t != null && plan.matchesAll(t)) out.add(t);
+        }
+        return out;
+    }
+
+    // Only while the model is still what the last save wrote (same seq, nothing queued).
+    private void writeIndexNow() {
+        if (savedData != null && savedSeq == knownSeq && !pendingSave && !loading) writeIndex(savedData, savedHead);
+        savedData = null;
+    }
+
+    private void writeIndex(List<Task> data, int firstSegment) {
+        try {
+            IndexSnapshot.write(INDEX_PATH, knownSeq, data, firstSegment, taskIndex, masterModel.size());
+            rebuildIndex = false;
+        } catch (IOException e) {
+            System.err.println("Index snapshot not written: " + e);
+        }
+    }
+
+    private void showLoaded() {
+        if (!loadedSinceTick) return;
+        loadedSinceTick = false;
+        setTitle(snapshot != null ? String.format("%s · loading… %,d of %,d tasks", TITLE, masterModel.size(), snapshot.listed)
+                : String.format("%s · loading… %,d tasks", TITLE, masterModel.size()));
+        Task selected = list.getSelectedValue();
+        refreshView();
+        if (selected != null) list.setSelectedValue(selected, false);
+        updateCategoriesAndChart();
+    }
+
+    // The rest of the file as one snapshot, merged into what is already in (nothing counted twice).
+    private void loadRest(TaskFile.Snapshot<Task> snap) {
+        knownSeq = snap.seq;
+        rebuildIndex = false; // the file order is lost; saving writes the next snapshot
+        if (mergeExternal(snap.items, false)) save();
+        finishLoad();
+    }
+
+    // Window closing mid-load with unsaved edits: read the rest synchronously so the save is complete.
+    private void loadRestNow() {
+        try {
+            loadRest(readSnapshot(SAVE_PATH));
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            e.printStackTrace();
+            loading = false; // edits made meanwhile stay unsaved rather than replace the file with a part of it
+        }
+    }
+
+    private void finishLoad() {
+        loading = false;
+        loadTick.stop();
+        snapshot = null;
+        byOrdinal = null;
+        loadedSinceTick = true;
+        showLoaded();
+        setTitle(TITLE);
+        if (pendingSave) {
+            pendingSave = false;
+            save();
+        }
+        onLoaded();
+        if (stressTasks == 0 && TaskFile.seq(SAVE_PATH) != knownSeq) { // committed by another program while we loaded
+            Thread reload = new Thread(this::onSaveFileChanged, "todo-reload");
+            reload.setDaemon(true);
+            reload.start();
+        }
+    }
+
+    // Everything is in: manual-order keys for tasks from files without them, then the load event
+    // and whatever must see the whole list.
+    private void onLoaded() {
+        List<Task> keyless = new ArrayList<>();
+        for (Task t : tasksById.values()) if (t.position == null) keyless.add(t);
+        if (!keyless.isEmpty()) {
+            for (Task t : keyless) indexRemove(t);
+            TaskCrdt.assignPositions(Collections.list(masterModel.elements()));
+            for (Task t : keyless) indexAdd(t);
+        }
+        segments = null;
+        claimed = null;
+        if (rebuildIndex && stressTasks == 0 && !fileOrder.isEmpty()) writeIndex(fileOrder, fileHead); // none, or a stale one
+        fileOrder.clear();
+        if (loadEvent != null) {
+            loadEvent.end();
+            if (loadEvent.shouldCommit()) {
+                loadEvent.taskCount = masterModel.size();
+                try {
+                    loadEvent.bytes = stressTasks > 0 ? 0 : Files.size(SAVE_PATH);
+                } catch (IOException ignored) { }
+                loadEvent.commit();
+            }
+            loadEvent = null;
+        }
+        if (stressTasks == 0) {
+            watcher = new FileWatcher(SAVE_PATH, this::onSaveFileChanged);
+            watcher.start();
+        }
+        if (history.fresh()) history.seed(tasksById.values());
+        for (Task t : taskIndex.recurring) history.track(t);
+        if (apiPort > 0) startApi();
+        if (syncUrl != null) startSync();
+        archiveOld();
+        archiveTick.start();
+    }
+
+    // What save() writes: the head tasks first, then the rest of the list, then the tombstones.
+    private List<Task> saveData(List<Task> head) {
+        Set<Task> inHead = TaskIndex.identitySet();
+        inHead.addAll(head);
+        List<Task> data = new ArrayList<>(masterModel.size() + tombstones.size());
+        data.addAll(head);
+        for (int i = 0; i < masterModel.size(); i++) if (!inHead.contains(masterModel.get(i))) data.add(masterModel.get(i));
+        data.addAll(tombstones.values());
+        return data;
+    }
+
+    // Locked snapshot commit (see TaskFile); returns the new sequence number.
+    static long writeTasks(Path path, List<Task> data) throws IOException {
+        return TaskFile.write(path, data);
+    }
+
+    // Same, with the first 'head' tasks in their own segment labelled with the order they are in.
+    static long writeTasks(Path path, List<Task> data, int head, String order) throws IOException {
+        return TaskFile.write(path, data, head, order);
+    }
+
+    static List<Task> readTasks(Path path) throws IOException, ClassNotFoundException {
+        return readSnapshot(path).items;
+    }
+
+    static TaskFile.Snapshot<Task> readSnapshot(Path path) throws IOException, ClassNotFoundException {
+        TaskFile.Snapshot<Task> snap = TaskFile.read(path);
+        upgrade(snap.items, 0);
+        return snap;
+    }
+
+    // Files from before ids existed: derive ids every instance agrees on ('offset' = index of data[0] in the file).
+    private static List<Task> upgrade(List<Task> data, int offset) {
+        for (int i = 0; i < data.size(); i++) {
+            Task t = data.get(i);
+            if (t.id == 0) t.id = mix(t.createdAt * 31 + t.title.hashCode() + offset + i);
+            if (t.modifiedAt == 0) t.modifiedAt = t.createdAt;
+        }
+        return data;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // ---------------- Live reload ----------------
+
+    // Watcher thread: parse off the EDT, merge on it. A half-written file fails to parse and is
+    // picked up again by the event its writer's last write produces.
+    private void onSaveFileChanged() {
+        if (TaskFile.seq(SAVE_PATH) == knownSeq) return; // nothing committed since
+        try {
+            TaskFile.Snapshot<Task> snap = readSnapshot(SAVE_PATH);
+            SwingUtilities.invokeLater(() -> {
+                knownSeq = snap.seq;
+                if (mergeExternal(snap.items, true)) save();
+            });
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            System.err.println("Reload skipped: " + e);
+        }
+    }
+
+    // CRDT merge of the file's tasks into ours (TaskCrdt): per-field last writer wins, deletes win over
+    // edits, tasks only one side has are kept. Tasks the file has no news for are skipped and only
+    // merged tasks are re-indexed. Returns whether we hold anything the file lacks, so the caller writes
+    // the merged list back. Announced merges post their changes (the load's do not: the whole list is
+    // shown after it).
+    private boolean mergeExternal(List<Task> external, boolean announce) {
+        refreshArchive();
+        List<Task> added = new ArrayList<>();
+        int changed = 0;
+        boolean ahead = false;
+        int shared = 0; // tasks (live or deleted) both sides have after the merge
+        for (Task e : external) {
+            Task m = tasksById.get(e.id);
+            if (m == null) m = tombstones.get(e.id);
+            if (m == null) {
+                if (e.deletedAt != 0) {
+                    tombstones.put(e.id, e);
+                    shared++;
+                } else if (!archive.covers(e.id, e.modifiedAt)) { // else an older copy of a task archived since
+                    shared++;
+                    added.add(e);
+                    indexAdd(e);
+                    if (announce) changes.post(TaskChanges.Origin.FILE, new TaskChanges.Added(e));
+                    changed++;
+                }
+                continue;
+            }
+            shared++;
+            if (TaskCrdt.covers(m, e)) {
+                ahead |= !TaskCrdt.covers(e, m);
+                continue;
+            }
+            boolean live = m.deletedAt == 0;
+            if (live) indexRemove(m);
+            int fields = TaskCrdt.merge(m, e);
+            ahead |= !TaskCrdt.covers(e, m);
+            if (m.deletedAt == 0) {
+                indexAdd(m);
+                if (announce) changes.fields(TaskChanges.Origin.FILE, m, fields);
+                changed++;
+            } else if (live) {
+                masterModel.removeElement(m);
+                tombstones.put(m.id, m);
+                syncDeleted(m);
+                if (announce) changes.post(TaskChanges.Origin.FILE, new TaskChanges.Removed(m));
+                changed++;
+            }
+        }
+        if (!added.isEmpty()) masterModel.addAll(0, added);
+        ahead |= shared < tasksById.size() + tombstones.size(); // we have tasks the file lacks
+        if (changed > 0 && announce) {
+            Toast.show(this, "Tasks updated", changed + (changed == 1 ? " change" : " changes") + " from another program");
+        }
+        return ahead;
+    }
+
+    // Deletes a listed task: out of the model and indexes, kept as a tombstone so merges do not revive it.
+    // The tombstone of a task that was ever archived is archived too: the task file's tombstones expire.
+    private void deleteTask(Task t, TaskChanges.Origin origin) {
+        masterModel.removeElement(t);
+        indexRemove(t);
+        TaskCrdt.delete(t);
+        tombstones.put(t.id, t);
+        changes.post(origin, new TaskChanges.Removed(t));
+        if (archive.archived(t.id)) {
+            try {
+                archive.append(List.of(t));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Archive not updated, the archived copy may come back: " + e);
+            }
+        }
+    }
+
+    // Patches viewModel for a few changed tasks (binary-search insert in view order) instead of
+    // re-running the query. Free-text views (fuzzy tail) and recurring tasks fall back to refreshView.
+    private void updateViewIncrementally(List<Task> touched, List<Task> removed) {
+        boolean simple = lastPlan != null && lastPlan.query.freeText().isEmpty() && touched.size() + removed.size() <= 64;
+        for (Task t : touched) simple &= !t.isRecurring();
+        for (Task t : removed) simple &= !t.isRecurring();
+        if (!simple) { refreshView(); return; }
+
+        LocalDate today = LocalDate.now();
+        boolean todayFirst = showDueTodayFirst.isSelected();
+        Comparator<Task> byGroup = Comparator.comparingInt(t -> viewGroup(t, today, todayFirst));
+        Comparator<Task> cmp = byGroup.thenComparing(taskIndex.comparator((TaskIndex.Order) sortBox.getSelectedItem()));
+        for (Task t : removed) viewModel.removeElement(t);
+        for (Task t : touched) {
+            viewModel.removeElement(t);
+            if (!lastPlan.matchesAll(t)) continue;
+            int lo = 0, hi = viewModel.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cmp.compare(viewModel.get(mid), t) <= 0) lo = mid + 1; else hi = mid;
+            }
+            viewModel.add(lo, t);
+        }
+        list.repaint();
+    }
+
+    // ---------------- Archive ----------------
+
+    // Moves tasks completed more than ARCHIVE_AFTER_DAYS ago to the archive. They are compressed on a
+    // background thread; the append is synced before the task file is saved without them, so a crash
+    // in between leaves a task in both (the task file's copy wins), never in neither. Recurring series
+    // and unpushed sync edits stay.
+    private void archiveOld() {
+        if (ARCHIVE_AFTER_DAYS <= 0 || !archive.writable() || loading || archiving) return;
+        long cutoff = System.currentTimeMillis() - ARCHIVE_AFTER_DAYS * 86_400_000L;
+        List<Task> old = new ArrayList<>();
+        for (Task t : taskIndex.done) {
+            if (TaskCrdt.completedAt(t) < cutoff && (sync == null || t.modifiedAt == t.syncedAt)) old.add(t);
+        }
+        if (old.isEmpty()) return;
+        // the encoder reads the published copies: the EDT keeps editing the tasks meanwhile, and a block's
+        // header and payload must describe the same version of each task
+        publishTasks();
+        HashTrie<Task> view = tasksView.get();
+        List<Task> copies = new ArrayList<>(old.size());
+        for (Task t : old) copies.add(view.get(t.id));
+        archiving = true;
+        Thread encoder = new Thread(() -> {
+            try {
+                byte[] blocks = archive.encode(copies);
+                SwingUtilities.invokeLater(() -> archived(old, copies, blocks));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Archiving skipped: " + e);
+                SwingUtilities.invokeLater(() -> archiving = false);
+            }
+        }, "todo-archive");
+        encoder.setDaemon(true);
+        encoder.start();
+    }
+
+    // EDT: appends the encoded copies; tasks edited or deleted meanwhile stay (the task file's copy wins).
+    private void archived(List<Task> old, List<Task> copies, byte[] blocks) {
+        archiving = false;
+        try {
+            archive.append(blocks, old);
+        } catch (IOException e) {
+            System.err.println("Archiving skipped: " + e);
+            return;
+        }
+        List<Task> unchanged = new ArrayList<>(old.size()), deleted = new ArrayList<>();
+        for (int i = 0; i < old.size(); i++) {
+            Task t = old.get(i);
+            if (t.modifiedAt == copies.get(i).modifiedAt && tasksById.get(t.id) == t) unchanged.add(t);
+            else if (t.deletedAt != 0) deleted.add(t);
+            else archive.shadow(t.id);
+        }
+        if (!deleted.isEmpty()) {
+            try {
+                archive.append(deleted);
+            } catch (IOException e) {
+                System.err.println("Archive not updated, the archived copy may come back: " + e);
+            }
+        }
+        retire(unchanged);
+    }
+
+    // Drops archived tasks from the hot set (model, indexes) and saves the task file without them.
+    private void retire(List<Task> archived) {
+        Set<Task> gone = TaskIndex.identitySet();
+        gone.addAll(archived);
+        for (Task t : archived) indexRemove(t);
+        List<Task> keep = new ArrayList<>(masterModel.size());
+        for (int i = 0; i < masterModel.size(); i++) if (!gone.contains(masterModel.get(i))) keep.add(masterModel.get(i));
+        masterModel.clear();
+        masterModel.addAll(keep);
+        for (Task t : archived) changes.post(TaskChanges.Origin.LOCAL, new TaskChanges.Removed(t));
+    }
+
+    // Another instance archived tasks (and saved its task file without them): ours go too, unless
+    // edited here since, in which case ours wins.
+    private void refreshArchive() {
+        long[] ids;
+        try {
+            ids = archive.refresh();
+        } catch (IOException e) {
+            System.err.println("Archive not reread: " + e);
+            return;
+        }
+        List<Task> archived = new ArrayList<>();
+        for (long id : ids) {
+            Task t = tasksById.get(id);
+            if (t == null) continue;
+            if (archive.covers(id, t.modifiedAt)) archived.add(t);
+            else archive.shadow(id);
+        }
+        if (!archived.isEmpty()) retire(archived);
+    }
+
+    // A task shown from the archive is taken back into the task file before it is changed.
+    private Task thaw(Task t) {
+        if (!archive.holds(t)) return t;
+        archive.shadow(t.id);
+        masterModel.addElement(t);
+        indexAdd(t);
+        return t;
+    }
+
+    // Whether the view reaches the archive: every archived task is done, and the archive is only read
+    // for a search or the Completed filter, not for the plain list.
+    private boolean reachesArchive(String search, String filter) {
+        return !archive.isEmpty() && (filter.equals("Completed") || filter.equals("All") && !search.isEmpty());
+    }
+
+    // The archived matches merged into the (hot) result in 'order'. The first time, the archive is read
+    // on a background thread and the view refreshed once it is in.
+    private List<Task> withArchived(List<Task> ordered, String search, String filter, String category, TaskIndex.Order order) {
+        if (!reachesArchive(search, filter)) return ordered;
+        TaskIndex cold = archive.index();
+        if (cold == null) {
+            loadArchive();
+            return ordered;
+        }
+        List<Task> more = planView(cold, search, filter, category).execute(order);
+        if (more.isEmpty()) return ordered;
+        Comparator<Task> cmp = taskIndex.comparator(order);
+        List<Task> out = new ArrayList<>(ordered.size() + more.size());
+        int i = 0, j = 0;
+        while (i < ordered.size() || j < more.size()) {
+            if (j == more.size() || (i < ordered.size() && cmp.compare(ordered.get(i), more.get(j)) <= 0)) out.add(ordered.get(i++));
+            else out.add(more.get(j++));
+        }
+        return out;
+    }
+
+    private void loadArchive() {
+        if (archiveLoad != null) return;
+        archiveLoad = new Thread(() -> {
+            try {
+                TaskArchive.Loaded cold = archive.read();
+                SwingUtilities.invokeLater(() -> {
+                    try {
+                        archive.loaded(cold);
+                        refreshView();
+                    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                        System.err.println("Archive not read: " + e);
+                    }
+                });
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                System.err.println("Archive not read: " + e);
+            }
+        }, "todo-archive");
+        archiveLoad.setDaemon(true);
+        archiveLoad.start();
+    }
+
+    // The API answers with the archive in (it waits for it on the EDT, once).
+    private void loadArchiveNow() {
+        if (archive.index() != null || archive.isEmpty()) return;
+        try {
+            archive.loaded(archive.read());
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            System.err.println("Archive not read: " + e);
+        }
+    }
+
+    // An archived task by id (API), read from the archive if need be; null if not archived.
+    private Task archivedTask(long id) {
+        if (!archive.archived(id)) return null;
+        loadArchiveNow();
+        return archive.get(id);
+    }
+
+    // ---------------- Undo ----------------
+
+    private void undo(boolean redo) {
+        UndoLog.Command c = redo ? undoLog.redo() : undoLog.undo();
+        if (c == null) return;
+        Toast.show(this, redo ? "Redone" : "Undone", c.label());
+    }
+
+    // The task a command refers to, if it is still ours to change: listed, or archived since (taken
+    // back); null if it was deleted or replaced meanwhile (the command then leaves it alone).
+    private Task undoTarget(Task t) {
+        if (t == null || t.deletedAt != 0) return null;
+        if (tasksById.get(t.id) == t) return t;
+        return archive.holds(t) ? thaw(t) : null;
+    }
+
+    // An edit of one task's fields (dialog, completion toggle, drag to reorder): both versions of
+    // the fields are kept; undo and redo only write those still as the other side left them.
+    private final class EditCommand implements UndoLog.Command {
+        private final String label;
+        private final Task task, before, after;
+
+        EditCommand(String label, Task task, Task before) {
+            this.label = label;
+            this.task = task;
+            this.before = before;
+            this.after = TaskCrdt.values(task);
+        }
+
+        public String label() { return label; }
+        public int size() { return 1; }
+        public void undo() { apply(after, before); }
+        public void redo() { apply(before, after); }
+
+        private void apply(Task from, Task to) {
+            Task t = undoTarget(task);
+            if (t == null) return;
+            indexRemove(t);
+            int fields = TaskCrdt.revert(t, from, to);
+            indexAdd(t);
+            changes.fields(TaskChanges.Origin.LOCAL, t, fields);
+        }
+    }
+
+    // Every task of a category moved to another (rename, or delete into "General"): the tasks and
+    // the two names, so a 10k-task rename is undone in one pass over those tasks. Archived tasks are
+    // renamed back only if they were re-keyed; a merge into a category with archived tasks stays.
+    private final class CategoryCommand implements UndoLog.Command {
+        private final String label, from, to;
+        private final Task[] tasks;
+        private final boolean introduced; // 'to' was not a category before
+        private final boolean archived;   // the archive's 'from' became its 'to' (renameArchived)
+
+        CategoryCommand(String label, List<Task> tasks, String from, String to, boolean introduced, boolean archived) {
+            this.label = label;
+            this.tasks = tasks.toArray(new Task[0]);
+            this.from = from;
+            this.to = to;
+            this.introduced = introduced;
+            this.archived = archived;
+        }
+
+        public String label() { return label; }
+        public int size() { return tasks.length; }
+
+        public void undo() {
+            if (archived) renameArchived(to, from);
+            move(to, from); // 'from' rejoins the sidebar with the change event
+            if (introduced && taskIndex.category(to).isEmpty()) categoryModel.removeElement(to);
+        }
+
+        public void redo() {
+            if (archived) renameArchived(from, to);
+            move(from, to);
+            categoryModel.removeElement(from);
+        }
+
+        // Tasks recategorized since keep their category; only the category postings change.
+        private void move(String a, String b) {
+            List<Task> moved = new ArrayList<>();
+            for (Task task : tasks) {
+                Task t = undoTarget(task);
+                if (t == null || !t.category.equals(a)) continue;
+                t.category = b;
+                TaskCrdt.touch(t, TaskCrdt.CATEGORY);
+                taskIndex.moveCategory(t, a);
+                categoryTrie.remove(a, t.createdAt);
+                categoryTrie.add(b, t.createdAt);
+                viewPut(t);
+                moved.add(t);
+            }
+            changes.post(TaskChanges.Origin.LOCAL, new TaskChanges.CategoryRenamed(a, b, moved));
+        }
+    }
+
+    // Tasks added or deleted. Undoing a delete brings each task back as a copy with a new id
+    // (TaskCrdt.restored); the command then refers to the copies, which redo deletes in turn.
+    private final class PresenceCommand implements UndoLog.Command {
+        private final String label;
+        private final Task[] tasks; // null: no longer ours (deleted or replaced by someone else)
+        private boolean live;
+
+        PresenceCommand(String label, List<Task> tasks, boolean live) {
+            this.label = label;
+            this.tasks = tasks.toArray(new Task[0]);
+            this.live = live;
+        }
+
+        public String label() { return label; }
+        public int size() { return tasks.length; }
+        public void undo() { flip(); }
+        public void redo() { flip(); }
+
+        private void flip() {
+            if (live) {
+                for (int i = 0; i < tasks.length; i++) {
+                    Task t = undoTarget(tasks[i]);
+                    if (t == null) { tasks[i] = null; continue; }
+                    deleteTask(t, TaskChanges.Origin.LOCAL);
+                    syncDeleted(t);
+                }
+            } else {
+                List<Task> back = new ArrayList<>(tasks.length);
+                for (int i = 0; i < tasks.length; i++) {
+                    if (tasks[i] == null) continue;
+                    tasks[i] = TaskCrdt.restored(tasks[i]);
+                    back.add(tasks[i]);
+                }
+                masterModel.addAll(0, back);
+                for (Task t : back) {
+                    indexAdd(t);
+                    changes.post(TaskChanges.Origin.LOCAL, new TaskChanges.Added(t, true));
+                }
+            }
+            live = !live;
+        }
+    }
+
+    // ---------------- Snapshots ----------------
+
+    // After indexAdd, and after changes that bypass it (category renames, sync state): the task's copy
+    // is renewed.
+    private void viewPut(Task t) {
+        tasksEdit.put(t.id, t.copy());
+        publishLater();
+    }
+
+    private void publishLater() {
+        if (publishQueued) return;
+        publishQueued = true;
+        SwingUtilities.invokeLater(this::publishTasks);
+    }
+
+    // Publishes the edits so far as one version; the next edit copies only the paths it changes.
+    private void publishTasks() {
+        publishQueued = false;
+        HashTrie<Task> v = tasksEdit.done();
+        tasksView.set(v);
+        tasksEdit = v.edit();
+    }
+
+    // ---------------- HTTP API ----------------
+
+    private void startApi() {
+        api = new TaskApi(new ApiStore());
+        try {
+            api.start(apiPort);
+            System.out.println("Task API on http://localhost:" + api.port() + "/tasks (token in " + TaskApi.TOKEN_PATH + ")");
+        } catch (IOException e) {
+            System.err.println("Task API not started: " + e);
+            api = null;
+        }
+    }
+
+    // Runs on the EDT (TaskApi calls it there). Mutations update the indexes at once, so the next
+    // request sees them; saving and the view catch up at most 150 ms later, once per burst.
+    private final class ApiStore implements TaskApi.Store {
+        @Override public List<Task> query(String q, String filter, String category, TaskIndex.Order order) {
+            if (!List.of("All", "Active", "Completed").contains(filter)) throw new IllegalArgumentException("filter must be All, Active or Completed");
+            if (reachesArchive(q, filter)) loadArchiveNow();
+            TaskQuery.Plan plan = planView(taskIndex, q, filter, category);
+            List<Task> ordered = withArchived(plan.execute(order), q, filter, category, order);
+            return groupForView(plan.withOccurrences(ordered, order, LocalDate.now()), false);
+        }
+
+        @Override public Task get(long id) {
+            Task t = tasksById.get(id);
+            return t != null ? t : archivedTask(id);
+        }
+
+        @Override public List<Task> upsert(List<Map<String, Object>> edits) {
+            // validate the whole batch first
+            List<Task> patches = new ArrayList<>(edits.size());
+            for (Map<String, Object> f : edits) {
+                Long id = TaskApi.id(f);
+                Task existing = id == null ? null : get(id);
+                if (existing == null && id != null && tombstones.containsKey(id)) throw new IllegalArgumentException("task " + Long.toUnsignedString(id) + " was deleted");
+                Task base = existing != null ? existing : new Task("", "", null, "General", "Medium");
+                if (existing == null && id != null) base.id = id;
+                patches.add(TaskApi.fromJson(f, base));
+            }
+            List<Task> out = new ArrayList<>(patches.size()), added = new ArrayList<>();
+            for (Task p : patches) {
+                Task m = tasksById.get(p.id);
+                if (m == null && archive.get(p.id) != null) m = thaw(archive.get(p.id));
+                if (m == null) {
+                    m = p;
+                    TaskCrdt.created(m, taskIndex.firstPosition());
+                    added.add(m);
+                    indexAdd(m);
+                    changes.post(TaskChanges.Origin.REMOTE, new TaskChanges.Added(m));
+                } else {
+                    indexRemove(m);
+                    int fields = TaskCrdt.edit(m, p);
+                    indexAdd(m);
+                    changes.fields(TaskChanges.Origin.REMOTE, m, fields);
+                }
+                out.add(m);
+            }
+            if (!added.isEmpty()) masterModel.addAll(0, added);
+            publishTasks(); // the client's next read sees its write, whichever thread serves it
+            return out;
+        }
+
+        @Override public boolean delete(long id) {
+            Task m = get(id);
+            if (m == null) return false;
+            deleteTask(thaw(m), TaskChanges.Origin.REMOTE);
+            syncDeleted(m);
+            publishTasks();
+            return true;
+        }
+
+        @Override public Path file() { return SAVE_PATH; }
+
+        // Any thread: the published version, no EDT round trip.
+        @Override public HashTrie<Task> snapshot() { return tasksView.get(); }
+    }
+
+    // ---------------- Change handling ----------------
+
+    // Local changes are saved with their batch, API and sync ones once per burst (pendingFlush);
+    // changes merged from the task file are in it already.
+    private void persistChanges(TaskChanges.Batch b) {
+        if (b.from(TaskChanges.Origin.LOCAL)) {
+            save();
+        } else if (b.from(TaskChanges.Origin.REMOTE)) {
+            pendingSave = true;
+            pendingFlush.start();
+        }
+    }
+
+    // The view is patched with just the changed tasks (updateViewIncrementally), API and sync ones
+    // once per burst. A category rename, or a removal while the view reads the archive (an archived
+    // task stays listed), re-runs the query instead.
+    private void viewChanges(TaskChanges.Batch b) {
+        boolean requery = false;
+        for (TaskChanges.Change c : b.changes) {
+            if (c instanceof TaskChanges.Added a) pendingTouched.add(a.task());
+            else if (c instanceof TaskChanges.Updated u) pendingTouched.add(u.task());
+            else if (c instanceof TaskChanges.Moved m) pendingTouched.add(m.task());
+            else if (c instanceof TaskChanges.Removed r) {
+                pendingTouched.remove(r.task());
+                pendingRemoved.add(r.task());
+                requery |= reachesArchive(searchField.getText().trim(), (String) filterBox.getSelectedItem());
+            } else {
+                requery = true;
+            }
+        }
+        if (requery) {
+            pendingTouched.clear();
+            pendingRemoved.clear();
+            refreshView();
+        } else if (b.from(TaskChanges.Origin.LOCAL) || b.from(TaskChanges.Origin.FILE)) {
+            applyPendingView();
+        } else {
+            pendingFlush.start();
+        }
+    }
+
+    // New category names join the sidebar (only Manage Categories drops one); the sidebar's open
+    // counts and the chart repaint when a change can move them (both read CategoryRegistry counts).
+    private void sidebarChanges(TaskChanges.Batch b) {
+        for (TaskChanges.Change c : b.changes) {
+            if (c instanceof TaskChanges.Added a) addCategory(a.task().category);
+            else if (c instanceof TaskChanges.Updated u && u.has(TaskCrdt.CATEGORY)) addCategory(u.task().category);
+            else if (c instanceof TaskChanges.CategoryRenamed r) addCategory(r.to());
+        }
+        if ((b.fields() & TaskChanges.mask(TaskCrdt.DONE, TaskCrdt.CATEGORY)) != 0) categoryList.repaint();
+        if ((b.fields() & CHART_FIELDS) != 0) {
+            chartPanel.updateChartData();
+            calendarPanel.repaint();
+        }
+    }
+
+    private static final int CHART_FIELDS = TaskChanges.mask(TaskCrdt.DONE, TaskCrdt.OCCURRENCES, TaskCrdt.CATEGORY,
+            TaskCrdt.PRIORITY, TaskCrdt.DUE, TaskCrdt.REPEAT);
+
+    // Inserts a category name in order, unless it is listed.
+    private void addCategory(String name) {
+        if (categoryModel.contains(name)) return;
+        int i = 0;
+        while (i < categoryModel.size() && categoryModel.get(i).compareTo(name) < 0) i++;
+        categoryModel.add(i, name);
+    }
+
+    // Creations and completions (of tasks and of occurrences of recurring ones) made here (UI, API,
+    // sync) go to the history log; those merged from the task file were logged by the program that
+    // made them, and a task an undo brought back was logged when it was first made: their series are
+    // only tracked. Reopening undoes a completion only if this session logged it (TaskHistory.reopened).
+    private void historyChanges(TaskChanges.Batch b) {
+        for (int i = 0; i < b.changes.size(); i++) {
+            TaskChanges.Change c = b.changes.get(i);
+            if (b.origin(i) == TaskChanges.Origin.FILE || c instanceof TaskChanges.Added a && a.restored()) {
+                if (c instanceof TaskChanges.Added a) history.track(a.task());
+                else if (c instanceof TaskChanges.Updated u && u.has(TaskCrdt.OCCURRENCES)) history.track(u.task());
+                continue;
+            }
+            if (c instanceof TaskChanges.Added a) {
+                Task t = a.task();
+                history.created(t.id, t.createdAt);
+                if (t.done) history.completed(t.id, TaskCrdt.completedAt(t), t.createdAt);
+                history.occurrences(t, TaskCrdt.occurrencesAt(t));
+            } else if (c instanceof TaskChanges.Updated u) {
+                Task t = u.task();
+                if (u.has(TaskCrdt.DONE)) {
+                    if (t.done) history.completed(t.id, TaskCrdt.completedAt(t), t.createdAt);
+                    else history.reopened(t.id);
+                }
+                if (u.has(TaskCrdt.OCCURRENCES)) history.occurrences(t, TaskCrdt.occurrencesAt(t));
+            }
+        }
+        history.flush();
+    }
+
+    // End of an API / sync burst: one save, one view update.
+    private void applyPendingChanges() {
+        if (pendingSave) {
+            pendingSave = false;
+            save();
+        }
+        applyPendingView();
+    }
+
+    private void applyPendingView() {
+        if (pendingTouched.isEmpty() && pendingRemoved.isEmpty()) return;
+        List<Task> touched = new ArrayList<>(pendingTouched), removed = new ArrayList<>(pendingRemoved);
+        pendingTouched.clear();
+        pendingRemoved.clear();
+        updateViewIncrementally(touched, removed);
+    }
+
+    // ---------------- Sync ----------------
+
+    private void startSync() {
+        try {
+            sync = new SyncClient(new URI(syncUrl), new SyncReplica(), SAVE_PATH);
+        } catch (URISyntaxException e) {
+            System.err.println("Sync not started: " + e.getMessage());
+            return;
+        }
+        sync.start();
+    }
+
+    private final class SyncReplica implements SyncClient.Replica {
+        @Override public Collection<Task> tasks() { return tasksById.values(); }
+
+        @Override public Task get(long id) { return tasksById.get(id); }
+
+        // Merged field by field (TaskCrdt); a task deleted here stays deleted.
+        @Override public void put(Task remote) {
+            Task dead = tombstones.get(remote.id);
+            if (dead != null) {
+                TaskCrdt.merge(dead, remote);
+                return;
+            }
+            Task m = tasksById.get(remote.id);
+            if (m == null && archive.covers(remote.id, remote.modifiedAt)) return; // archived here since
+            if (m == null) {
+                m = remote;
+                if (m.position == null) m.position = TaskCrdt.between(null, taskIndex.firstPosition());
+                masterModel.addElement(m);
+                indexAdd(m);
+                changes.post(TaskChanges.Origin.REMOTE, new TaskChanges.Added(m));
+                return;
+            }
+            indexRemove(m);
+            int fields = TaskCrdt.merge(m, remote);
+            indexAdd(m);
+            changes.post(TaskChanges.Origin.REMOTE, new TaskChanges.Updated(m, fields)); // saved even if 0: sync state moved
+        }
+
+        @Override public void remove(long id) {
+            Task m = tasksById.get(id);
+            if (m == null) return;
+            deleteTask(m, TaskChanges.Origin.REMOTE);
+        }
+
+        @Override public void changed(Collection<Task> tasks) {
+            for (Task t : tasks) if (tasksById.get(t.id) == t) viewPut(t);
+            pendingSave = true;
+            pendingFlush.start();
+        }
+    }
+
+    // A task deleted here (UI, API, another program) is deleted on the other replicas too.
+    private void syncDeleted(Task t) {
+        if (sync != null) sync.deleted(t);
+    }
+
     // ---------------- Renderers & Drag ----------------
 
     private class TaskCellRenderer extends JPanel implements ListCellRenderer<Task> {
@@ -763,6 +2211,7 @@ private JButton makeHoverButton(String text) {
             }
 
             String metaText = task.category + " · " + task.priority;
+            if (task.repeat != null) metaText += " · ↻ " + task.repeat.describe();
             meta.setText(metaText);
 
             // priority color
@@ -817,7 +2266,8 @@ private JButton makeHoverButton(String text) {
         }
     }
 
-    // Drag & drop reorder between indices of viewModel -> reflect into masterModel
+    // Drag & drop reorder: the dropped task gets a manual-order key just before the task it was dropped
+    // on (or after the last one), and the list switches to the manual order to show it.
     private class ReorderHandler extends TransferHandler {
         private int fromIndex = -1;
 
@@ -836,23 +2286,22 @@ private JButton makeHoverButton(String text) {
             if (!support.isDrop()) return false;
             int toIndex = ((JList.DropLocation) support.getDropLocation()).getIndex();
             if (fromIndex < 0 || toIndex < 0 || fromIndex == toIndex) return false;
-            Task moving = viewModel.get(fromIndex);
-
-            int mFrom = indexOfRef(masterModel, moving);
-            if (mFrom < 0) return false;
-            masterModel.remove(mFrom);
-
-            int masterInsertIndex = masterModel.size();
-            if (toIndex < viewModel.size()) {
-                Task anchor = viewModel.get(toIndex);
-                masterInsertIndex = indexOfRef(masterModel, anchor);
-            }
-            if (masterInsertIndex < 0) masterInsertIndex = masterModel.size();
-
-            masterModel.add(masterInsertIndex, moving);
-            save();
-            refreshView();
-            updateCategoriesAndChart();
+            Task moving = seriesOf(viewModel.get(fromIndex));
+            if (indexOfRef(masterModel, moving) < 0) return false;
+
+            Task anchor = toIndex < viewModel.size() ? seriesOf(viewModel.get(toIndex)) : null;
+            Task last = seriesOf(viewModel.get(viewModel.size() - 1));
+            if (anchor == moving || anchor == null && last == moving) return false;
+            Task before = TaskCrdt.values(moving);
+            indexRemove(moving); // so its own key is not taken for a neighbour
+            moving.position = anchor != null
+                    ? TaskCrdt.between(taskIndex.positionNear(anchor, true), anchor.position)
+                    : TaskCrdt.between(last.position, taskIndex.positionNear(last, false));
+            TaskCrdt.touch(moving, TaskCrdt.POSITION);
+            indexAdd(moving);
+            undoLog.record(new EditCommand("Move task", moving, before));
+            changes.fields(TaskChanges.Origin.LOCAL, moving, TaskChanges.mask(TaskCrdt.POSITION));
+            if (sortBox.getSelectedItem() != TaskIndex.Order.MANUAL) sortBox.setSelectedItem(TaskIndex.Order.MANUAL);
             return true;
         }
 
@@ -890,6 +2339,23 @@ private JButton makeHoverButton(String text) {
         void updateChartData() { repaint(); }
 
         @Override protected void paintComponent(Graphics g) {
+            TodoEvents.ChartPaint ev = new TodoEvents.ChartPaint();
+            ev.begin();
+            try {
+                paintChart(g);
+            } finally {
+                ev.end();
+                if (ev.shouldCommit()) {
+                    ev.taskCount = masterModel.size();
+                    ev.counted = lastCounted;
+                    ev.commit();
+                }
+            }
+        }
+
+        private int lastCounted;
+
+        private void paintChart(Graphics g) {
             super.paintComponent(g);
             Graphics2D g2 = (Graphics2D) g.create();
             g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -897,14 +2363,11 @@ private JButton makeHoverButton(String text) {
             String selCat = "All Categories";
             if (categoryList.getSelectedValue() != null) selCat = categoryList.getSelectedValue();
 
-            int completed = 0, notCompleted = 0;
-            for (int i = 0; i < masterModel.size(); i++) {
-                Task t = masterModel.get(i);
-                if (!selCat.equals("All Categories") && !t.category.equals(selCat)) continue;
-                if (!priorityFilter.equals("All") && !t.priority.equals(priorityFilter)) continue;
-                if (t.done) completed++; else notCompleted++;
-            }
+            int[] counts = snapshotUsable() ? snapshotCompletion(selCat, priorityFilter) : completion(taskIndex, selCat, priorityFilter);
+            int[] archived = archive.completion(selCat, priorityFilter);
+            int completed = counts[0] + archived[0], notCompleted = counts[1] + archived[1];
             int total = completed + notCompleted;
+            lastCounted = total;
             int w = getWidth(), h = getHeight();
             if (total == 0) {
                 g2.setColor(new Color(240,240,245));
@@ -951,6 +2414,276 @@ private JButton makeHoverButton(String text) {
         }
     }
 
+    // Month grid coloured by the tasks completed (or due) each day, from TaskIndex.days: paging reads
+    // one month of counters, never the list. Open tasks of a past day show as a red overdue count.
+    // Recurring series are expanded for the month shown.
+    private class CalendarPanel extends JPanel {
+        private final DateTimeFormatter monthFmt = DateTimeFormatter.ofPattern("MMMM yyyy");
+        private final JLabel title = new JLabel();
+        private final JComboBox<String> kindCombo = new JComboBox<>(new String[]{"Completed", "Due"});
+        private YearMonth month = YearMonth.now();
+        // as last painted, for tooltips
+        private int[][] shown;
+        private int gridX, gridY, cellW, cellH, offset;
+
+        CalendarPanel() {
+            setPreferredSize(new Dimension(260, 230));
+            setLayout(new BorderLayout(6,6));
+            setOpaque(false);
+            setToolTipText("");
+
+            JPanel head = new JPanel(new BorderLayout());
+            head.setOpaque(false);
+            JButton prev = new JButton("<"), next = new JButton(">");
+            for (JButton b : new JButton[]{prev, next}) {
+                b.setFocusPainted(false);
+                b.setMargin(new Insets(0, 4, 0, 4));
+            }
+            prev.addActionListener(e -> page(-1));
+            next.addActionListener(e -> page(1));
+            title.setFont(title.getFont().deriveFont(Font.BOLD, 13f));
+            JPanel nav = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+            nav.setOpaque(false);
+            nav.add(prev);
+            nav.add(title);
+            nav.add(next);
+            head.add(nav, BorderLayout.WEST);
+
+            kindCombo.addActionListener(e -> repaint());
+            head.add(kindCombo, BorderLayout.EAST);
+            add(head, BorderLayout.NORTH);
+            page(0);
+        }
+
+        private void page(int months) {
+            month = month.plusMonths(months);
+            title.setText(month.format(monthFmt));
+            repaint();
+        }
+
+        // [DayCounters kind][day of month - 1]
+        private int[][] monthCounts() {
+            int[][] c = new int[DayCounters.KINDS][];
+            for (int k = 0; k < DayCounters.KINDS; k++) c[k] = taskIndex.days.month(k, month);
+            for (Task o : taskIndex.occurrences(month.atDay(1), month.atEndOfMonth())) {
+                int d = o.due.getDayOfMonth() - 1;
+                c[DayCounters.DUE][d]++;
+                c[o.done ? DayCounters.DONE : DayCounters.OPEN][d]++;
+            }
+            return c;
+        }
+
+        @Override protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            shown = monthCounts();
+            int[] heat = shown[kindCombo.getSelectedIndex() == 0 ? DayCounters.DONE : DayCounters.DUE];
+            int max = 1;
+            for (int n : heat) max = Math.max(max, n);
+
+            LocalDate today = LocalDate.now();
+            gridX = 4;
+            gridY = 38;
+            cellW = (getWidth() - 8) / 7;
+            cellH = Math.max(14, (getHeight() - gridY - 4) / 7);
+            offset = month.atDay(1).getDayOfWeek().getValue() - 1; // Monday first
+
+            g2.setFont(g2.getFont().deriveFont(10f));
+            g2.setColor(new Color(110,110,120));
+            for (int c = 0; c < 7; c++) {
+                String d = DayOfWeek.of(c + 1).getDisplayName(java.time.format.TextStyle.NARROW, Locale.getDefault());
+                g2.drawString(d, gridX + c * cellW + cellW / 2 - 3, gridY + cellH - 4);
+            }
+            Color low = new Color(220,230,250), high = new Color(64,120,255);
+            for (int d = 0; d < heat.length; d++) {
+                int at = offset + d, x = gridX + at % 7 * cellW, y = gridY + (at / 7 + 1) * cellH;
+                float f = (float) heat[d] / max;
+                g2.setColor(heat[d] == 0 ? new Color(242,244,248) : new Color(
+                        (int) (low.getRed() + (high.getRed() - low.getRed()) * f),
+                        (int) (low.getGreen() + (high.getGreen() - low.getGreen()) * f),
+                        (int) (low.getBlue() + (high.getBlue() - low.getBlue()) * f)));
+                g2.fillRoundRect(x + 1, y + 1, cellW - 2, cellH - 2, 6, 6);
+                LocalDate day = month.atDay(d + 1);
+                if (day.equals(today)) {
+                    g2.setColor(new Color(40, 50, 70));
+                    g2.drawRoundRect(x + 1, y + 1, cellW - 3, cellH - 3, 6, 6);
+                }
+                g2.setColor(f > 0.6f ? Color.WHITE : new Color(40, 50, 70));
+                g2.drawString(String.valueOf(d + 1), x + 4, y + cellH - 5);
+                int overdue = day.isBefore(today) ? shown[DayCounters.OPEN][d] : 0;
+                if (overdue > 0) {
+                    String s = String.valueOf(overdue);
+                    g2.setColor(new Color(210, 50, 50));
+                    g2.drawString(s, x + cellW - 3 - g2.getFontMetrics().stringWidth(s), y + 11);
+                }
+            }
+            g2.dispose();
+        }
+
+        @Override public String getToolTipText(MouseEvent e) {
+            if (shown == null || cellW <= 0 || e.getX() < gridX || e.getY() < gridY) return null;
+            int col = (e.getX() - gridX) / cellW, row = (e.getY() - gridY) / cellH - 1;
+            int d = row * 7 + col - offset;
+            if (col > 6 || row < 0 || d < 0 || d >= shown[0].length) return null;
+            LocalDate day = month.atDay(d + 1);
+            String tip = String.format("%s: %d due, %d completed", DATE_FMT.format(day), shown[DayCounters.DUE][d], shown[DayCounters.DONE][d]);
+            if (day.isBefore(LocalDate.now()) && shown[DayCounters.OPEN][d] > 0) tip += ", " + shown[DayCounters.OPEN][d] + " overdue";
+            return tip;
+        }
+    }
+
+    // Completions per hour, day or week as bars, with the average lead time (creation to completion)
+    // as a line, from the history's rollups (TaskHistory): a year of days is 365 buckets, not a walk
+    // over the events.
+    private class TrendPanel extends JPanel {
+        private static final String[] RANGES = {"48 hours", "30 days", "365 days", "2 years"};
+        private final JComboBox<String> rangeCombo = new JComboBox<>(RANGES);
+        // as last painted, for tooltips
+        private TaskHistory.Bucket[] shown;
+        private TaskHistory.Resolution shownRes;
+        private long shownLast;
+        private int plotX, plotW;
+
+        TrendPanel() {
+            setPreferredSize(new Dimension(520, 240));
+            setLayout(new BorderLayout(6,6));
+            setOpaque(false);
+            setToolTipText("");
+
+            JPanel head = new JPanel(new BorderLayout());
+            head.setOpaque(false);
+            JLabel lbl = new JLabel("Completion Trend");
+            lbl.setFont(lbl.getFont().deriveFont(Font.BOLD, 13f));
+            head.add(lbl, BorderLayout.WEST);
+            rangeCombo.setSelectedIndex(1);
+            rangeCombo.addActionListener(e -> repaint());
+            head.add(rangeCombo, BorderLayout.EAST);
+            add(head, BorderLayout.NORTH);
+        }
+
+        @Override protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            int range = rangeCombo.getSelectedIndex();
+            shownRes = range == 0 ? TaskHistory.Resolution.HOUR : range == 3 ? TaskHistory.Resolution.WEEK : TaskHistory.Resolution.DAY;
+            int count = new int[]{48, 30, 365, 104}[range];
+            long now = System.currentTimeMillis();
+            shown = history.range(shownRes, now, count);
+            shownLast = history.key(shownRes, now);
+
+            int maxDone = 1, completed = 0;
+            long maxLead = 1, leadSum = 0;
+            for (TaskHistory.Bucket b : shown) {
+                maxDone = Math.max(maxDone, b.completed);
+                maxLead = Math.max(maxLead, b.averageLead());
+                completed += b.completed;
+                leadSum += b.leadSum;
+            }
+
+            int w = getWidth(), h = getHeight();
+            plotX = 10;
+            plotW = w - 20;
+            int top = 40, bottom = h - 24, plotH = bottom - top;
+            g2.setColor(new Color(245,247,252));
+            g2.fillRoundRect(plotX - 4, top - 4, plotW + 8, plotH + 8, 10, 10);
+
+            double step = (double) plotW / count;
+            g2.setColor(new Color(64,120,255));
+            for (int i = 0; i < count; i++) {
+                int bh = (int) Math.round((double) shown[i].completed / maxDone * plotH);
+                if (bh > 0) g2.fillRect(plotX + (int) (i * step), bottom - bh, Math.max(1, (int) step - 1), bh);
+            }
+            g2.setColor(new Color(240,140,40));
+            g2.setStroke(new BasicStroke(1.5f));
+            int px = -1, py = -1;
+            for (int i = 0; i < count; i++) {
+                if (shown[i].completed <= 0) continue; // no completions: no lead to plot
+                int x = plotX + (int) ((i + 0.5) * step), y = bottom - (int) Math.round((double) shown[i].averageLead() / maxLead * plotH);
+                if (px >= 0) g2.drawLine(px, py, x, y);
+                else g2.fillOval(x - 2, y - 2, 4, 4);
+                px = x;
+                py = y;
+            }
+
+            g2.setFont(g2.getFont().deriveFont(11f));
+            g2.setColor(new Color(60,60,60));
+            g2.drawString(label(0), plotX, h - 8);
+            String last = label(count - 1);
+            g2.drawString(last, plotX + plotW - g2.getFontMetrics().stringWidth(last), h - 8);
+            String summary = String.format("%,d completed · avg lead %s · peak %d, lead scale %s", completed,
+                    completed == 0 ? "-" : duration(leadSum / completed), maxDone, duration(maxLead));
+            g2.drawString(summary, plotX + plotW / 2 - g2.getFontMetrics().stringWidth(summary) / 2, h - 8);
+            g2.dispose();
+        }
+
+        private String label(int i) {
+            long key = shownLast - shown.length + 1 + i;
+            if (shownRes == TaskHistory.Resolution.HOUR) {
+                return LocalDateTime.ofInstant(Instant.ofEpochMilli(key * 3_600_000L), ZoneId.systemDefault()).format(DateTimeFormatter.ofPattern("EEE HH:00"));
+            }
+            LocalDate day = TaskHistory.day(shownRes, key);
+            return shownRes == TaskHistory.Resolution.WEEK ? day.format(DateTimeFormatter.ofPattern("d MMM yyyy")) : DATE_FMT.format(day);
+        }
+
+        private String duration(long millis) {
+            double hours = millis / 3_600_000.0;
+            return hours < 48 ? String.format("%.1f h", hours) : String.format("%.1f d", hours / 24);
+        }
+
+        @Override public String getToolTipText(MouseEvent e) {
+            if (shown == null || plotW <= 0 || e.getX() < plotX || e.getX() >= plotX + plotW) return null;
+            int i = (int) ((e.getX() - plotX) / ((double) plotW / shown.length));
+            TaskHistory.Bucket b = shown[Math.min(i, shown.length - 1)];
+            String tip = String.format("%s%s: %d completed, %d created", shownRes == TaskHistory.Resolution.WEEK ? "Week of " : "",
+                    label(i), b.completed, b.created);
+            return b.completed > 0 ? tip + ", avg lead " + duration(b.averageLead()) : tip;
+        }
+    }
+
+    // Returns {completed, pending} for the given category ("All Categories") and priority ("All").
+    // A recurring task counts each of its occurrences in the default occurrence window.
+    static int[] countCompletion(ListModel<Task> tasks, String selCat, String priorityFilter) {
+        int completed = 0, notCompleted = 0;
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(TaskIndex.OCCURRENCE_LOOKBACK), to = today.plusDays(TaskIndex.OCCURRENCE_HORIZON);
+        for (int i = 0; i < tasks.getSize(); i++) {
+            Task t = tasks.getElementAt(i);
+            if (!selCat.equals("All Categories") && !t.category.equals(selCat)) continue;
+            if (!priorityFilter.equals("All") && !t.priority.equals(priorityFilter)) continue;
+            if (t.isRecurring()) {
+                for (LocalDate d : t.repeat.between(t.due, from, to)) {
+                    if (t.isDoneOn(d)) completed++; else notCompleted++;
+                }
+            } else if (t.done) completed++; else notCompleted++;
+        }
+        return new int[]{completed, notCompleted};
+    }
+
+    // The same from the category registry's running counts; only the recurring series are walked.
+    static int[] completion(TaskIndex index, String selCat, String priorityFilter) {
+        String priority = priorityFilter.equals("All") ? null : priorityFilter;
+        if (selCat.equals("All Categories")) return plusRecurring(index.categories.completion(null, priority), index.recurring, selCat, priorityFilter);
+        CategoryRegistry.Category c = index.categories.get(selCat);
+        if (c == null) return new int[2];
+        return plusRecurring(index.categories.completion(selCat, priority), c.series, selCat, priorityFilter);
+    }
+
+    // While loading: the snapshot's rollups plus the recurring tasks, which it leaves out.
+    private int[] snapshotCompletion(String selCat, String priorityFilter) {
+        return plusRecurring(snapshot.completion(selCat, priorityFilter), taskIndex.recurring, selCat, priorityFilter);
+    }
+
+    private static int[] plusRecurring(int[] counts, Collection<Task> series, String selCat, String priorityFilter) {
+        DefaultListModel<Task> recurring = new DefaultListModel<>();
+        recurring.addAll(series);
+        int[] r = countCompletion(recurring, selCat, priorityFilter);
+        return new int[]{counts[0] + r[0], counts[1] + r[1]};
+    }
+
     private void updateChart() { chartPanel.updateChartData(); }
 
     // ---------------- Helpers ----------------
@@ -958,7 +2691,9 @@ private JButton makeHoverButton(String text) {
     private void updateCategoriesAndChart() {
         Set<String> cats = new TreeSet<>();
         cats.add("All Categories");
-        for (int i = 0; i < masterModel.size(); i++) cats.add(masterModel.get(i).category);
+        cats.addAll(taskIndex.categories.names());
+        if (loading && snapshot != null) cats.addAll(snapshot.categories()); // before their tasks are in
+        cats.addAll(archive.categories());
         // preserve 'General' and existing categories
         for (String c : new ArrayList<>(Collections.list(categoryModel.elements()))) cats.add(c);
 
@@ -969,9 +2704,14 @@ private JButton makeHoverButton(String text) {
             categoryList.setSelectedIndex(0);
 
         chartPanel.updateChartData();
+        calendarPanel.repaint();
     }
 
     private void showManageCategoriesDialog() {
+        if (loading) { // renames must reach every task
+            JOptionPane.showMessageDialog(this, "Categories can be managed once all tasks are loaded.");
+            return;
+        }
         JPanel p = new JPanel(new BorderLayout(8,8));
         JList<String> tmp = new JList<>(categoryModel);
         tmp.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -992,10 +2732,7 @@ private JButton makeHoverButton(String text) {
 
         add.addActionListener(e -> {
             String name = JOptionPane.showInputDialog(d, "New category:");
-            if (name != null && !name.trim().isEmpty() && !categoryModel.contains(name.trim())) {
-                categoryModel.addElement(name.trim());
-                updateCategoriesAndChart();
-            }
+            if (name != null && !name.trim().isEmpty()) addCategory(name.trim());
         });
 
         edit.addActionListener(e -> {
@@ -1005,14 +2742,14 @@ private JButton makeHoverButton(String text) {
             String name = JOptionPane.showInputDialog(d, "Edit category:", cur);
             if (name != null && !name.trim().isEmpty()) {
                 String old = cur;
-                categoryModel.set(i, name.trim());
-                for (int t = 0; t < masterModel.size(); t++) {
-                    Task task = masterModel.get(t);
-                    if (task.category.equals(old)) task.category = name.trim();
-                }
-                save();
-                refreshView();
-                updateCategoriesAndChart();
+                boolean known = categoryModel.contains(name.trim());
+                categoryModel.remove(i); // the new name is inserted in order with the change event
+                List<Task> moved = renameCategory(taskIndex, old, name.trim());
+                for (Task t : moved) viewPut(t);
+                categoryTrie.rename(old, name.trim());
+                boolean archived = renameArchived(old, name.trim());
+                undoLog.record(new CategoryCommand("Rename category", moved, old, name.trim(), !known, archived));
+                changes.post(TaskChanges.Origin.LOCAL, new TaskChanges.CategoryRenamed(old, name.trim(), moved));
             }
         });
 
@@ -1022,26 +2759,63 @@ private JButton makeHoverButton(String text) {
             String cat = categoryModel.get(i);
             int confirm = JOptionPane.showConfirmDialog(d, "Delete '" + cat + "'? Tasks will move to 'General'.", "Confirm", JOptionPane.YES_NO_OPTION);
             if (confirm == JOptionPane.YES_OPTION) {
-                for (int t = 0; t < masterModel.size(); t++) {
-                    Task task = masterModel.get(t);
-                    if (task.category.equals(cat)) task.category = "General";
-                }
+                boolean known = categoryModel.contains("General");
+                List<Task> moved = renameCategory(taskIndex, cat, "General");
+                for (Task t : moved) viewPut(t);
+                categoryTrie.rename(cat, "General");
                 categoryModel.remove(i);
-                save();
-                refreshView();
-                updateCategoriesAndChart();
+                boolean archived = renameArchived(cat, "General");
+                undoLog.record(new CategoryCommand("Delete category", moved, cat, "General", !known, archived));
+                changes.post(TaskChanges.Origin.LOCAL, new TaskChanges.CategoryRenamed(cat, "General", moved));
             }
         });
 
         d.setVisible(true);
     }
 
+    // Moves the tasks of category 'from' to 'to' and relinks the category in the index; returns the
+    // tasks moved (for the undo log). Reads the category's postings, not the whole list; each task is
+    // still stamped, so the rename saves and syncs like any edit.
+    static List<Task> renameCategory(TaskIndex index, String from, String to) {
+        CategoryRegistry.Category c = index.categories.get(from);
+        if (c == null || from.equals(to)) return new ArrayList<>();
+        List<Task> moved = new ArrayList<>(c.tasks.size() + c.series.size());
+        moved.addAll(c.tasks);
+        moved.addAll(c.series);
+        for (Task t : moved) {
+            t.category = to;
+            TaskCrdt.touch(t, TaskCrdt.CATEGORY);
+        }
+        index.renameCategory(from, to);
+        return moved;
+    }
+
+    // The archived tasks of the category follow it (TaskArchive.rename); returns whether renaming back
+    // undoes that exactly.
+    private boolean renameArchived(String from, String to) {
+        try {
+            return archive.rename(from, to);
+        } catch (IOException e) {
+            System.err.println("Archive not updated, archived tasks stay in '" + from + "': " + e);
+            return false;
+        }
+    }
+
     private void showChartDialog() {
         JDialog d = new JDialog(this, "Task Statistics", true);
         JPanel p = new JPanel(new BorderLayout(8,8));
         p.add(new ChartPanel(), BorderLayout.CENTER);
+        p.add(new TrendPanel(), BorderLayout.SOUTH);
         d.getContentPane().add(p);
-        d.setSize(520, 420);
+        d.setSize(620, 680);
+        d.setLocationRelativeTo(this);
+        d.setVisible(true);
+    }
+
+    private void showDiagnosticsDialog() {
+        JDialog d = new JDialog(this, "EDT Diagnostics", false);
+        d.getContentPane().add(EdtMonitor.get().createPanel());
+        d.pack();
         d.setLocationRelativeTo(this);
         d.setVisible(true);
     }
@@ -1099,19 +2873,6 @@ private JButton makeHoverButton(String text) {
         }
     }
 
-    private void beautifyScrollBar(JScrollPane sp) {
-        sp.getVerticalScrollBar().setUnitIncrement(16);
-        sp.getVerticalScrollBar().setUI(new BasicScrollBarUI() {
-            @Override protected void configureScrollBarColors() {
-                thumbColor = new Color(220, 225, 238);
-                trackColor = new Color(245, 247, 252);
-            }
-            @Override protected JButton createDecreaseButton(int orientation) { return hiddenButton(); }
-            @Override protected JButton createIncreaseButton(int orientation) { return hiddenButton(); }
-            private JButton hiddenButton() { JButton b = new JButton(); b.setPreferredSize(new Dimension(0,0)); b.setVisible(false); return b; }
-        });
-    }
-
     private void installNimbus() {
         try {
             for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
@@ -1141,21 +2902,31 @@ private JButton makeHoverButton(String text) {
         return img;
     }
 
-    // ---------------- Chart/Update helpers ----------------
+    // ---------------- Main ----------------
 
-    private void updateCategoriesAndChart() {
-        Set<String> cats = new TreeSet<>();
-        cats.add("All Categories");
-        for (int i = 0; i < masterModel.size(); i++) cats.add(masterModel.get(i).category);
-        for (String c : Collections.list(categoryModel.elements())) cats.add(c);
-        categoryModel.clear();
-        for (String c : cats) categoryModel.addElement(c);
-        if (categoryModel.size() > 0 && categoryList.getSelectedIndex() == -1) categoryList.setSelectedIndex(0);
-        chartPanel.updateChartData();
+    // The value after the flag at i.
+    private static String value(String[] args, int i) {
+        if (i + 1 < args.length) return args[i + 1];
+        throw new IllegalArgumentException(args[i] + " needs a value");
     }
 
-    // ---------------- Main ----------------
     public static void main(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--stress" -> stressTasks = Integer.parseInt(value(args, i++).replace("_", ""));
+                    case "--seed" -> stressSeed = Long.parseLong(value(args, i++));
+                    case "--sync" -> syncUrl = value(args, i++);
+                    case "--api" -> apiPort = i + 1 < args.length && args[i + 1].matches("\\d+") ? Integer.parseInt(args[++i]) : TaskApi.DEFAULT_PORT;
+                    case "--edt-monitor" -> EdtMonitor.install(i + 1 < args.length && args[i + 1].matches("\\d+") ? Long.parseLong(args[++i]) : 100);
+                    default -> { }
+                }
+            }
+        } catch (IllegalArgumentException e) { // a missing value, or a number that is not one
+            System.err.println(e.getMessage());
+            System.err.println("Usage: TodoApp [--stress N] [--seed N] [--sync URL] [--api [PORT]] [--edt-monitor [MILLIS]]");
+            System.exit(2);
+        }
         SwingUtilities.invokeLater(() -> {
             TodoApp app = new TodoApp();
             app.setVisible(true);
@@ -0,0 +1,58 @@
+import jdk.jfr.*;
+
+/**
+ * TodoEvents.java
+ *
+ * Java Flight Recorder events for the app's expensive operations. They cost next to
+ * nothing while no recording is running.
+ *
+ * Record: java -XX:StartFlightRecording=filename=todo.jfr,settings=profile TodoApp
+ * Report: java JfrSummary todo.jfr
+ */
+final class TodoEvents {
+    private TodoEvents() {}
+
+    @Name("todo.Save")
+    @Label("Save Tasks")
+    @Category({"Todo", "Persistence"})
+    static class Save extends Event {
+        @Label("Task Count") int taskCount;
+        @Label("Bytes Written") @DataAmount long bytes;
+        @Label("Uncompressed Bytes") @DataAmount long rawBytes;
+    }
+
+    @Name("todo.Load")
+    @Label("Load Tasks")
+    @Category({"Todo", "Persistence"})
+    static class Load extends Event {
+        @Label("Task Count") int taskCount;
+        @Label("Bytes Read") @DataAmount long bytes;
+    }
+
+    @Name("todo.DecodeBlock")
+    @Label("Decode Block")
+    @Category({"Todo", "Persistence"})
+    static class DecodeBlock extends Event {
+        @Label("Source") String source;
+        @Label("Packed Bytes") @DataAmount long packedBytes;
+        @Label("Raw Bytes") @DataAmount long rawBytes;
+    }
+
+    @Name("todo.RefreshView")
+    @Label("Refresh View")
+    @Category({"Todo", "Search"})
+    static class RefreshView extends Event {
+        @Label("Task Count") int taskCount;
+        @Label("Result Count") int resultCount;
+        @Label("Query Length") int queryLength;
+        @Label("Filter") String filter;
+    }
+
+    @Name("todo.ChartPaint")
+    @Label("Paint Chart")
+    @Category({"Todo", "Rendering"})
+    static class ChartPaint extends Event {
+        @Label("Task Count") int taskCount;
+        @Label("Counted") int counted;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.ArrayDeque;
+
+/**
+ * UndoLog.java
+ *
+ * Bounded undo/redo history of the user's edits (TodoApp records one command per action).
+ * A command keeps what its inverse needs, never a copy of the list: the task and its old field
+ * values (an edit), the tasks and the two category names (a category rename or delete, any number
+ * of tasks), or the tasks themselves (an add or delete). Undo and redo apply the inverse as ordinary
+ * stamped edits (TaskCrdt), so they are saved, merged and synced like any other edit, and cost
+ * O(tasks the command touched).
+ *
+ * At most LIMIT commands and about TASK_BUDGET task references are kept; the oldest go first.
+ * Recording a command clears the redo side.
+ */
+final class UndoLog {
+    static final int LIMIT = 100, TASK_BUDGET = 100_000;
+
+    interface Command {
+        String label();  // shown after undo / redo, e.g. "Delete task"
+        int size();      // tasks it refers to
+        void undo();
+        void redo();
+    }
+
+    private final ArrayDeque<Command> undone = new ArrayDeque<>(), done = new ArrayDeque<>();
+    private int tasks;
+
+    void record(Command c) {
+        for (Command r : undone) tasks -= r.size();
+        undone.clear();
+        done.push(c);
+        tasks += c.size();
+        // the newest command stays, however large
+        while (done.size() > LIMIT || tasks > TASK_BUDGET && done.size() > 1) tasks -= done.removeLast().size();
+    }
+
+    // The command undone; null if there is none.
+    Command undo() {
+        Command c = done.poll();
+        if (c == null) return null;
+        c.undo();
+        undone.push(c);
+        return c;
+    }
+
+    // The command redone; null if there is none.
+    Command redo() {
+        Command c = undone.poll();
+        if (c == null) return null;
+        c.redo();
+        done.push(c);
+        return c;
+    }
+
+    boolean canUndo() { return !done.isEmpty(); }
+
+    boolean canRedo() { return !undone.isEmpty(); }
+}
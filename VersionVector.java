@@ -0,0 +1,91 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * VersionVector.java
+ *
+ * Per-task version vector for sync: replica id -> number of edits that replica made.
+ * Immutable; bump() and merge() return new vectors.
+ */
+final class VersionVector implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    enum Order { EQUAL, BEFORE, AFTER, CONCURRENT }
+
+    static final VersionVector EMPTY = new VersionVector(new TreeMap<>());
+
+    private final TreeMap<String, Long> counters;
+
+    private VersionVector(TreeMap<String, Long> counters) { this.counters = counters; }
+
+    static VersionVector of(VersionVector v) { return v == null ? EMPTY : v; }
+
+    VersionVector bump(String replica) {
+        TreeMap<String, Long> c = new TreeMap<>(counters);
+        c.merge(replica, 1L, Long::sum);
+        return new VersionVector(c);
+    }
+
+    VersionVector merge(VersionVector other) {
+        TreeMap<String, Long> c = new TreeMap<>(counters);
+        for (Map.Entry<String, Long> e : other.counters.entrySet()) c.merge(e.getKey(), e.getValue(), Math::max);
+        return new VersionVector(c);
+    }
+
+    // How this vector relates to 'other': AFTER means this one has seen everything 'other' has.
+    Order compare(VersionVector other) {
+        boolean less = false, greater = false;
+        for (Map.Entry<String, Long> e : counters.entrySet()) {
+            long o = other.counters.getOrDefault(e.getKey(), 0L);
+            if (e.getValue() > o) greater = true; else if (e.getValue() < o) less = true;
+        }
+        for (Map.Entry<String, Long> e : other.counters.entrySet()) {
+            if (!counters.containsKey(e.getKey()) && e.getValue() > 0) less = true;
+        }
+        if (less && greater) return Order.CONCURRENT;
+        return less ? Order.BEFORE : greater ? Order.AFTER : Order.EQUAL;
+    }
+
+    // ---------------- Encoding ----------------
+
+    void write(DataOutput out) throws IOException {
+        out.writeShort(counters.size());
+        for (Map.Entry<String, Long> e : counters.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeLong(e.getValue());
+        }
+    }
+
+    static VersionVector read(DataInput in) throws IOException {
+        int n = in.readUnsignedShort();
+        if (n == 0) return EMPTY;
+        TreeMap<String, Long> c = new TreeMap<>();
+        for (int i = 0; i < n; i++) c.put(in.readUTF(), in.readLong());
+        return new VersionVector(c);
+    }
+
+    // "replica:count,replica:count" (used in the sync state file)
+    @Override public String toString() {
+        StringJoiner j = new StringJoiner(",");
+        counters.forEach((r, n) -> j.add(r + ":" + n));
+        return j.toString();
+    }
+
+    static VersionVector parse(String s) {
+        TreeMap<String, Long> c = new TreeMap<>();
+        for (String part : s.split(",")) {
+            int colon = part.lastIndexOf(':');
+            if (colon > 0) c.put(part.substring(0, colon), Long.parseLong(part.substring(colon + 1)));
+        }
+        return c.isEmpty() ? EMPTY : new VersionVector(c);
+    }
+
+    @Override public boolean equals(Object o) { return o instanceof VersionVector v && v.counters.equals(counters); }
+
+    @Override public int hashCode() { return counters.hashCode(); }
+}
@@ -0,0 +1,195 @@
+import javax.swing.*;
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * TodoBench.java
+ *
+ * Micro-benchmarks for the hot paths, JMH-style but without the dependency:
+ *  - refreshView      -> TodoApp.selectForView (query plan + ordered walk)
+ *  - save / load      -> TodoApp.writeTasks / TodoApp.readTasks
+ *  - storeLoad        -> Todo.TaskStore loading tasks.dat
+ *  - chartCount       -> TodoApp.completion (ChartPanel counting, CategoryRegistry counts)
+ *  - renameCategory   -> TodoApp.renameCategory (Manage Categories, category postings)
+ *
+ * Datasets come from TaskGenerator (seeded, so runs are comparable).
+ * Every benchmark runs per dataset size and reports throughput, latency
+ * percentiles, allocation per op and GC activity (the JMH "gc" profiler numbers).
+ *
+ * Compile: javac -encoding UTF-8 -d out -sourcepath todojava *.java bench/*.java
+ * Run:     java -cp out TodoBench [--sizes 1000,100000,1000000] [--bench refreshView,save] [--seconds 3]
+ */
+public class TodoBench {
+    static final String[] ALL = {"refreshView", "save", "load", "storeLoad", "chartCount", "renameCategory"};
+
+    interface Op { void run() throws Exception; }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {1_000, 100_000, 1_000_000};
+        List<String> benches = Arrays.asList(ALL);
+        double seconds = 3;
+        long seed = 42;
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = Arrays.stream(args[i + 1].split(",")).mapToInt(s -> Integer.parseInt(s.trim().replace("_", ""))).toArray();
+                case "--bench" -> benches = Arrays.asList(args[i + 1].split(","));
+                case "--seconds" -> seconds = Double.parseDouble(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        System.out.printf("%-15s %9s %10s %10s %10s %10s %10s %12s %6s %8s%n",
+                "benchmark", "size", "ops/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "alloc B/op", "gc", "gc ms");
+        for (int size : sizes) {
+            List<TodoApp.Task> tasks = new TaskGenerator(seed).tasks(size);
+            for (String b : benches) {
+                Result r = run(b, size, tasks, seconds, seed);
+                System.out.println(r);
+            }
+        }
+    }
+
+    static Result run(String bench, int size, List<TodoApp.Task> tasks, double seconds, long seed) throws Exception {
+        Path dir = Files.createTempDirectory("todobench");
+        try {
+            Op op = switch (bench) {
+                case "refreshView" -> {
+                    TaskIndex index = new TaskIndex();
+                    for (TodoApp.Task t : tasks) index.add(t);
+                    String[] queries = {"", "", "meet", "report", "q3 budget", "pri:High due<+7 !done", "cat:Travel \"meeting notes\""};
+                    String[] filters = {"All", "Active", "Completed"};
+                    String[] cats = {"All Categories", "Work", "Personal"};
+                    TaskIndex.Order[] orders = TaskIndex.Order.values();
+                    int[] n = {0};
+                    yield () -> {
+                        int i = n[0]++;
+                        TodoApp.selectForView(index, queries[i % queries.length], filters[i % filters.length], cats[i % cats.length],
+                                orders[i % orders.length], i % 2 == 0);
+                    };
+                }
+                case "save" -> {
+                    Path p = dir.resolve(".swing-todo.dat");
+                    DefaultListModel<TodoApp.Task> master = model(tasks);
+                    yield () -> TodoApp.writeTasks(p, Collections.list(master.elements()));
+                }
+                case "load" -> {
+                    Path p = dir.resolve(".swing-todo.dat");
+                    TodoApp.writeTasks(p, tasks);
+                    yield () -> TodoApp.readTasks(p);
+                }
+                case "storeLoad" -> {
+                    File f = dir.resolve("tasks.dat").toFile();
+                    new TaskGenerator(seed).writeStore(f.toPath(), size);
+                    yield () -> new Todo.TaskStore(f);
+                }
+                case "chartCount" -> {
+                    TaskIndex index = new TaskIndex();
+                    for (TodoApp.Task t : tasks) index.add(t);
+                    String[] cats = {"All Categories", "Work", "Errands"};
+                    String[] prios = {"All", "High", "Low"};
+                    int[] n = {0};
+                    yield () -> {
+                        int i = n[0]++;
+                        TodoApp.completion(index, cats[i % cats.length], prios[i % prios.length]);
+                    };
+                }
+                case "renameCategory" -> {
+                    TaskIndex index = new TaskIndex();
+                    for (TodoApp.Task t : tasks) index.add(t);
+                    boolean[] flip = {false};
+                    yield () -> {
+                        if (flip[0]) TodoApp.renameCategory(index, "Office", "Work");
+                        else TodoApp.renameCategory(index, "Work", "Office");
+                        flip[0] = !flip[0];
+                    };
+                }
+                default -> throw new IllegalArgumentException("Unknown benchmark " + bench);
+            };
+            return measure(bench, size, op, seconds);
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    static DefaultListModel<TodoApp.Task> model(List<TodoApp.Task> tasks) {
+        DefaultListModel<TodoApp.Task> m = new DefaultListModel<>();
+        m.ensureCapacity(tasks.size());
+        for (TodoApp.Task t : tasks) m.addElement(t);
+        return m;
+    }
+
+    // Warmup for a third of the budget, then record every op until the budget is spent.
+    static Result measure(String bench, int size, Op op, double seconds) throws Exception {
+        long budget = (long) (seconds * 1e9);
+        long warmEnd = System.nanoTime() + budget / 3;
+        int warm = 0;
+        while (System.nanoTime() < warmEnd || warm < 2) { op.run(); warm++; }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long gcCount0 = gcCount(), gcTime0 = gcTime();
+        long alloc0 = threads.getThreadAllocatedBytes(tid);
+
+        long[] samples = new long[1024];
+        int n = 0;
+        long start = System.nanoTime(), end = start + budget;
+        long now = start;
+        while (now < end || n < 3) {
+            long t0 = System.nanoTime();
+            op.run();
+            now = System.nanoTime();
+            if (n == samples.length) samples = Arrays.copyOf(samples, n * 2);
+            samples[n++] = now - t0;
+        }
+        long elapsed = now - start;
+        long alloc = threads.getThreadAllocatedBytes(tid) - alloc0;
+
+        Arrays.sort(samples, 0, n);
+        Result r = new Result();
+        r.bench = bench;
+        r.size = size;
+        r.opsPerSec = n / (elapsed / 1e9);
+        r.p50 = samples[pct(n, 0.50)];
+        r.p90 = samples[pct(n, 0.90)];
+        r.p99 = samples[pct(n, 0.99)];
+        r.max = samples[n - 1];
+        r.allocPerOp = alloc / n;
+        r.gcCount = gcCount() - gcCount0;
+        r.gcMillis = gcTime() - gcTime0;
+        return r;
+    }
+
+    static int pct(int n, double p) { return Math.min(n - 1, (int) Math.ceil(p * n) - 1); }
+
+    static long gcCount() {
+        long c = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) c += Math.max(0, gc.getCollectionCount());
+        return c;
+    }
+
+    static long gcTime() {
+        long c = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) c += Math.max(0, gc.getCollectionTime());
+        return c;
+    }
+
+    static class Result {
+        String bench;
+        int size;
+        double opsPerSec;
+        long p50, p90, p99, max, allocPerOp, gcCount, gcMillis;
+
+        @Override public String toString() {
+            return String.format("%-15s %9d %10.1f %10.3f %10.3f %10.3f %10.3f %12d %6d %8d",
+                    bench, size, opsPerSec, p50 / 1e6, p90 / 1e6, p99 / 1e6, max / 1e6, allocPerOp, gcCount, gcMillis);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package Todo;
+
+import jdk.jfr.*;
+
+// JFR event around TaskStore.saveTasks(); free when no recording is running.
+@Name("todo.StoreSave")
+@Label("TaskStore Save")
+@Category({"Todo", "Persistence"})
+class StoreSaveEvent extends Event {
+    @Label("Task Count") int taskCount;
+    @Label("File") String file;
+}
@@ -51,14 +51,24 @@
 package Todo;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.List;
 
+// Several processes may share the file: writes go to a temp file and are renamed into place
+// under an exclusive lock on "<file>.lock"; reads take the shared lock.
 public class TaskStore {
     private List<Task> tasks;
-    private final File file = new File("tasks.dat");
+    private final File file;
 
     public TaskStore() {
+        this(new File("tasks.dat"));
+    }
+
+    public TaskStore(File file) {
+        this.file = file;
         tasks = loadTasks();
     }
 
@@ -74,9 +84,11 @@ public class TaskStore {
         saveTasks(); // persist changes
     }
 
+    @SuppressWarnings("try")
     private List<Task> loadTasks() {
         if (!file.exists()) return new ArrayList<>();
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+        try (FileChannel lockCh = lockChannel(); FileLock lock = lockCh.lock(0, Long.MAX_VALUE, true);
+             ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
             return (List<Task>) ois.readObject();
         } catch (Exception e) {
             e.printStackTrace();
@@ -84,11 +96,32 @@ public class TaskStore {
         }
     }
 
+    @SuppressWarnings("try")
     private void saveTasks() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(tasks);
+        StoreSaveEvent ev = new StoreSaveEvent();
+        ev.begin();
+        Path target = file.toPath();
+        Path tmp = target.resolveSibling(file.getName() + ".tmp" + ProcessHandle.current().pid());
+        try {
+            try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                oos.writeObject(tasks);
+            }
+            try (FileChannel lockCh = lockChannel(); FileLock lock = lockCh.lock()) {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.taskCount = tasks.size();
+            ev.file = file.getPath();
+            ev.commit();
+        }
+    }
+
+    private FileChannel lockChannel() throws IOException {
+        return FileChannel.open(new File(file.getPath() + ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
     }
 }